@@ -1,5 +1,6 @@
 package com.company.parser;
 
+import com.company.parser.config.HttpClientConfig;
 import lombok.extern.slf4j.Slf4j;
 import net.javacrumbs.shedlock.spring.annotation.EnableSchedulerLock;
 import org.springframework.boot.SpringApplication;
@@ -34,6 +35,7 @@ public class ParserApplication {
 
             // Настройка дополнительных параметров
             app.setLazyInitialization(false); // Отключаем ленивую инициализацию для production
+            app.addListeners(HttpClientConfig.connectionPropertiesInitializer()); // Пул соединений JDK - до первого HTTP клиента
 
             var context = app.run(args);
 
@@ -0,0 +1,369 @@
+package com.company.parser.client;
+
+import com.company.parser.config.AppProperties;
+import com.company.parser.model.domain.ParsingConfig;
+import com.company.parser.model.domain.Site;
+import com.company.parser.repository.SiteConfigRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Адаптивное ограничение числа одновременных запросов к домену (AIMD)
+ *
+ * Пока p95 задержки держится около базового уровня и лимит используется полностью,
+ * лимит растёт на 1 за окно ответов. При росте p95 он плавно снижается,
+ * при 429/503/5xx или таймауте - уменьшается вдвое, а Retry-After приостанавливает
+ * новые запросы к домену. Верхняя граница - maxConnections сайта домена,
+ * иначе app.http.maxConcurrentRequests, но не больше app.http.maxStreamsPerConnection:
+ * по HTTP/2 все запросы к хосту идут потоками одного соединения, а JDK сам число
+ * исходящих потоков не ограничивает. Пересчитывается при изменении сайтов.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AdaptiveConcurrencyLimiter {
+
+    private static final int MIN_LIMIT = 1;
+    private static final int SAMPLE_SIZE = 64;
+    private static final int WINDOW = 32;
+    private static final double HEALTHY_LATENCY_RATIO = 1.25;
+    private static final double OVERLOADED_LATENCY_RATIO = 2.0;
+    private static final double LATENCY_BACKOFF = 0.8;
+    private static final double OVERLOAD_BACKOFF = 0.5;
+    private static final double BASELINE_DRIFT = 1.02;
+    private static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(5);
+
+    private final AppProperties appProperties;
+    private final SiteConfigRepository siteConfigRepository;
+    private final Map<String, DomainLimit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * Получение разрешения на запрос к домену (ожидает свободного места или окончания паузы)
+     */
+    public Permit acquire(String domain) throws InterruptedException {
+        DomainLimit limit = limits.computeIfAbsent(domain != null ? domain : "", this::createLimit);
+        limit.acquire();
+        return new Permit(limit, System.nanoTime());
+    }
+
+    /**
+     * Получение разрешения без блокировки потока: future завершается,
+     * когда у домена освободится место или закончится пауза Retry-After
+     */
+    public CompletableFuture<Permit> acquireAsync(String domain) {
+        DomainLimit limit = limits.computeIfAbsent(domain != null ? domain : "", this::createLimit);
+        return limit.acquireAsync();
+    }
+
+    /**
+     * Текущий лимит одновременных запросов для домена
+     */
+    public int getLimit(String domain) {
+        DomainLimit limit = limits.get(domain);
+        return limit != null ? limit.currentLimit() : maxLimit(domain);
+    }
+
+    @EventListener
+    public void onSitesChanged(SiteConfigRepository.SitesChangedEvent event) {
+        limits.forEach((domain, limit) -> limit.updateMaxLimit(maxLimit(domain)));
+    }
+
+    /**
+     * Разбор заголовка Retry-After (секунды или HTTP-дата)
+     */
+    public static Duration parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return clamp(Duration.ofSeconds(Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                Instant date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                return clamp(Duration.between(Instant.now(), date));
+            } catch (DateTimeParseException ex) {
+                return null;
+            }
+        }
+    }
+
+    // === Private методы ===
+
+    private DomainLimit createLimit(String domain) {
+        int max = maxLimit(domain);
+        return new DomainLimit(domain, Math.max(MIN_LIMIT, max / 2), max);
+    }
+
+    private int maxLimit(String domain) {
+        Integer configured = domain == null || domain.isEmpty() ? null
+                : siteConfigRepository.findByHost(domain)
+                        .map(Site::getConfig)
+                        .map(ParsingConfig::getMaxConnections)
+                        .orElse(null);
+        int max = configured != null && configured > 0 ? configured : appProperties.http().maxConcurrentRequests();
+        return Math.max(MIN_LIMIT, Math.min(max, appProperties.http().maxStreamsPerConnection()));
+    }
+
+    private static Duration clamp(Duration duration) {
+        if (duration.isNegative()) return Duration.ZERO;
+        return duration.compareTo(MAX_RETRY_AFTER) > 0 ? MAX_RETRY_AFTER : duration;
+    }
+
+    /**
+     * Разрешение на один запрос. Результат сообщается ровно один раз,
+     * повторные вызовы игнорируются.
+     */
+    public static final class Permit {
+
+        private final DomainLimit limit;
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(DomainLimit limit, long startNanos) {
+            this.limit = limit;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Успешный ответ: задержка учитывается в p95
+         */
+        public void onSuccess() {
+            if (released.compareAndSet(false, true)) {
+                limit.release(System.nanoTime() - startNanos, false, null);
+            }
+        }
+
+        /**
+         * Признак перегрузки (429, 503, 5xx, таймаут); retryAfter может быть null
+         */
+        public void onOverload(Duration retryAfter) {
+            if (released.compareAndSet(false, true)) {
+                limit.release(-1, true, retryAfter);
+            }
+        }
+
+        /**
+         * Ответ, не говорящий о нагрузке (404, 403 и т.п.)
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                limit.release(-1, false, null);
+            }
+        }
+    }
+
+    /**
+     * Состояние одного домена. Все поля защищены lock (ReentrantLock не блокирует
+     * носитель виртуального потока при ожидании).
+     */
+    private static final class DomainLimit {
+
+        private final String domain;
+        private int maxLimit;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+
+        private final ArrayDeque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+        private boolean drainScheduled;
+
+        private final long[] samples = new long[SAMPLE_SIZE];
+        private int sampleCount;
+        private int windowCount;
+        private int windowPeakInFlight;
+
+        private double limit;
+        private int inFlight;
+        private long baselineP95;
+        private long pausedUntil;
+
+        DomainLimit(String domain, int initialLimit, int maxLimit) {
+            this.domain = domain;
+            this.limit = initialLimit;
+            this.maxLimit = maxLimit;
+            this.pausedUntil = System.nanoTime();
+        }
+
+        void acquire() throws InterruptedException {
+            lock.lock();
+            try {
+                while (true) {
+                    long pause = pausedUntil - System.nanoTime();
+                    if (pause > 0) {
+                        changed.awaitNanos(pause);
+                    } else if (inFlight < (int) limit) {
+                        inFlight++;
+                        windowPeakInFlight = Math.max(windowPeakInFlight, inFlight);
+                        return;
+                    } else {
+                        changed.await();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        CompletableFuture<Permit> acquireAsync() {
+            CompletableFuture<Permit> future = new CompletableFuture<>();
+            lock.lock();
+            try {
+                waiters.add(future);
+            } finally {
+                lock.unlock();
+            }
+            drain();
+            return future;
+        }
+
+        /**
+         * Выдача разрешений асинхронным ожидающим, пока есть место. Future завершаются
+         * вне lock; отменённому ожидающему место сразу возвращается.
+         */
+        private void drain() {
+            List<CompletableFuture<Permit>> granted = new ArrayList<>();
+            lock.lock();
+            try {
+                long pause = pausedUntil - System.nanoTime();
+                if (pause > 0) {
+                    if (!waiters.isEmpty() && !drainScheduled) {
+                        drainScheduled = true;
+                        CompletableFuture.delayedExecutor(pause, TimeUnit.NANOSECONDS).execute(() -> {
+                            lock.lock();
+                            try {
+                                drainScheduled = false;
+                            } finally {
+                                lock.unlock();
+                            }
+                            drain();
+                        });
+                    }
+                } else {
+                    while (!waiters.isEmpty() && inFlight < (int) limit) {
+                        CompletableFuture<Permit> waiter = waiters.poll();
+                        if (waiter.isDone()) {
+                            continue;
+                        }
+                        inFlight++;
+                        windowPeakInFlight = Math.max(windowPeakInFlight, inFlight);
+                        granted.add(waiter);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            for (CompletableFuture<Permit> waiter : granted) {
+                Permit permit = new Permit(this, System.nanoTime());
+                if (!waiter.complete(permit)) {
+                    permit.release();
+                }
+            }
+        }
+
+        void release(long latencyNanos, boolean overloaded, Duration retryAfter) {
+            lock.lock();
+            try {
+                inFlight--;
+
+                if (overloaded) {
+                    decrease(OVERLOAD_BACKOFF, "overload");
+                    if (retryAfter != null && !retryAfter.isZero()) {
+                        pausedUntil = Math.max(pausedUntil, System.nanoTime() + retryAfter.toNanos());
+                        log.info("Pausing requests to {} for {} s (Retry-After)", domain, retryAfter.toSeconds());
+                    }
+                } else if (latencyNanos >= 0) {
+                    recordLatency(latencyNanos);
+                }
+
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            drain();
+        }
+
+        /**
+         * Новая верхняя граница (изменилась конфигурация сайта)
+         */
+        void updateMaxLimit(int max) {
+            lock.lock();
+            try {
+                if (max == maxLimit) {
+                    return;
+                }
+                maxLimit = max;
+                limit = Math.min(limit, max);
+                log.debug("Concurrency limit cap for {} set to {}", domain, max);
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            drain();
+        }
+
+        int currentLimit() {
+            lock.lock();
+            try {
+                return (int) limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void recordLatency(long latencyNanos) {
+            samples[sampleCount++ % SAMPLE_SIZE] = latencyNanos;
+            if (++windowCount < WINDOW) {
+                return;
+            }
+
+            long p95 = p95();
+            baselineP95 = baselineP95 == 0 ? p95 : Math.min(p95, (long) (baselineP95 * BASELINE_DRIFT));
+
+            if (p95 > baselineP95 * OVERLOADED_LATENCY_RATIO) {
+                decrease(LATENCY_BACKOFF, "latency");
+            } else if (p95 <= baselineP95 * HEALTHY_LATENCY_RATIO && windowPeakInFlight >= (int) limit
+                    && limit < maxLimit) {
+                limit = Math.min(maxLimit, limit + 1);
+                log.debug("Concurrency limit for {} raised to {} (p95 {} ms)",
+                        domain, (int) limit, TimeUnit.NANOSECONDS.toMillis(p95));
+            }
+
+            windowCount = 0;
+            windowPeakInFlight = inFlight;
+        }
+
+        private long p95() {
+            int size = Math.min(sampleCount, SAMPLE_SIZE);
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return sorted[Math.min(size - 1, (int) Math.ceil(size * 0.95) - 1)];
+        }
+
+        private void decrease(double factor, String reason) {
+            double previous = limit;
+            limit = Math.max(MIN_LIMIT, limit * factor);
+            if ((int) previous != (int) limit) {
+                log.debug("Concurrency limit for {} lowered to {} ({})", domain, (int) limit, reason);
+            }
+        }
+    }
+}
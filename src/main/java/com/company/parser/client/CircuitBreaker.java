@@ -1,50 +1,78 @@
 package com.company.parser.client;
 
+import com.company.parser.model.domain.ParsingConfig;
+import com.company.parser.model.domain.Site;
+import com.company.parser.repository.SiteConfigRepository;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Circuit Breaker для защиты от перегрузки
+ *
+ * Без блокировок: состояние домена - одно слово AtomicLong (состояние, выданные
+ * и успешные пробы HALF_OPEN, время размыкания), меняемое CAS. Решение о размыкании
+ * принимается по скользящему окну последних вызовов (кольцевой буфер) - доле ошибок
+ * и доле медленных ответов, но не раньше минимального числа вызовов в окне.
+ * В HALF_OPEN пропускается ограниченное число пробных запросов.
+ * Пороги задаются в config сайта (circuit*), иначе - значения по умолчанию.
  */
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class CircuitBreaker {
 
-    private static final int FAILURE_THRESHOLD = 5;
-    private static final long TIMEOUT_MS = 30_000; // 30 секунд
-    private static final long HALF_OPEN_TIMEOUT_MS = 10_000; // 10 секунд
+    private static final int WINDOW_SIZE = 50;
+    private static final int MINIMUM_CALLS = 10;
+    private static final int HALF_OPEN_PERMITS = 3;
+    private static final int DEFAULT_FAILURE_RATE_PERCENT = 50;
+    private static final int DEFAULT_SLOW_CALL_RATE_PERCENT = 100;
+    private static final long DEFAULT_SLOW_CALL_MS = 10_000;
+    private static final long DEFAULT_OPEN_MS = 30_000;
 
+    private final SiteConfigRepository siteConfigRepository;
     private final Map<String, CircuitState> states = new ConcurrentHashMap<>();
 
     /**
      * Проверка возможности выполнения запроса
      */
     public boolean allowRequest(String domain) {
-        CircuitState state = states.computeIfAbsent(domain, k -> new CircuitState());
-        return state.allowRequest();
+        return state(domain).allowRequest();
     }
 
     /**
      * Регистрация успешного запроса
      */
     public void recordSuccess(String domain) {
-        CircuitState state = states.get(domain);
-        if (state != null) {
-            state.recordSuccess();
-        }
+        recordSuccess(domain, 0);
+    }
+
+    /**
+     * Регистрация успешного запроса с его длительностью (для доли медленных ответов)
+     */
+    public void recordSuccess(String domain, long durationNanos) {
+        state(domain).record(false, durationNanos);
     }
 
     /**
      * Регистрация неудачного запроса
      */
     public void recordFailure(String domain) {
-        CircuitState state = states.computeIfAbsent(domain, k -> new CircuitState());
-        state.recordFailure();
+        recordFailure(domain, 0);
+    }
+
+    /**
+     * Регистрация неудачного запроса с его длительностью
+     */
+    public void recordFailure(String domain, long durationNanos) {
+        state(domain).record(true, durationNanos);
     }
 
     /**
@@ -55,6 +83,31 @@ public class CircuitBreaker {
         return state != null ? state.getState() : State.CLOSED;
     }
 
+    // === Private методы ===
+
+    private CircuitState state(String domain) {
+        return states.computeIfAbsent(domain != null ? domain : "", this::createState);
+    }
+
+    private CircuitState createState(String domain) {
+        ParsingConfig config = siteConfigRepository.findByHost(domain)
+                .map(Site::getConfig)
+                .orElse(null);
+
+        int failureRate = DEFAULT_FAILURE_RATE_PERCENT;
+        int slowCallRate = DEFAULT_SLOW_CALL_RATE_PERCENT;
+        long slowCallMs = DEFAULT_SLOW_CALL_MS;
+        long openMs = DEFAULT_OPEN_MS;
+        if (config != null) {
+            if (config.getCircuitFailureRatePercent() != null) failureRate = config.getCircuitFailureRatePercent();
+            if (config.getCircuitSlowCallRatePercent() != null) slowCallRate = config.getCircuitSlowCallRatePercent();
+            if (config.getCircuitSlowCallMs() != null) slowCallMs = config.getCircuitSlowCallMs();
+            if (config.getCircuitOpenSeconds() != null) openMs = TimeUnit.SECONDS.toMillis(config.getCircuitOpenSeconds());
+        }
+
+        return new CircuitState(domain, failureRate, slowCallRate, TimeUnit.MILLISECONDS.toNanos(slowCallMs), openMs);
+    }
+
     /**
      * Состояние circuit breaker
      */
@@ -66,79 +119,190 @@ public class CircuitBreaker {
 
     /**
      * Внутреннее состояние для домена
+     *
+     * Слово состояния: биты 62-63 - состояние, 52-61 - успешные пробы,
+     * 42-51 - выданные пробы, 0-41 - время перехода в OPEN/HALF_OPEN (мс от создания).
      */
-    private static class CircuitState {
-        private final AtomicInteger failureCount = new AtomicInteger(0);
-        private final AtomicInteger successCount = new AtomicInteger(0);
-        private final AtomicLong lastFailureTime = new AtomicLong(0);
-        private volatile State state = State.CLOSED;
+    private static final class CircuitState {
+
+        private static final int STATE_SHIFT = 62;
+        private static final int SUCCESS_SHIFT = 52;
+        private static final int PERMIT_SHIFT = 42;
+        private static final long COUNTER_MASK = 0x3FF;
+        private static final long TIME_MASK = (1L << PERMIT_SHIFT) - 1;
+
+        private static final int EMPTY = 0;
+        private static final int SUCCESS = 1;
+        private static final int FAILURE = 2;
+        private static final int SLOW = 4;
 
-        synchronized boolean allowRequest() {
-            long now = System.currentTimeMillis();
+        private final String domain;
+        private final int failureRatePercent;
+        private final int slowCallRatePercent;
+        private final long slowCallNanos;
+        private final long openMs;
+        private final long createdAt = System.currentTimeMillis();
 
-            switch (state) {
-                case CLOSED:
+        private final AtomicLong word = new AtomicLong(pack(State.CLOSED, 0, 0, 0));
+
+        // Скользящее окно последних вызовов
+        private final AtomicIntegerArray window = new AtomicIntegerArray(WINDOW_SIZE);
+        private final AtomicLong cursor = new AtomicLong();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        CircuitState(String domain, int failureRatePercent, int slowCallRatePercent,
+                     long slowCallNanos, long openMs) {
+            this.domain = domain;
+            this.failureRatePercent = failureRatePercent;
+            this.slowCallRatePercent = slowCallRatePercent;
+            this.slowCallNanos = slowCallNanos;
+            this.openMs = openMs;
+        }
+
+        boolean allowRequest() {
+            while (true) {
+                long current = word.get();
+                State state = stateOf(current);
+
+                if (state == State.CLOSED) {
                     return true;
+                }
 
-                case OPEN:
-                    if (now - lastFailureTime.get() > TIMEOUT_MS) {
-                        state = State.HALF_OPEN;
-                        log.info("Circuit breaker entering HALF_OPEN state");
+                if (state == State.OPEN) {
+                    if (now() - openedAt(current) < openMs) {
+                        return false;
+                    }
+                    // Первая проба переводит в HALF_OPEN
+                    if (word.compareAndSet(current, pack(State.HALF_OPEN, 0, 1, now()))) {
+                        log.info("Circuit breaker for {} entering HALF_OPEN state", domain);
                         return true;
                     }
-                    return false;
+                    continue;
+                }
 
-                case HALF_OPEN:
+                int permits = permitsOf(current);
+                if (permits >= HALF_OPEN_PERMITS) {
+                    // Пробы, не сообщившие результат, не должны держать HALF_OPEN вечно
+                    if (now() - openedAt(current) < openMs) {
+                        return false;
+                    }
+                    if (word.compareAndSet(current, pack(State.HALF_OPEN, 0, 1, now()))) {
+                        return true;
+                    }
+                    continue;
+                }
+                if (word.compareAndSet(current,
+                        pack(State.HALF_OPEN, successesOf(current), permits + 1, openedAt(current)))) {
                     return true;
-
-                default:
-                    return false;
+                }
             }
         }
 
-        synchronized void recordSuccess() {
-            switch (state) {
-                case HALF_OPEN:
-                    successCount.incrementAndGet();
-                    if (successCount.get() >= 3) { // 3 успешных запроса для восстановления
-                        reset();
-                        log.info("Circuit breaker recovered to CLOSED state");
+        void record(boolean failure, long durationNanos) {
+            boolean slow = durationNanos >= slowCallNanos;
+
+            while (true) {
+                long current = word.get();
+                State state = stateOf(current);
+
+                if (state == State.OPEN) {
+                    return;
+                }
+
+                if (state == State.HALF_OPEN) {
+                    if (failure) {
+                        if (word.compareAndSet(current, pack(State.OPEN, 0, 0, now()))) {
+                            log.warn("Circuit breaker for {} reopened from HALF_OPEN state", domain);
+                            return;
+                        }
+                        continue;
                     }
-                    break;
+                    int successes = successesOf(current) + 1;
+                    if (successes >= HALF_OPEN_PERMITS) {
+                        if (word.compareAndSet(current, pack(State.CLOSED, 0, 0, 0))) {
+                            resetWindow();
+                            log.info("Circuit breaker for {} recovered to CLOSED state", domain);
+                            return;
+                        }
+                    } else if (word.compareAndSet(current,
+                            pack(State.HALF_OPEN, successes, permitsOf(current), openedAt(current)))) {
+                        return;
+                    }
+                    continue;
+                }
 
-                case CLOSED:
-                    failureCount.set(0);
-                    break;
+                // CLOSED: запись в окно и проверка порогов
+                addToWindow((failure ? FAILURE : SUCCESS) | (slow ? SLOW : 0));
+                if (shouldOpen() && word.compareAndSet(current, pack(State.OPEN, 0, 0, now()))) {
+                    log.warn("Circuit breaker for {} opened: {} failures, {} slow of {} calls",
+                            domain, failures.get(), slowCalls.get(), calls.get());
+                }
+                return;
             }
         }
 
-        synchronized void recordFailure() {
-            lastFailureTime.set(System.currentTimeMillis());
+        State getState() {
+            return stateOf(word.get());
+        }
 
-            switch (state) {
-                case CLOSED:
-                    if (failureCount.incrementAndGet() >= FAILURE_THRESHOLD) {
-                        state = State.OPEN;
-                        log.warn("Circuit breaker opened after {} failures", FAILURE_THRESHOLD);
-                    }
-                    break;
+        private void addToWindow(int outcome) {
+            int slot = (int) (cursor.getAndIncrement() % WINDOW_SIZE);
+            int previous = window.getAndSet(slot, outcome);
 
-                case HALF_OPEN:
-                    state = State.OPEN;
-                    failureCount.set(FAILURE_THRESHOLD);
-                    log.warn("Circuit breaker reopened from HALF_OPEN state");
-                    break;
+            if (previous == EMPTY) {
+                calls.incrementAndGet();
             }
+            failures.addAndGet(((outcome & FAILURE) != 0 ? 1 : 0) - ((previous & FAILURE) != 0 ? 1 : 0));
+            slowCalls.addAndGet(((outcome & SLOW) != 0 ? 1 : 0) - ((previous & SLOW) != 0 ? 1 : 0));
         }
 
-        private void reset() {
-            failureCount.set(0);
-            successCount.set(0);
-            state = State.CLOSED;
+        private boolean shouldOpen() {
+            int total = calls.get();
+            if (total < MINIMUM_CALLS) {
+                return false;
+            }
+            return failures.get() * 100 >= failureRatePercent * total
+                    || (slowCallRatePercent < 100 && slowCalls.get() * 100 >= slowCallRatePercent * total);
         }
 
-        State getState() {
-            return state;
+        private void resetWindow() {
+            for (int i = 0; i < WINDOW_SIZE; i++) {
+                int previous = window.getAndSet(i, EMPTY);
+                if (previous != EMPTY) {
+                    calls.decrementAndGet();
+                    if ((previous & FAILURE) != 0) failures.decrementAndGet();
+                    if ((previous & SLOW) != 0) slowCalls.decrementAndGet();
+                }
+            }
+        }
+
+        private long now() {
+            return (System.currentTimeMillis() - createdAt) & TIME_MASK;
+        }
+
+        private static long pack(State state, int successes, int permits, long openedAt) {
+            return ((long) state.ordinal() << STATE_SHIFT)
+                    | ((successes & COUNTER_MASK) << SUCCESS_SHIFT)
+                    | ((permits & COUNTER_MASK) << PERMIT_SHIFT)
+                    | (openedAt & TIME_MASK);
+        }
+
+        private static State stateOf(long word) {
+            return State.values()[(int) (word >>> STATE_SHIFT)];
+        }
+
+        private static int successesOf(long word) {
+            return (int) ((word >>> SUCCESS_SHIFT) & COUNTER_MASK);
+        }
+
+        private static int permitsOf(long word) {
+            return (int) ((word >>> PERMIT_SHIFT) & COUNTER_MASK);
+        }
+
+        private static long openedAt(long word) {
+            return word & TIME_MASK;
         }
     }
 }
@@ -0,0 +1,32 @@
+package com.company.parser.client;
+
+import lombok.Getter;
+import org.jsoup.nodes.Document;
+
+/**
+ * Результат условного GET запроса
+ */
+@Getter
+public final class ConditionalPage {
+
+    /**
+     * Документ; null, если сервер ответил 304
+     */
+    private final Document document;
+
+    /**
+     * Хэш содержимого (для 304 - сохранённый с прошлой загрузки)
+     */
+    private final long contentHash;
+
+    /**
+     * Страница не изменилась с прошлой загрузки (304 или тот же хэш)
+     */
+    private final boolean unchanged;
+
+    ConditionalPage(Document document, long contentHash, boolean unchanged) {
+        this.document = document;
+        this.contentHash = contentHash;
+        this.unchanged = unchanged;
+    }
+}
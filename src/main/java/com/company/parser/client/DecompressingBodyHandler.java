@@ -0,0 +1,135 @@
+package com.company.parser.client;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Потоковое чтение тела ответа с распаковкой по Content-Encoding (gzip, deflate)
+ *
+ * Тело не собирается в строку: поток распаковки создаётся лениво, при первом
+ * обращении к Supplier (конструктор GZIPInputStream читает заголовок и не должен
+ * блокировать поток HttpClient). Brotli в JDK нет, поэтому он не запрашивается.
+ */
+public final class DecompressingBodyHandler implements HttpResponse.BodyHandler<Supplier<InputStream>> {
+
+    /**
+     * Значение Accept-Encoding, которое умеет распаковывать обработчик
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    @Override
+    public HttpResponse.BodySubscriber<Supplier<InputStream>> apply(HttpResponse.ResponseInfo responseInfo) {
+        String encoding = responseInfo.headers().firstValue("Content-Encoding").orElse("");
+        return HttpResponse.BodySubscribers.mapping(
+                HttpResponse.BodySubscribers.ofInputStream(),
+                raw -> () -> {
+                    try {
+                        return decode(raw, encoding);
+                    } catch (IOException e) {
+                        closeQuietly(raw);
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Кодировка из Content-Type; null, если не указана (jsoup определит по BOM/meta)
+     */
+    public static Charset charsetOf(HttpHeaders headers) {
+        String contentType = headers.firstValue("Content-Type").orElse("");
+        for (String part : contentType.split(";")) {
+            String param = part.trim();
+            if (param.regionMatches(true, 0, "charset=", 0, 8)) {
+                String name = param.substring(8).trim().replace("\"", "").replace("'", "");
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Закрытие тела ответа без чтения (освобождает соединение)
+     */
+    public static void discard(HttpResponse<Supplier<InputStream>> response) {
+        try {
+            response.body().get().close();
+        } catch (IOException | UncheckedIOException e) {
+            // соединение всё равно будет закрыто
+        }
+    }
+
+    // === Private методы ===
+
+    private static InputStream decode(InputStream raw, String encoding) throws IOException {
+        String normalized = encoding.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty() || normalized.equals("identity")) {
+            return raw;
+        }
+
+        // Пустое тело (204, HEAD) с Content-Encoding распаковывать нечего
+        BufferedInputStream in = new BufferedInputStream(raw);
+        in.mark(1);
+        if (in.read() < 0) {
+            in.reset();
+            return in;
+        }
+        in.reset();
+
+        return switch (normalized) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(in, 8192);
+            case "deflate" -> inflate(in);
+            default -> throw new IOException("Unsupported Content-Encoding: " + encoding);
+        };
+    }
+
+    /**
+     * deflate по RFC должен быть в обёртке zlib, но часть серверов отдаёт "сырой" поток -
+     * различаем по заголовку zlib
+     */
+    private static InputStream inflate(BufferedInputStream in) throws IOException {
+        in.mark(2);
+        int cmf = in.read();
+        int flg = in.read();
+        in.reset();
+
+        boolean zlibWrapped = cmf >= 0 && flg >= 0
+                && (cmf & 0x0F) == 8
+                && ((cmf << 8) | flg) % 31 == 0;
+        Inflater inflater = new Inflater(!zlibWrapped);
+        return new InflaterInputStream(in, inflater, 8192) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // свой Inflater InflaterInputStream не освобождает
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // игнорируем
+        }
+    }
+}
@@ -6,16 +6,33 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
  * HTTP клиент для выполнения запросов
@@ -25,26 +42,43 @@ import java.util.concurrent.CompletableFuture;
 @RequiredArgsConstructor
 public class HttpClient {
 
+    private static final DecompressingBodyHandler BODY_HANDLER = new DecompressingBodyHandler();
+
     private final java.net.http.HttpClient client;
+    private final HttpClientPool clientPool;
     private final AppProperties appProperties;
     private final RateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
     private final CircuitBreaker circuitBreaker;
     private final RetryHandler retryHandler;
+    private final ValidatorStore validatorStore;
+    private final ResponseCache responseCache;
+    private final SingleFlight singleFlight = new SingleFlight();
 
     /**
      * GET запрос с получением HTML документа
      */
-    @Cacheable(value = "httpResponses", key = "#url")
     public Document get(String url) throws IOException {
         return get(url, Map.of());
     }
 
     /**
-     * GET запрос с заголовками
+     * GET запрос с заголовками. Ответ берётся из кэша HTTP ответов, если он там есть;
+     * иначе распакованное тело сохраняется в кэш и разбирается jsoup. Одновременные
+     * запросы одного URL выполняются один раз, остальные получают копию документа.
      */
     public Document get(String url, Map<String, String> headers) throws IOException {
-        String html = getString(url, headers);
-        return Jsoup.parse(html, url);
+        return singleFlight.execute(flightKey("document", url, headers),
+                () -> fetchCached(url, headers, documentParser(url)), Document::clone);
+    }
+
+    /**
+     * GET запрос с разбором тела потоком, без построения Document. Ответ берётся
+     * из кэша HTTP ответов и сохраняется в него как обычно; одновременные запросы
+     * не объединяются (результат разбора не копируется).
+     */
+    public <T> T getStreamed(String url, BodyParser<T> parser) throws IOException {
+        return fetchCached(url, Map.of(), parser);
     }
 
     /**
@@ -58,45 +92,72 @@ public class HttpClient {
      * GET запрос с заголовками и получением строки
      */
     public String getString(String url, Map<String, String> headers) throws IOException {
-        // Проверка Circuit Breaker
-        String domain = extractDomain(url);
-        if (!circuitBreaker.allowRequest(domain)) {
-            throw new HttpException(url, 0, "Circuit breaker is open for domain: " + domain);
-        }
+        return singleFlight.execute(flightKey("string", url, headers),
+                () -> fetchCached(url, headers, HttpClient::parseString), UnaryOperator.identity());
+    }
 
-        try {
-            // Rate limiting
-            rateLimiter.acquire();
+    /**
+     * Условный GET запрос: отправляются If-None-Match / If-Modified-Since с прошлой загрузки,
+     * по телу считается хэш. Страница считается неизменившейся при 304 или совпадении хэша.
+     *
+     * @param useValidators false - загрузить страницу полностью (хэш и валидаторы всё равно обновляются)
+     */
+    public ConditionalPage getConditional(String url, boolean useValidators) throws IOException {
+        ValidatorStore.Validators previous = validatorStore.find(url).orElse(null);
 
-            // Выполнение запроса с повторными попытками
-            String response = retryHandler.executeWithRetry(() ->
-                    executeRequest(url, headers)
-            );
+        Map<String, String> headers = new HashMap<>();
+        if (useValidators && previous != null) {
+            if (previous.getEtag() != null) {
+                headers.put("If-None-Match", previous.getEtag());
+            }
+            if (previous.getLastModified() != null) {
+                headers.put("If-Modified-Since", previous.getLastModified());
+            }
+        }
 
-            circuitBreaker.recordSuccess(domain);
-            return response;
+        return fetch(url, headers, new BodyReader<>() {
+            @Override
+            public ConditionalPage read(InputStream body, HttpResponse<?> response) throws IOException {
+                // Хэш считается по ходу разбора, тело целиком в памяти не собирается
+                DigestInputStream digesting = new DigestInputStream(body, sha256());
+                Document document = Jsoup.parse(digesting, charsetName(response), url);
+                drain(digesting);
+                long hash = ByteBuffer.wrap(digesting.getMessageDigest().digest()).getLong();
 
-        } catch (Exception e) {
-            circuitBreaker.recordFailure(domain);
+                validatorStore.put(url, new ValidatorStore.Validators(
+                        response.headers().firstValue("ETag").orElse(null),
+                        response.headers().firstValue("Last-Modified").orElse(null),
+                        hash));
 
-            if (e instanceof IOException) {
-                throw (IOException) e;
+                boolean unchanged = previous != null && previous.getContentHash() == hash;
+                return new ConditionalPage(document, hash, unchanged);
             }
-            throw new IOException("HTTP request failed", e);
-        }
+
+            @Override
+            public ConditionalPage notModified(HttpResponse<?> response) {
+                if (previous == null) {
+                    return null;
+                }
+                log.debug("Not modified: {}", url);
+                return new ConditionalPage(null, previous.getContentHash(), true);
+            }
+        });
     }
 
     /**
      * Асинхронный GET запрос
      */
     public CompletableFuture<Document> getAsync(String url) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                return get(url);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
+        return singleFlight.executeAsync(flightKey("document", url, Map.of()),
+                () -> fetchCachedAsync(url, Map.of(), documentParser(url)), Document::clone);
+    }
+
+    /**
+     * Асинхронный GET запрос с получением строки
+     */
+    public CompletableFuture<String> getStringAsync(String url, Map<String, String> headers) {
+        return singleFlight.executeAsync(flightKey("string", url, headers),
+                () -> fetchCachedAsync(url, headers, HttpClient::parseString), UnaryOperator.identity());
     }
 
     /**
@@ -129,17 +190,201 @@ public class HttpClient {
         }
     }
 
+    /**
+     * GET запрос через кэш HTTP ответов
+     */
+    private <T> T fetchCached(String url, Map<String, String> headers, BodyParser<T> parser) throws IOException {
+        String key = ResponseCache.key(url, headers);
+        Optional<ResponseCache.CachedBody> cached = responseCache.get(key, extractDomain(url));
+        if (cached.isPresent()) {
+            log.debug("HTTP cache hit: {}", url);
+            try (InputStream body = cached.get().open()) {
+                return parser.parse(body, cached.get().charset());
+            }
+        }
+        return fetch(url, headers, cachingReader(key, parser));
+    }
+
+    /**
+     * Асинхронный GET запрос через кэш HTTP ответов
+     */
+    private <T> CompletableFuture<T> fetchCachedAsync(String url, Map<String, String> headers, BodyParser<T> parser) {
+        String key = ResponseCache.key(url, headers);
+        Optional<ResponseCache.CachedBody> cached = responseCache.get(key, extractDomain(url));
+        if (cached.isPresent()) {
+            log.debug("HTTP cache hit: {}", url);
+            try (InputStream body = cached.get().open()) {
+                return CompletableFuture.completedFuture(parser.parse(body, cached.get().charset()));
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return fetchAsync(url, headers, cachingReader(key, parser));
+    }
+
+    /**
+     * Разбор тела потоком с параллельной записью в кэш (если он включён).
+     * Тело дочитывается до конца, чтобы в кэш попал полный ответ.
+     */
+    private <T> BodyReader<T> cachingReader(String key, BodyParser<T> parser) {
+        return (body, response) -> {
+            String charset = charsetName(response);
+            ResponseCache.BodyWriter cacheWriter = responseCache.openWriter(key, charset);
+            if (cacheWriter == null) {
+                return parser.parse(body, charset);
+            }
+
+            InputStream teed = new TeeInputStream(body, cacheWriter);
+            T result = parser.parse(teed, charset);
+            drain(teed);
+            cacheWriter.commit();
+            return result;
+        };
+    }
+
+    /**
+     * GET запрос с circuit breaker, rate limiting и повторными попытками
+     */
+    private <T> T fetch(String url, Map<String, String> headers, BodyReader<T> reader) throws IOException {
+        // Проверка Circuit Breaker
+        String domain = extractDomain(url);
+        if (!circuitBreaker.allowRequest(domain)) {
+            throw new HttpException(url, 0, "Circuit breaker is open for domain: " + domain);
+        }
+
+        long startNanos = System.nanoTime();
+        try {
+            // Выполнение запроса с повторными попытками; каждая попытка
+            // проходит rate limiting (отдельный лимит для каждого хоста)
+            T response = retryHandler.executeWithRetry(domain, () -> {
+                acquireRateLimit(domain);
+                return executeRequest(url, headers, reader);
+            });
+
+            circuitBreaker.recordSuccess(domain, System.nanoTime() - startNanos);
+            return response;
+
+        } catch (Exception e) {
+            circuitBreaker.recordFailure(domain, System.nanoTime() - startNanos);
+
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            throw new IOException("HTTP request failed", e);
+        }
+    }
+
+    /**
+     * Асинхронный GET запрос. Лимиты, повторы и circuit breaker работают
+     * без блокировки потоков: ожидание - это отложенное продолжение future.
+     * Каждая попытка может быть продублирована хедж-запросом (app.http.hedgeDelayMs).
+     */
+    private <T> CompletableFuture<T> fetchAsync(String url, Map<String, String> headers, BodyReader<T> reader) {
+        String domain = extractDomain(url);
+        if (!circuitBreaker.allowRequest(domain)) {
+            return CompletableFuture.failedFuture(
+                    new HttpException(url, 0, "Circuit breaker is open for domain: " + domain));
+        }
+
+        long startNanos = System.nanoTime();
+        return retryHandler.executeWithRetryAsync(domain, () -> retryHandler.executeHedgedAsync(domain, () ->
+                        rateLimiter.acquireAsync(domain)
+                                .thenCompose(ignored -> executeRequestAsync(url, headers, reader))))
+                .whenComplete((body, error) -> {
+                    long duration = System.nanoTime() - startNanos;
+                    if (error == null) {
+                        circuitBreaker.recordSuccess(domain, duration);
+                    } else {
+                        circuitBreaker.recordFailure(domain, duration);
+                    }
+                });
+    }
+
+    private void acquireRateLimit(String domain) throws IOException {
+        try {
+            rateLimiter.acquire(domain);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Request interrupted", e);
+        }
+    }
+
     /**
      * Выполнение HTTP запроса
      */
-    private String executeRequest(String url, Map<String, String> headers) throws IOException {
+    private <T> T executeRequest(String url, Map<String, String> headers, BodyReader<T> reader) throws IOException {
+        HttpRequest request = buildGetRequest(url, headers);
+        String domain = extractDomain(url);
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+
+        try {
+            // Адаптивный лимит одновременных запросов к домену
+            permit = concurrencyLimiter.acquire(domain);
+
+            log.debug("HTTP GET: {}", url);
+            HttpResponse<Supplier<InputStream>> response = clientPool.clientFor(domain).send(request, BODY_HANDLER);
+            clientPool.recordResponse(domain, response.version());
+            return handleResponse(url, response, permit, reader);
+
+        } catch (HttpTimeoutException e) {
+            if (permit != null) {
+                permit.onOverload(null);
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Request interrupted", e);
+        } finally {
+            if (permit != null) {
+                permit.release();
+            }
+        }
+    }
+
+    /**
+     * Асинхронное выполнение HTTP запроса: ожидание лимита и ответа без блокировки потока.
+     * Тело читается в потоке исполнителя HttpClient (виртуальные потоки).
+     */
+    private <T> CompletableFuture<T> executeRequestAsync(String url, Map<String, String> headers,
+                                                         BodyReader<T> reader) {
+        HttpRequest request = buildGetRequest(url, headers);
+        String domain = extractDomain(url);
+
+        return concurrencyLimiter.acquireAsync(domain)
+                .thenCompose(permit -> {
+                    log.debug("HTTP GET (async): {}", url);
+                    return clientPool.clientFor(domain).sendAsync(request, BODY_HANDLER)
+                            .handle((response, error) -> {
+                                try {
+                                    if (error != null) {
+                                        Throwable cause = unwrap(error);
+                                        if (cause instanceof HttpTimeoutException) {
+                                            permit.onOverload(null);
+                                        }
+                                        throw new CompletionException(cause);
+                                    }
+                                    clientPool.recordResponse(domain, response.version());
+                                    return handleResponse(url, response, permit, reader);
+                                } catch (IOException e) {
+                                    throw new CompletionException(e);
+                                } finally {
+                                    permit.release();
+                                }
+                            });
+                });
+    }
+
+    /**
+     * Построение GET запроса с заголовками по умолчанию
+     */
+    private HttpRequest buildGetRequest(String url, Map<String, String> headers) {
         HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
                 .uri(URI.create(url))
                 .timeout(Duration.ofSeconds(appProperties.http().timeoutSec()))
                 .header("User-Agent", appProperties.http().userAgent())
                 .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
                 .header("Accept-Language", "ru-RU,ru;q=0.9,en;q=0.8")
-                .header("Accept-Encoding", "gzip, deflate")
+                .header("Accept-Encoding", DecompressingBodyHandler.ACCEPT_ENCODING)
                 .GET();
 
         // Добавление пользовательских заголовков
@@ -150,35 +395,112 @@ public class HttpClient {
             appProperties.http().defaultHeaders().forEach(requestBuilder::header);
         }
 
-        HttpRequest request = requestBuilder.build();
+        return requestBuilder.build();
+    }
 
-        try {
-            log.debug("HTTP GET: {}", url);
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     * Обработка статуса ответа и разбор тела потоком; результат сообщается адаптивному лимиту.
+     * Разрешение лимита освобождается, как только тело дочитано до конца (или поток закрыт):
+     * соединение больше не занято, а остаток разбора идёт вне лимита.
+     */
+    private <T> T handleResponse(String url, HttpResponse<Supplier<InputStream>> response,
+                                 AdaptiveConcurrencyLimiter.Permit permit, BodyReader<T> reader) throws IOException {
+        int statusCode = response.statusCode();
+        log.debug("HTTP Response: {} - Status: {}", url, statusCode);
+
+        if (statusCode >= 200 && statusCode < 300) {
+            InputStream raw;
+            try {
+                raw = response.body().get();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            try (InputStream body = new PermitReleasingInputStream(raw, permit)) {
+                return reader.read(body, response);
+            }
+        }
 
-            int statusCode = response.statusCode();
-            log.debug("HTTP Response: {} - Status: {}", url, statusCode);
+        // Тело ошибки не нужно, но его надо закрыть, чтобы освободить соединение
+        DecompressingBodyHandler.discard(response);
 
-            if (statusCode >= 200 && statusCode < 300) {
-                return response.body();
-            } else if (statusCode == 404) {
-                throw new HttpException(url, statusCode, "Page not found");
-            } else if (statusCode == 403) {
-                throw new HttpException(url, statusCode, "Access forbidden");
-            } else if (statusCode == 429) {
-                throw new HttpException(url, statusCode, "Rate limit exceeded");
-            } else if (statusCode >= 500) {
-                throw new HttpException(url, statusCode, "Server error");
-            } else {
-                throw new HttpException(url, statusCode, "HTTP error");
+        if (statusCode == 304) {
+            T result = reader.notModified(response);
+            if (result != null) {
+                permit.onSuccess();
+                return result;
             }
+            throw new HttpException(url, statusCode, "Not modified");
+        } else if (statusCode == 404) {
+            throw new HttpException(url, statusCode, "Page not found");
+        } else if (statusCode == 403) {
+            throw new HttpException(url, statusCode, "Access forbidden");
+        } else if (statusCode == 429) {
+            Duration retryAfter = retryAfter(response);
+            permit.onOverload(retryAfter);
+            throw new HttpException(url, statusCode, "Rate limit exceeded", retryAfter);
+        } else if (statusCode >= 500) {
+            Duration retryAfter = statusCode == 503 ? retryAfter(response) : null;
+            permit.onOverload(retryAfter);
+            throw new HttpException(url, statusCode, "Server error", retryAfter);
+        } else {
+            throw new HttpException(url, statusCode, "HTTP error");
+        }
+    }
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Request interrupted", e);
+    /**
+     * Значение Retry-After из ответа
+     */
+    private Duration retryAfter(HttpResponse<?> response) {
+        return response.headers().firstValue("Retry-After")
+                .map(AdaptiveConcurrencyLimiter::parseRetryAfter)
+                .orElse(null);
+    }
+
+    /**
+     * Разбор HTML; без charset в заголовках jsoup определяет кодировку по BOM/meta
+     */
+    private static BodyParser<Document> documentParser(String url) {
+        return (body, charset) -> Jsoup.parse(body, charset, url);
+    }
+
+    private static String parseString(InputStream body, String charset) throws IOException {
+        StringWriter text = new StringWriter();
+        new InputStreamReader(body, charset != null ? Charset.forName(charset) : StandardCharsets.UTF_8)
+                .transferTo(text);
+        return text.toString();
+    }
+
+    /**
+     * Дочитывание остатка тела (разборщик мог остановиться до конца потока)
+     */
+    private static void drain(InputStream body) throws IOException {
+        body.transferTo(OutputStream.nullOutputStream());
+    }
+
+    private static String charsetName(HttpResponse<?> response) {
+        Charset charset = DecompressingBodyHandler.charsetOf(response.headers());
+        return charset != null ? charset.name() : null;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
     }
 
+    /**
+     * Ключ объединения запросов: вид результата и ключ кэша
+     */
+    private static String flightKey(String kind, String url, Map<String, String> headers) {
+        return kind + ":" + ResponseCache.key(url, headers);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
     /**
      * Извлечение домена из URL
      */
@@ -190,4 +512,113 @@ public class HttpClient {
             return url;
         }
     }
+
+    /**
+     * Разбор распакованного тела ответа (из сети или из кэша);
+     * charset - из Content-Type, null - не указан
+     */
+    @FunctionalInterface
+    public interface BodyParser<T> {
+        T parse(InputStream body, String charset) throws IOException;
+    }
+
+    /**
+     * Обработка распакованного тела ответа, читаемого потоком из сети
+     */
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(InputStream body, HttpResponse<?> response) throws IOException;
+
+        /**
+         * Результат для 304 Not Modified; null - ответ считается ошибкой
+         */
+        default T notModified(HttpResponse<?> response) {
+            return null;
+        }
+    }
+
+    /**
+     * Тело ответа, освобождающее разрешение адаптивного лимита: при достижении конца
+     * потока - как успешный ответ (задержка учитывается в p95), при закрытии раньше -
+     * без замера задержки
+     */
+    private static final class PermitReleasingInputStream extends FilterInputStream {
+
+        private final AdaptiveConcurrencyLimiter.Permit permit;
+
+        PermitReleasingInputStream(InputStream in, AdaptiveConcurrencyLimiter.Permit permit) {
+            super(in);
+            this.permit = permit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return onRead(super.read());
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return onRead(super.read(b, off, len));
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                permit.release();
+            }
+        }
+
+        private int onRead(int result) {
+            if (result < 0) {
+                permit.onSuccess();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Поток, копирующий всё прочитанное в out (тело ответа - в запись кэша)
+     */
+    private static final class TeeInputStream extends FilterInputStream {
+
+        private final OutputStream out;
+
+        TeeInputStream(InputStream in, OutputStream out) {
+            super(in);
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                out.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                out.write(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Пропущенные байты тоже должны попасть в кэш
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,151 @@
+package com.company.parser.client;
+
+import com.company.parser.config.MetricsConfig;
+import com.company.parser.model.domain.ParsingConfig;
+import com.company.parser.model.domain.Site;
+import com.company.parser.repository.SiteConfigRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Отдельный java.net.http.HttpClient (и пул соединений) на каждый хост
+ *
+ * Клиенты копируют настройки основного (прокси, таймаут соединения, редиректы,
+ * исполнитель, SSL, cookies). По умолчанию предпочитается HTTP/2: запросы к хосту мультиплексируются
+ * в одном соединении. Если первые ответы хоста приходят по HTTP/1.1, клиент
+ * хоста заменяется на HTTP/1.1 - без попыток ALPN/h2c на каждом соединении.
+ * Число одновременных запросов к хосту (соединений HTTP/1.1 или потоков h2)
+ * ограничивает AdaptiveConcurrencyLimiter, сверху - maxConnections сайта
+ * и app.http.maxStreamsPerConnection. Время keep-alive - общая для JVM настройка app.http
+ * (см. HttpClientConfig), отдельно для хоста его задать нельзя.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HttpClientPool {
+
+    private static final int PROTOCOL_PROBE_RESPONSES = 5;
+
+    private final HttpClient defaultClient;
+    private final SiteConfigRepository siteConfigRepository;
+    private final ObjectProvider<MetricsConfig.HttpClientMetrics> metricsProvider;
+    private final Map<String, HostClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * Клиент для хоста
+     */
+    public HttpClient clientFor(String host) {
+        return hostClient(host).client;
+    }
+
+    /**
+     * Учёт версии протокола ответа; при необходимости - переход хоста на HTTP/1.1
+     */
+    public void recordResponse(String host, HttpClient.Version version) {
+        HostClient hostClient = hostClient(host);
+        metricsProvider.ifAvailable(metrics -> metrics.recordProtocol(key(host), version.name()));
+
+        if (version == HttpClient.Version.HTTP_2) {
+            hostClient.http2Responses.incrementAndGet();
+            return;
+        }
+
+        int http1 = hostClient.http1Responses.incrementAndGet();
+        if (hostClient.autoFallback && hostClient.http2Responses.get() == 0
+                && http1 >= PROTOCOL_PROBE_RESPONSES) {
+            fallBackToHttp1(host, hostClient);
+        }
+    }
+
+    /**
+     * Версия протокола клиента по хостам
+     */
+    public Map<String, String> getProtocols() {
+        return clients.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().client.version().name()));
+    }
+
+    // === Private методы ===
+
+    private HostClient hostClient(String host) {
+        return clients.computeIfAbsent(key(host), this::createHostClient);
+    }
+
+    private HostClient createHostClient(String host) {
+        String configured = siteConfigRepository.findByHost(host)
+                .map(Site::getConfig)
+                .map(ParsingConfig::getHttpVersion)
+                .orElse(null);
+
+        HttpClient.Version version = HttpClient.Version.HTTP_2;
+        boolean autoFallback = true;
+        if (configured != null && !configured.isBlank()) {
+            try {
+                version = HttpClient.Version.valueOf(configured.trim().toUpperCase());
+                autoFallback = false;
+            } catch (IllegalArgumentException e) {
+                log.warn("Unknown HTTP version '{}' for host {}, using HTTP/2 with fallback", configured, host);
+            }
+        }
+
+        log.debug("HTTP client for host {}: {}{}", host, version, autoFallback ? " (auto)" : "");
+        return new HostClient(build(version), autoFallback);
+    }
+
+    private synchronized void fallBackToHttp1(String host, HostClient hostClient) {
+        if (!hostClient.autoFallback) {
+            return;
+        }
+        hostClient.autoFallback = false;
+
+        // Прежний клиент не закрывается: его могли уже получить из clientFor, но ещё не отправить
+        // запрос. Без ссылок его соединения закроются по keep-alive, а сам клиент - при сборке мусора.
+        hostClient.client = build(HttpClient.Version.HTTP_1_1);
+
+        log.info("Host {} does not negotiate HTTP/2, switching to HTTP/1.1 pooling", host);
+    }
+
+    private HttpClient build(HttpClient.Version version) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(version)
+                .followRedirects(defaultClient.followRedirects());
+
+        defaultClient.connectTimeout().ifPresent(builder::connectTimeout);
+        defaultClient.proxy().ifPresent(builder::proxy);
+        defaultClient.executor().ifPresent(builder::executor);
+        defaultClient.authenticator().ifPresent(builder::authenticator);
+        defaultClient.cookieHandler().ifPresent(builder::cookieHandler);
+        builder.sslContext(defaultClient.sslContext());
+        builder.sslParameters(defaultClient.sslParameters());
+
+        return builder.build();
+    }
+
+    private static String key(String host) {
+        return host != null ? host.toLowerCase() : "";
+    }
+
+    /**
+     * Клиент хоста и статистика согласованных протоколов
+     */
+    private static final class HostClient {
+
+        private volatile HttpClient client;
+        private volatile boolean autoFallback;
+        private final AtomicInteger http1Responses = new AtomicInteger();
+        private final AtomicInteger http2Responses = new AtomicInteger();
+
+        HostClient(HttpClient client, boolean autoFallback) {
+            this.client = client;
+            this.autoFallback = autoFallback;
+        }
+    }
+}
@@ -1,86 +1,151 @@
 package com.company.parser.client;
 
 import com.company.parser.config.AppProperties;
+import com.company.parser.model.domain.ParsingConfig;
+import com.company.parser.model.domain.Site;
+import com.company.parser.repository.SiteConfigRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
-import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.Semaphore;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Ограничитель частоты запросов
+ * Ограничитель частоты запросов по хостам
+ *
+ * Для каждого хоста - свой token bucket в форме GCRA: состояние хоста - одно
+ * теоретическое время следующего запроса (nanoTime) в AtomicLong, обновляемое CAS.
+ * Пополнение плавное, без таймера. Частота и допустимый всплеск берутся
+ * из config сайта (requestsPerSecond, burst), иначе - из app.http.rateLimitPerSecond.
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class RateLimiter {
 
-    private final AppProperties appProperties;
-    private Semaphore semaphore;
-    private ScheduledExecutorService scheduler;
-
-    @PostConstruct
-    public void init() {
-        int permitsPerSecond = appProperties.http().rateLimitPerSecond();
-        semaphore = new Semaphore(permitsPerSecond);
-
-        // Периодическое восстановление пермитов
-        scheduler = Executors.newScheduledThreadPool(1);
-        scheduler.scheduleAtFixedRate(this::refillPermits, 1, 1, TimeUnit.SECONDS);
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
 
-        log.debug("RateLimiter initialized with {} permits/second", permitsPerSecond);
-    }
+    private final AppProperties appProperties;
+    private final SiteConfigRepository siteConfigRepository;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
 
-    @PreDestroy
-    public void shutdown() {
-        if (scheduler != null && !scheduler.isShutdown()) {
-            scheduler.shutdown();
+    /**
+     * Получение разрешения на запрос к хосту (с ожиданием)
+     */
+    public void acquire(String host) throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = tryAcquire(host)) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
         }
     }
 
     /**
-     * Получение разрешения на выполнение запроса
+     * Получение разрешения без блокировки потока: future завершается,
+     * когда запрос к хосту допустим (ожидание - отложенная задача)
      */
-    public void acquire() throws InterruptedException {
-        semaphore.acquire();
+    public CompletableFuture<Void> acquireAsync(String host) {
+        long waitNanos = tryAcquire(host);
+        if (waitNanos <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Executor delayed = CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS);
+        return CompletableFuture.runAsync(() -> { }, delayed)
+                .thenCompose(ignored -> acquireAsync(host));
     }
 
     /**
      * Попытка получить разрешение без блокировки
+     *
+     * @return 0, если разрешение получено, иначе - через сколько наносекунд стоит повторить
      */
-    public boolean tryAcquire() {
-        return semaphore.tryAcquire();
+    public long tryAcquire(String host) {
+        return bucket(host).tryAcquire(System.nanoTime());
     }
 
     /**
-     * Попытка получить разрешение с таймаутом
+     * Частота запросов к хосту (в секунду)
      */
-    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
-        return semaphore.tryAcquire(timeout, unit);
+    public double getRate(String host) {
+        return NANOS_PER_SECOND / (double) bucket(host).interval;
     }
 
-    /**
-     * Восстановление пермитов
-     */
-    private void refillPermits() {
-        int maxPermits = appProperties.http().rateLimitPerSecond();
-        int currentPermits = semaphore.availablePermits();
-        int permitsToAdd = maxPermits - currentPermits;
+    @EventListener
+    public void onSitesChanged(SiteConfigRepository.SitesChangedEvent event) {
+        // Корзины по хосту, а не по сайту: пересчитываются все. Очередь уже выданных
+        // разрешений (теоретическое время прихода) сохраняется, чтобы смена настроек
+        // не давала внеочередного всплеска.
+        buckets.replaceAll((host, bucket) -> createBucket(host).continueFrom(bucket));
+    }
+
+    // === Private методы ===
 
-        if (permitsToAdd > 0) {
-            semaphore.release(permitsToAdd);
+    private Bucket bucket(String host) {
+        String key = host != null ? host.toLowerCase() : "";
+        return buckets.computeIfAbsent(key, this::createBucket);
+    }
+
+    private Bucket createBucket(String host) {
+        double rate = appProperties.http().rateLimitPerSecond();
+        int burst = 1;
+
+        ParsingConfig config = siteConfigRepository.findByHost(host)
+                .map(Site::getConfig)
+                .orElse(null);
+        if (config != null) {
+            if (config.getRequestsPerSecond() != null && config.getRequestsPerSecond() > 0) {
+                rate = config.getRequestsPerSecond();
+            }
+            if (config.getBurst() != null && config.getBurst() > 0) {
+                burst = config.getBurst();
+            }
         }
+
+        log.debug("Rate limit for host {}: {} req/s, burst {}", host, rate, burst);
+        return new Bucket((long) (NANOS_PER_SECOND / rate), burst);
     }
 
     /**
-     * Получение количества доступных пермитов
+     * GCRA: запрос допускается, если теоретическое время прихода опережает
+     * текущее не больше, чем на допуск всплеска
      */
-    public int availablePermits() {
-        return semaphore.availablePermits();
+    private static final class Bucket {
+
+        private final long interval;
+        private final long tolerance;
+        private final AtomicLong theoreticalArrival;
+
+        Bucket(long interval, int burst) {
+            this.interval = Math.max(1, interval);
+            this.tolerance = this.interval * (burst - 1);
+            this.theoreticalArrival = new AtomicLong(System.nanoTime());
+        }
+
+        /**
+         * Перенос теоретического времени прихода из прежней корзины хоста
+         */
+        Bucket continueFrom(Bucket previous) {
+            theoreticalArrival.set(previous.theoreticalArrival.get());
+            return this;
+        }
+
+        long tryAcquire(long now) {
+            while (true) {
+                long tat = theoreticalArrival.get();
+                long wait = tat - tolerance - now;
+                if (wait > 0) {
+                    return wait;
+                }
+                long next = Math.max(tat, now) + interval;
+                if (theoreticalArrival.compareAndSet(tat, next)) {
+                    return 0;
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,496 @@
+package com.company.parser.client;
+
+import com.company.parser.config.AppProperties;
+import com.company.parser.config.MetricsConfig;
+import com.company.parser.model.domain.ParsingConfig;
+import com.company.parser.model.domain.Site;
+import com.company.parser.repository.SiteConfigRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Двухуровневый кэш тел HTTP ответов
+ *
+ * Тела хранятся сжатыми gzip и разбираются заново при каждом попадании: в кэше нет
+ * DOM-деревьев jsoup, и разные парсеры не делят один изменяемый документ.
+ * Верхний уровень - Caffeine в памяти, ограниченный по суммарному размеру сжатых тел.
+ * Нижний - файлы на диске с адресацией по SHA-256 содержимого и индекс
+ * "ключ запроса -> объект", переживающий перезапуск. Размер диска ограничен
+ * app.http.cacheDiskMb, при превышении удаляются давно не читавшиеся записи.
+ * Файл объекта удаляется, когда на него не остаётся ссылок из индекса (счётчик по хэшу).
+ * Время жизни - из config сайта (cacheTtlMinutes), иначе app.http.cacheTtlMinutes;
+ * сбрасывается при изменении конфигурации сайтов.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ResponseCache {
+
+    private static final String OBJECTS_DIR = "objects-gz";
+    private static final String INDEX_FILE = "index.json.gz";
+    private static final long BYTES_PER_MB = 1024L * 1024L;
+    private static final double EVICT_TO_RATIO = 0.9;
+    private static final long FLUSH_INTERVAL_MS = 60_000;
+    // Время последнего чтения нужно только для LRU-вытеснения: точность до минуты
+    private static final Duration TOUCH_INTERVAL = Duration.ofMillis(FLUSH_INTERVAL_MS);
+
+    private final AppProperties appProperties;
+    private final SiteConfigRepository siteConfigRepository;
+    private final ObjectProvider<MetricsConfig.ParserMetrics> metricsProvider;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, DiskEntry> index = new ConcurrentHashMap<>();
+    private final Map<String, Long> objectSizes = new ConcurrentHashMap<>();
+    private final Map<String, Integer> refCounts = new ConcurrentHashMap<>();
+    private final Map<String, Duration> ttlByHost = new ConcurrentHashMap<>();
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private Cache<String, CachedBody> heap;
+    private Path root;
+    private boolean enabled;
+
+    @PostConstruct
+    public void init() {
+        objectMapper.registerModule(new JavaTimeModule());
+        var httpConfig = appProperties.http();
+        enabled = Boolean.TRUE.equals(httpConfig.cacheEnabled());
+        root = Paths.get(httpConfig.cacheDir());
+
+        heap = Caffeine.newBuilder()
+                .maximumWeight(httpConfig.cacheHeapMb() * BYTES_PER_MB)
+                .weigher((String key, CachedBody value) -> value.compressed().length)
+                .build();
+
+        if (enabled) {
+            loadIndex();
+        }
+
+        metricsProvider.ifAvailable(metrics -> {
+            metrics.bindCacheWeight("heap", () -> heap.policy().eviction()
+                    .map(eviction -> eviction.weightedSize().orElse(0))
+                    .orElse(0L));
+            metrics.bindCacheWeight("disk", diskBytes::get);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Тело ответа из кэша, если оно есть и не устарело
+     */
+    public Optional<CachedBody> get(String key, String host) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Optional<CachedBody> cached = lookup(key, host);
+        metricsProvider.ifAvailable(metrics -> {
+            if (cached.isPresent()) {
+                metrics.recordCacheHit();
+            } else {
+                metrics.recordCacheMiss();
+            }
+        });
+        return cached;
+    }
+
+    /**
+     * Запись тела ответа в кэш по мере его чтения: байты сразу сжимаются gzip и хэшируются,
+     * в памяти копится только сжатое тело. Запись попадает в кэш при {@link BodyWriter#commit()}.
+     *
+     * @return null, если кэш выключен
+     */
+    public BodyWriter openWriter(String key, String charset) {
+        return enabled ? new BodyWriter(key, charset) : null;
+    }
+
+    /**
+     * Ключ кэша запроса: URL и, если есть, отсортированные заголовки
+     */
+    public static String key(String url, Map<String, String> headers) {
+        if (headers == null || headers.isEmpty()) {
+            return url;
+        }
+        return url + "#" + headers.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(e -> e.getKey().toLowerCase() + "=" + e.getValue())
+                .collect(Collectors.joining("&"));
+    }
+
+    /**
+     * Запись индекса на диск, если были изменения
+     */
+    @Scheduled(fixedDelay = FLUSH_INTERVAL_MS)
+    public synchronized void flush() {
+        if (!enabled || !dirty.getAndSet(false)) {
+            return;
+        }
+
+        try {
+            Path target = root.resolve(INDEX_FILE);
+            Path tmp = root.resolve(INDEX_FILE + ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                objectMapper.writeValue(out, Map.copyOf(index));
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            dirty.set(true);
+            log.error("Failed to save HTTP cache index", e);
+        }
+    }
+
+    @EventListener
+    public void onSitesChanged(SiteConfigRepository.SitesChangedEvent event) {
+        // Кэш по хосту, а не по сайту: пересчитывается весь
+        ttlByHost.clear();
+    }
+
+    // === Private методы ===
+
+    private void store(String key, byte[] compressed, String hash, String charset) throws IOException {
+        Instant now = Instant.now();
+        heap.put(key, new CachedBody(compressed, charset, now));
+
+        retain(hash, compressed);
+        DiskEntry previous = index.put(key, new DiskEntry(hash, charset, now, now));
+        dirty.set(true);
+        if (previous != null) {
+            release(previous.getHash());
+        }
+        evictIfNeeded();
+    }
+
+    private Optional<CachedBody> lookup(String key, String host) {
+        Instant notBefore = Instant.now().minus(ttl(host));
+
+        CachedBody cached = heap.getIfPresent(key);
+        if (cached != null) {
+            if (cached.storedAt().isAfter(notBefore)) {
+                touch(key);
+                return Optional.of(cached);
+            }
+            heap.invalidate(key);
+        }
+
+        DiskEntry entry = index.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (!entry.getStoredAt().isAfter(notBefore)) {
+            remove(key, entry);
+            return Optional.empty();
+        }
+
+        try {
+            byte[] compressed = Files.readAllBytes(objectPath(entry.getHash()));
+            cached = new CachedBody(compressed, entry.getCharset(), entry.getStoredAt());
+            heap.put(key, cached);
+            touch(key);
+            return Optional.of(cached);
+        } catch (NoSuchFileException e) {
+            // Файл мог удалить параллельный put, заменивший запись: удаляется только прочитанная запись
+            remove(key, entry);
+        } catch (IOException e) {
+            log.warn("Failed to read cached response {}: {}", key, e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+
+    private void loadIndex() {
+        try {
+            Files.createDirectories(root.resolve(OBJECTS_DIR));
+            Path file = root.resolve(INDEX_FILE);
+            if (Files.exists(file)) {
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+                    index.putAll(objectMapper.readValue(in, new TypeReference<Map<String, DiskEntry>>() {}));
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to load HTTP cache index, starting empty", e);
+            index.clear();
+        }
+
+        // Размер объектов и число ссылок; записи без файла удаляются
+        for (var entry : List.copyOf(index.entrySet())) {
+            String hash = entry.getValue().getHash();
+            if (!objectSizes.containsKey(hash)) {
+                try {
+                    long size = Files.size(objectPath(hash));
+                    objectSizes.put(hash, size);
+                    diskBytes.addAndGet(size);
+                } catch (IOException e) {
+                    index.remove(entry.getKey());
+                    dirty.set(true);
+                    continue;
+                }
+            }
+            refCounts.merge(hash, 1, Integer::sum);
+        }
+
+        log.info("HTTP cache: {} entries, {} MB on disk", index.size(), diskBytes.get() / BYTES_PER_MB);
+    }
+
+    private void writeObject(String hash, byte[] compressed) throws IOException {
+        if (objectSizes.containsKey(hash)) {
+            return;
+        }
+
+        Path target = objectPath(hash);
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(hash + ".tmp");
+        Files.write(tmp, compressed);
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        if (objectSizes.putIfAbsent(hash, (long) compressed.length) == null) {
+            diskBytes.addAndGet(compressed.length);
+        }
+    }
+
+    /**
+     * Вытеснение давно не читавшихся записей до 90% лимита
+     */
+    private synchronized void evictIfNeeded() {
+        long limit = appProperties.http().cacheDiskMb() * BYTES_PER_MB;
+        if (diskBytes.get() <= limit) {
+            return;
+        }
+
+        long target = (long) (limit * EVICT_TO_RATIO);
+        List<Map.Entry<String, DiskEntry>> byAccess = index.entrySet().stream()
+                .sorted(Comparator.comparing(e -> e.getValue().getLastAccess(), Comparator.nullsFirst(Comparator.naturalOrder())))
+                .toList();
+
+        int evicted = 0;
+        for (var entry : byAccess) {
+            if (diskBytes.get() <= target) {
+                break;
+            }
+            if (index.remove(entry.getKey(), entry.getValue())) {
+                heap.invalidate(entry.getKey());
+                release(entry.getValue().getHash());
+                evicted++;
+            }
+        }
+
+        dirty.set(true);
+        log.debug("HTTP cache evicted {} entries, {} MB on disk", evicted, diskBytes.get() / BYTES_PER_MB);
+    }
+
+    /**
+     * Удаление записи, только если индекс всё ещё указывает на неё
+     * (а не на запись, сохранённую за это время другим потоком)
+     */
+    private void remove(String key, DiskEntry entry) {
+        if (index.remove(key, entry)) {
+            heap.invalidate(key);
+            dirty.set(true);
+            release(entry.getHash());
+        }
+    }
+
+    /**
+     * Новая ссылка индекса на объект; первая ссылка записывает файл.
+     * Счётчик и файл меняются атомарно для хэша (compute).
+     */
+    private void retain(String hash, byte[] compressed) throws IOException {
+        try {
+            refCounts.compute(hash, (h, count) -> {
+                if (count == null) {
+                    try {
+                        writeObject(h, compressed);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return 1;
+                }
+                return count + 1;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Снятие ссылки индекса; без ссылок файл объекта удаляется
+     */
+    private void release(String hash) {
+        refCounts.computeIfPresent(hash, (h, count) -> {
+            if (count > 1) {
+                return count - 1;
+            }
+            deleteObject(h);
+            return null;
+        });
+    }
+
+    private void deleteObject(String hash) {
+        Long size = objectSizes.remove(hash);
+        if (size != null) {
+            diskBytes.addAndGet(-size);
+        }
+        try {
+            Files.deleteIfExists(objectPath(hash));
+        } catch (IOException e) {
+            log.debug("Failed to delete cached object {}: {}", hash, e.getMessage());
+        }
+    }
+
+    /**
+     * Обновление времени чтения записи не чаще раза в TOUCH_INTERVAL, чтобы попадания
+     * в кэш не заставляли переписывать индекс при каждом flush
+     */
+    private void touch(String key) {
+        Instant now = Instant.now();
+        DiskEntry entry = index.get(key);
+        if (entry == null || entry.getLastAccess() != null && entry.getLastAccess().plus(TOUCH_INTERVAL).isAfter(now)) {
+            return;
+        }
+        DiskEntry touched = new DiskEntry(entry.getHash(), entry.getCharset(), entry.getStoredAt(), now);
+        if (index.replace(key, entry, touched)) {
+            dirty.set(true);
+        }
+    }
+
+    private Duration ttl(String host) {
+        String key = host != null ? host.toLowerCase() : "";
+        return ttlByHost.computeIfAbsent(key, h -> {
+            Integer minutes = siteConfigRepository.findByHost(h)
+                    .map(Site::getConfig)
+                    .map(ParsingConfig::getCacheTtlMinutes)
+                    .orElse(null);
+            return Duration.ofMinutes(minutes != null && minutes > 0 ? minutes : appProperties.http().cacheTtlMinutes());
+        });
+    }
+
+    private Path objectPath(String hash) {
+        return root.resolve(OBJECTS_DIR).resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Тело ответа из кэша (сжатое gzip)
+     */
+    public record CachedBody(byte[] compressed, String charset, Instant storedAt) {
+
+        /**
+         * Поток распакованного тела
+         */
+        public InputStream open() throws IOException {
+            return new GZIPInputStream(new ByteArrayInputStream(compressed));
+        }
+    }
+
+    /**
+     * Потоковая запись одного тела ответа. Не потокобезопасна; незафиксированная
+     * запись (ошибка разбора, прерванное чтение) в кэш не попадает.
+     */
+    public final class BodyWriter extends OutputStream {
+
+        private final String key;
+        private final String charset;
+        private final MessageDigest digest = sha256();
+        private final ByteArrayOutputStream compressed = new ByteArrayOutputStream(8192);
+        private final GZIPOutputStream gzip;
+
+        private BodyWriter(String key, String charset) {
+            this.key = key;
+            this.charset = charset;
+            try {
+                this.gzip = new GZIPOutputStream(compressed);
+            } catch (IOException e) {
+                // ByteArrayOutputStream не бросает IOException
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            digest.update((byte) b);
+            gzip.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            digest.update(b, off, len);
+            gzip.write(b, off, len);
+        }
+
+        /**
+         * Сохранение записанного тела в кэш
+         */
+        public void commit() {
+            try {
+                gzip.close();
+                store(key, compressed.toByteArray(), HexFormat.of().formatHex(digest.digest()), charset);
+            } catch (IOException e) {
+                log.warn("Failed to store response {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Запись индекса диска
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DiskEntry {
+        private String hash;
+        private String charset;
+        private Instant storedAt;
+        private Instant lastAccess;
+    }
+}
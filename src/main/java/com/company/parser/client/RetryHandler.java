@@ -1,57 +1,216 @@
 package com.company.parser.client;
 
 import com.company.parser.config.AppProperties;
+import com.company.parser.exception.HttpException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Обработчик повторных попыток
+ *
+ * Повторяются только ошибки, которые могут пройти: ввод-вывод и таймауты,
+ * HTTP 408, 429 и 5xx (кроме 501). Остальные 4xx и открытый circuit breaker
+ * возвращаются сразу. Пауза - экспоненциальная с jitter, но не меньше Retry-After.
+ * Повторы и хедж-запросы расходуют бюджет хоста: каждый исходный запрос
+ * пополняет его на retryBudgetPercent% от одного повтора, плюс небольшой запас
+ * на старт - так повторы не превышают ~10% сверх обычного числа запросов.
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class RetryHandler {
 
+    private static final long MAX_DELAY_MS = 30_000;
+    private static final long MAX_RETRY_AFTER_MS = 120_000;
+    private static final int MIN_RETRIES = 10;
+    private static final int MAX_SAVED_RETRIES = 100;
+    private static final long TOKEN = 100;
+
     private final AppProperties appProperties;
+    private final Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
 
     /**
      * Выполнение операции с повторными попытками
      */
     public <T> T executeWithRetry(RetryableOperation<T> operation) throws IOException {
-        int maxAttempts = appProperties.http().maxRetries();
-        int baseDelayMs = appProperties.http().retryDelayMs();
+        return executeWithRetry(null, operation);
+    }
 
-        IOException lastException = null;
+    /**
+     * Выполнение операции с повторными попытками в рамках бюджета хоста
+     */
+    public <T> T executeWithRetry(String host, RetryableOperation<T> operation) throws IOException {
+        int maxAttempts = appProperties.http().maxRetries();
+        RetryBudget budget = budget(host);
+        budget.onRequest();
 
-        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+        for (int attempt = 1; ; attempt++) {
             try {
                 return operation.execute();
 
-            } catch (IOException e) {
-                lastException = e;
+            } catch (IOException | HttpException e) {
+                if (!shouldRetry(e, attempt, maxAttempts, budget, host)) {
+                    throw e;
+                }
 
-                if (attempt < maxAttempts) {
-                    long delay = calculateDelay(attempt, baseDelayMs);
-                    log.debug("Attempt {}/{} failed, retrying after {}ms: {}",
-                            attempt, maxAttempts, delay, e.getMessage());
+                long delay = calculateDelay(e, attempt);
+                log.debug("Attempt {}/{} failed, retrying after {}ms: {}",
+                        attempt, maxAttempts, delay, e.getMessage());
 
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new IOException("Retry interrupted", ie);
-                    }
-                } else {
-                    log.error("All {} attempts failed", maxAttempts);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Retry interrupted", ie);
                 }
             }
         }
+    }
+
+    /**
+     * Асинхронное выполнение операции с повторными попытками. Ошибки классифицируются
+     * как в синхронном варианте; пауза между попытками - отложенное продолжение,
+     * поток не блокируется.
+     */
+    public <T> CompletableFuture<T> executeWithRetryAsync(Supplier<CompletableFuture<T>> operation) {
+        return executeWithRetryAsync(null, operation);
+    }
+
+    /**
+     * Асинхронное выполнение операции с повторными попытками в рамках бюджета хоста
+     */
+    public <T> CompletableFuture<T> executeWithRetryAsync(String host, Supplier<CompletableFuture<T>> operation) {
+        RetryBudget budget = budget(host);
+        budget.onRequest();
+        return attemptAsync(host, budget, operation, 1);
+    }
+
+    /**
+     * Хедж-запрос для идемпотентных операций: если первая попытка не завершилась
+     * за hedgeDelayMs, параллельно запускается вторая (за счёт бюджета повторов).
+     * Результат - первый успешный ответ; ошибка - только если не удались обе.
+     * При hedgeDelayMs = 0 операция выполняется как есть.
+     */
+    public <T> CompletableFuture<T> executeHedgedAsync(String host, Supplier<CompletableFuture<T>> operation) {
+        long hedgeDelayMs = appProperties.http().hedgeDelayMs();
+        CompletableFuture<T> primary = start(operation);
+        if (hedgeDelayMs <= 0 || primary.isDone()) {
+            return primary;
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        BiConsumer<T, Throwable> onComplete = (value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(error));
+            }
+        };
+        primary.whenComplete(onComplete);
 
-        throw lastException;
+        Executor delayed = CompletableFuture.delayedExecutor(hedgeDelayMs, TimeUnit.MILLISECONDS);
+        delayed.execute(() -> {
+            if (result.isDone() || !budget(host).tryWithdraw()) {
+                return;
+            }
+            outstanding.incrementAndGet();
+            log.debug("Request to {} slower than {}ms, sending hedged request", host, hedgeDelayMs);
+            CompletableFuture<T> hedge = start(operation);
+            hedge.whenComplete(onComplete);
+            result.whenComplete((value, error) -> {
+                primary.cancel(false);
+                hedge.cancel(false);
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Оставшийся бюджет повторов хоста (в повторах)
+     */
+    public double getRemainingBudget(String host) {
+        return budget(host).balance.get() / (double) TOKEN;
+    }
+
+    // === Private методы ===
+
+    private <T> CompletableFuture<T> attemptAsync(String host, RetryBudget budget,
+                                                  Supplier<CompletableFuture<T>> operation, int attempt) {
+        int maxAttempts = appProperties.http().maxRetries();
+
+        return start(operation)
+                .handle((result, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(result);
+                    }
+                    Throwable cause = unwrap(error);
+                    if (!shouldRetry(cause, attempt, maxAttempts, budget, host)) {
+                        return CompletableFuture.<T>failedFuture(cause);
+                    }
+
+                    long delay = calculateDelay(cause, attempt);
+                    log.debug("Attempt {}/{} failed, retrying after {}ms: {}",
+                            attempt, maxAttempts, delay, cause.getMessage());
+
+                    Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+                    return CompletableFuture.runAsync(() -> { }, delayed)
+                            .thenCompose(ignored -> attemptAsync(host, budget, operation, attempt + 1));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private boolean shouldRetry(Throwable error, int attempt, int maxAttempts, RetryBudget budget, String host) {
+        if (!isRetryable(error)) {
+            return false;
+        }
+        if (attempt >= maxAttempts) {
+            log.error("All {} attempts failed", maxAttempts);
+            return false;
+        }
+        if (!budget.tryWithdraw()) {
+            log.warn("Retry budget exhausted for {}, giving up: {}", host, error.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Классификация ошибки: имеет ли смысл повтор
+     */
+    static boolean isRetryable(Throwable error) {
+        if (error instanceof HttpException http) {
+            int status = http.getStatusCode();
+            return status == 408 || status == 429 || (status >= 500 && status != 501);
+        }
+        return error instanceof IOException;
+    }
+
+    /**
+     * Расчет задержки: экспоненциальная с jitter, но не меньше Retry-After сервера
+     */
+    private long calculateDelay(Throwable error, int attempt) {
+        long delay = calculateDelay(attempt, appProperties.http().retryDelayMs());
+        if (error instanceof HttpException http && http.getRetryAfter() != null) {
+            delay = Math.max(delay, Math.min(http.getRetryAfter().toMillis(), MAX_RETRY_AFTER_MS));
+        }
+        return delay;
     }
 
     /**
@@ -62,8 +221,7 @@ public class RetryHandler {
         long exponentialDelay = baseDelayMs * (1L << (attempt - 1));
 
         // Максимальная задержка 30 секунд
-        long maxDelay = 30_000;
-        long delay = Math.min(exponentialDelay, maxDelay);
+        long delay = Math.min(exponentialDelay, MAX_DELAY_MS);
 
         // Добавление jitter (±25%)
         long jitter = ThreadLocalRandom.current().nextLong(
@@ -74,6 +232,55 @@ public class RetryHandler {
         return jitter;
     }
 
+    private RetryBudget budget(String host) {
+        return budgets.computeIfAbsent(host != null ? host.toLowerCase() : "",
+                key -> new RetryBudget(appProperties.http().retryBudgetPercent()));
+    }
+
+    private static <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> operation) {
+        try {
+            return operation.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+    }
+
+    /**
+     * Бюджет повторов хоста в сотых долях повтора: запрос кладёт percent,
+     * повтор забирает TOKEN. Баланс ограничен, чтобы долгая спокойная работа
+     * не накопила бюджет на шквал повторов.
+     */
+    private static final class RetryBudget {
+
+        private final long deposit;
+        private final AtomicLong balance = new AtomicLong(MIN_RETRIES * TOKEN);
+
+        RetryBudget(int percent) {
+            this.deposit = percent;
+        }
+
+        void onRequest() {
+            balance.updateAndGet(current -> Math.min(current + deposit, MAX_SAVED_RETRIES * TOKEN));
+        }
+
+        boolean tryWithdraw() {
+            while (true) {
+                long current = balance.get();
+                if (current < TOKEN) {
+                    return false;
+                }
+                if (balance.compareAndSet(current, current - TOKEN)) {
+                    return true;
+                }
+            }
+        }
+    }
+
     /**
      * Функциональный интерфейс для операции с повторами
      */
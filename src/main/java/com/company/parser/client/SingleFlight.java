@@ -0,0 +1,156 @@
+package com.company.parser.client;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Объединение одновременных одинаковых запросов (single-flight)
+ *
+ * Первый вызов по ключу выполняет запрос, остальные, пришедшие до его завершения,
+ * ждут тот же результат. Каждый ожидающий получает свою копию (copy) - копии
+ * делаются до того, как оригинал отдаётся первому вызову, поэтому изменяемый
+ * результат (jsoup Document) никогда не используется двумя вызовами сразу.
+ */
+@Slf4j
+final class SingleFlight {
+
+    private final Map<String, Flight<?>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Синхронный вызов: первый выполняет call в своём потоке, остальные ждут
+     */
+    <T> T execute(String key, IoCall<T> call, UnaryOperator<T> copy) throws IOException {
+        Flight<T> flight = new Flight<>();
+        CompletableFuture<T> joined = join(key, flight);
+        if (joined != null) {
+            return await(joined);
+        }
+
+        T result;
+        try {
+            result = call.call();
+        } catch (Throwable e) {
+            // Любая ошибка, включая Error, завершает ожидающих и освобождает ключ
+            finish(key, flight, null, e, copy);
+            throw e;
+        }
+        finish(key, flight, result, null, copy);
+        return result;
+    }
+
+    /**
+     * Асинхронный вызов: первый запускает call, остальные получают копию его результата
+     */
+    <T> CompletableFuture<T> executeAsync(String key, Supplier<CompletableFuture<T>> call, UnaryOperator<T> copy) {
+        Flight<T> flight = new Flight<>();
+        CompletableFuture<T> joined = join(key, flight);
+        if (joined != null) {
+            return joined;
+        }
+
+        CompletableFuture<T> leader = new CompletableFuture<>();
+        CompletableFuture<T> started;
+        try {
+            started = call.get();
+        } catch (Throwable e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((result, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            finish(key, flight, result, cause, copy);
+            if (cause != null) {
+                leader.completeExceptionally(cause);
+            } else {
+                leader.complete(result);
+            }
+        });
+        return leader;
+    }
+
+    /**
+     * Регистрация вызова: null - вызов первый и выполняет запрос сам,
+     * иначе - future с копией результата уже идущего запроса
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> join(String key, Flight<T> own) {
+        while (true) {
+            Flight<T> existing = (Flight<T>) flights.putIfAbsent(key, own);
+            if (existing == null) {
+                return null;
+            }
+            synchronized (existing) {
+                if (!existing.done) {
+                    CompletableFuture<T> follower = new CompletableFuture<>();
+                    existing.followers.add(follower);
+                    log.debug("Joining in-flight request: {}", key);
+                    return follower;
+                }
+            }
+            // Запрос только что завершился - пробуем стать первым
+            flights.remove(key, existing);
+        }
+    }
+
+    private <T> void finish(String key, Flight<T> flight, T result, Throwable error, UnaryOperator<T> copy) {
+        List<CompletableFuture<T>> followers;
+        synchronized (flight) {
+            flight.done = true;
+            followers = flight.followers;
+        }
+        flights.remove(key, flight);
+
+        for (CompletableFuture<T> follower : followers) {
+            if (error != null) {
+                follower.completeExceptionally(error);
+                continue;
+            }
+            try {
+                follower.complete(result != null ? copy.apply(result) : null);
+            } catch (RuntimeException e) {
+                follower.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Request interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("HTTP request failed", cause);
+        }
+    }
+
+    /**
+     * Синхронный запрос
+     */
+    @FunctionalInterface
+    interface IoCall<T> {
+        T call() throws IOException;
+    }
+
+    private static final class Flight<T> {
+        private final List<CompletableFuture<T>> followers = new ArrayList<>();
+        private boolean done;
+    }
+}
@@ -0,0 +1,133 @@
+package com.company.parser.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Хранилище валидаторов HTTP ответов (ETag, Last-Modified) и хэша содержимого по URL
+ *
+ * Нужно для условных запросов между запусками: хранится на диске и
+ * сбрасывается периодически и при остановке.
+ */
+@Slf4j
+@Component
+public class ValidatorStore {
+
+    private static final String STORE_DIR = "./data/http";
+    private static final String STORE_FILE = "validators.json.gz";
+    private static final long FLUSH_INTERVAL_MS = 60_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Validators> validators = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    @PostConstruct
+    public void init() {
+        Path file = Paths.get(STORE_DIR, STORE_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            Map<String, Validators> loaded = objectMapper.readValue(in,
+                    new TypeReference<Map<String, Validators>>() {});
+            validators.putAll(loaded);
+            log.info("Loaded HTTP validators for {} URLs", validators.size());
+        } catch (IOException e) {
+            log.error("Failed to load HTTP validators, starting empty", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Валидаторы URL
+     */
+    public Optional<Validators> find(String url) {
+        return Optional.ofNullable(validators.get(url));
+    }
+
+    /**
+     * Сохранение валидаторов URL
+     */
+    public void put(String url, Validators value) {
+        validators.put(url, value);
+        dirty.set(true);
+    }
+
+    /**
+     * Запись на диск, если были изменения
+     */
+    @Scheduled(fixedDelay = FLUSH_INTERVAL_MS)
+    public synchronized void flush() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+
+        try {
+            Path dir = Paths.get(STORE_DIR);
+            Files.createDirectories(dir);
+            Path target = dir.resolve(STORE_FILE);
+            Path tmp = dir.resolve(STORE_FILE + ".tmp");
+
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                objectMapper.writeValue(out, Map.copyOf(validators));
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.debug("Saved HTTP validators for {} URLs", validators.size());
+
+        } catch (IOException e) {
+            dirty.set(true);
+            log.error("Failed to save HTTP validators", e);
+        }
+    }
+
+    /**
+     * Валидаторы одного ответа
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Validators {
+
+        /**
+         * ETag ответа (может быть null)
+         */
+        private String etag;
+
+        /**
+         * Last-Modified ответа (может быть null)
+         */
+        private String lastModified;
+
+        /**
+         * Хэш распакованного тела (первые 8 байт SHA-256)
+         */
+        private long contentHash;
+    }
+}
@@ -68,6 +68,12 @@ public record AppProperties(
             @Min(100) @Max(60000)
             Integer retryDelayMs,
 
+            @Min(0) @Max(100)
+            Integer retryBudgetPercent,
+
+            @Min(0) @Max(60000)
+            Integer hedgeDelayMs,
+
             @Min(1) @Max(50)
             Integer maxConcurrentRequests,
 
@@ -79,6 +85,23 @@ public record AppProperties(
             @Min(1) @Max(60)
             Integer cacheTtlMinutes,
 
+            @Min(1) @Max(1024)
+            Integer cacheHeapMb,
+
+            @Min(1) @Max(65536)
+            Integer cacheDiskMb,
+
+            String cacheDir,
+
+            @Min(1) @Max(3600)
+            Integer keepAliveSeconds,
+
+            @Min(1) @Max(1000)
+            Integer maxStreamsPerConnection,
+
+            @Min(0) @Max(10000)
+            Integer connectionPoolSize,
+
             Map<String, String> defaultHeaders,
 
             ProxySettings proxy
@@ -89,10 +112,18 @@ public record AppProperties(
             userAgent = userAgent != null ? userAgent : "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36";
             maxRetries = maxRetries != null ? maxRetries : 3;
             retryDelayMs = retryDelayMs != null ? retryDelayMs : 1000;
+            retryBudgetPercent = retryBudgetPercent != null ? retryBudgetPercent : 10;
+            hedgeDelayMs = hedgeDelayMs != null ? hedgeDelayMs : 0;
             maxConcurrentRequests = maxConcurrentRequests != null ? maxConcurrentRequests : 10;
             rateLimitPerSecond = rateLimitPerSecond != null ? rateLimitPerSecond : 5;
             cacheEnabled = cacheEnabled != null ? cacheEnabled : true;
             cacheTtlMinutes = cacheTtlMinutes != null ? cacheTtlMinutes : 5;
+            cacheHeapMb = cacheHeapMb != null ? cacheHeapMb : 32;
+            cacheDiskMb = cacheDiskMb != null ? cacheDiskMb : 512;
+            cacheDir = cacheDir != null ? cacheDir : "./data/http-cache";
+            keepAliveSeconds = keepAliveSeconds != null ? keepAliveSeconds : 30;
+            maxStreamsPerConnection = maxStreamsPerConnection != null ? maxStreamsPerConnection : 100;
+            connectionPoolSize = connectionPoolSize != null ? connectionPoolSize : 0;
         }
     }
 
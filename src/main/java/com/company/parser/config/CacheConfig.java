@@ -2,7 +2,6 @@ package com.company.parser.config;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.Ticker;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
@@ -27,12 +26,9 @@ import java.util.stream.Collectors;
 @Slf4j
 @Configuration
 @EnableCaching
-@RequiredArgsConstructor
 @ConditionalOnProperty(name = "app.http.cacheEnabled", havingValue = "true", matchIfMissing = true)
 public class CacheConfig implements CachingConfigurer {
 
-    private final AppProperties appProperties;
-
     /**
      * Основной менеджер кэша
      */
@@ -60,7 +56,6 @@ public class CacheConfig implements CachingConfigurer {
         return Arrays.asList(
                 buildCache("sitesConfig", 100, 60, TimeUnit.MINUTES),
                 buildCache("sizesConfig", 100, 60, TimeUnit.MINUTES),
-                buildCache("httpResponses", 1000, appProperties.http().cacheTtlMinutes(), TimeUnit.MINUTES),
                 buildCache("parsedData", 500, 10, TimeUnit.MINUTES),
                 buildCache("statistics", 50, 5, TimeUnit.MINUTES),
                 buildCache("priceHistory", 200, 30, TimeUnit.MINUTES),
@@ -90,17 +85,6 @@ public class CacheConfig implements CachingConfigurer {
         return Ticker.systemTicker();
     }
 
-    /**
-     * Кэш для HTTP ответов
-     */
-    @Bean
-    public Caffeine<Object, Object> httpCacheBuilder() {
-        return Caffeine.newBuilder()
-                .maximumSize(1000)
-                .expireAfterWrite(appProperties.http().cacheTtlMinutes(), TimeUnit.MINUTES)
-                .recordStats();
-    }
-
     /**
      * Кэш для конфигураций
      */
@@ -1,8 +1,12 @@
 package com.company.parser.config;
 
+import com.company.parser.client.DecompressingBodyHandler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -33,6 +37,10 @@ public class HttpClientConfig {
     public HttpClient httpClient() {
         var httpConfig = appProperties.http();
 
+        // Обычно уже заданы connectionPropertiesInitializer; здесь - если приложение
+        // запущено без него (значения, заданные раньше, не перезаписываются)
+        applyConnectionProperties(httpConfig);
+
         var builder = HttpClient.newBuilder()
                 .version(HttpClient.Version.HTTP_2)
                 .connectTimeout(Duration.ofSeconds(httpConfig.timeoutSec()))
@@ -80,6 +88,40 @@ public class HttpClientConfig {
                 .build();
     }
 
+    /**
+     * Установка свойств пула соединений до создания бинов: JDK читает их один раз,
+     * при загрузке классов java.net.http, то есть при создании первого клиента в JVM.
+     * Регистрируется в ParserApplication.main.
+     */
+    public static ApplicationListener<ApplicationEnvironmentPreparedEvent> connectionPropertiesInitializer() {
+        // Анонимный класс, а не лямбда: Spring определяет по нему тип события
+        return new ApplicationListener<>() {
+            @Override
+            public void onApplicationEvent(ApplicationEnvironmentPreparedEvent event) {
+                Binder.get(event.getEnvironment())
+                        .bind("app.http", AppProperties.Http.class)
+                        .ifBound(HttpClientConfig::applyConnectionProperties);
+            }
+        };
+    }
+
+    /**
+     * Системные свойства пула соединений java.net.http. Они общие для всех клиентов JVM
+     * и всех хостов; ограничение на хост - maxConnections сайта (AdaptiveConcurrencyLimiter).
+     * Значения, заданные через -D, не перезаписываются.
+     */
+    private static void applyConnectionProperties(AppProperties.Http httpConfig) {
+        setIfAbsent("jdk.httpclient.keepalive.timeout", httpConfig.keepAliveSeconds());
+        setIfAbsent("jdk.httpclient.keepalive.timeout.h2", httpConfig.keepAliveSeconds());
+        setIfAbsent("jdk.httpclient.connectionPoolSize", httpConfig.connectionPoolSize());
+    }
+
+    private static void setIfAbsent(String property, Object value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, String.valueOf(value));
+        }
+    }
+
     /**
      * Создание ProxySelector
      */
@@ -156,7 +198,8 @@ public class HttpClientConfig {
             headers.put("User-Agent", userAgent);
             headers.put("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
             headers.put("Accept-Language", "ru-RU,ru;q=0.9,en;q=0.8");
-            headers.put("Accept-Encoding", "gzip, deflate, br");
+            // br не запрашиваем: распаковщика brotli в JDK нет
+            headers.put("Accept-Encoding", DecompressingBodyHandler.ACCEPT_ENCODING);
             headers.put("Connection", "keep-alive");
             headers.put("Cache-Control", "no-cache");
 
@@ -21,6 +21,7 @@ import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import jakarta.annotation.PostConstruct;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.function.Supplier;
 
 /**
  * Конфигурация метрик и мониторинга
@@ -232,6 +233,16 @@ public class MetricsConfig {
             cacheMisses.increment();
         }
 
+        /**
+         * Размер кэша HTTP ответов в байтах (tier: heap или disk)
+         */
+        public void bindCacheWeight(String tier, Supplier<Number> weight) {
+            Gauge.builder("parser.cache.weight.bytes", weight)
+                    .description("HTTP response cache size in bytes")
+                    .tag("tier", tier)
+                    .register(registry);
+        }
+
         public Timer.Sample startTimer() {
             return Timer.start(registry);
         }
@@ -307,6 +318,18 @@ public class MetricsConfig {
                     .record(duration);
         }
 
+        /**
+         * Версия протокола, согласованная с хостом (HTTP_2 / HTTP_1_1)
+         */
+        public void recordProtocol(String host, String version) {
+            Counter.builder("http.client.protocol")
+                    .description("HTTP responses by negotiated protocol version")
+                    .tag("host", host)
+                    .tag("version", version)
+                    .register(registry)
+                    .increment();
+        }
+
         public void recordError(String host, String errorType) {
             errorCounter.increment();
 
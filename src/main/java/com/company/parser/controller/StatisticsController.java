@@ -1,4 +1,81 @@
 package com.company.parser.controller;
 
+import com.company.parser.model.dto.PriceDTO;
+import com.company.parser.model.dto.StatisticsDTO;
+import com.company.parser.service.analysis.PriceAnalysisService;
+import com.company.parser.service.analysis.StatisticsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/statistics")
+@RequiredArgsConstructor
 public class StatisticsController {
+
+    private final StatisticsService statisticsService;
+    private final PriceAnalysisService analysisService;
+
+    /**
+     * Статистика текущих цен сайта
+     */
+    @GetMapping("/site/{siteId}")
+    public ResponseEntity<StatisticsDTO> getSiteStatistics(@PathVariable String siteId) {
+        return ResponseEntity.ok(statisticsService.getSiteStatistics(siteId));
+    }
+
+    /**
+     * Статистика текущих цен по размеру
+     */
+    @GetMapping("/size")
+    public ResponseEntity<StatisticsDTO> getSizeStatistics(@RequestParam String size) {
+        return ResponseEntity.ok(statisticsService.getSizeStatistics(size));
+    }
+
+    /**
+     * Статистика текущих цен по толщине
+     */
+    @GetMapping("/thickness")
+    public ResponseEntity<StatisticsDTO> getThicknessStatistics(@RequestParam String thickness) {
+        return ResponseEntity.ok(statisticsService.getThicknessStatistics(thickness));
+    }
+
+    /**
+     * Статистика цен, полученных за день
+     */
+    @GetMapping("/date/{date}")
+    public ResponseEntity<StatisticsDTO> getDailyStatistics(
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(statisticsService.getDailyStatistics(date));
+    }
+
+    /**
+     * Динамика цены продукта по прогонам за период
+     */
+    @GetMapping("/trend")
+    public ResponseEntity<List<PriceDTO>> getPriceTrend(
+            @RequestParam String siteId,
+            @RequestParam(required = false) String size,
+            @RequestParam(required = false) String thickness,
+            @RequestParam(required = false) String steelGrade,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(analysisService.getPriceTrend(siteId, size, thickness, steelGrade, from, to));
+    }
+
+    /**
+     * Цены всех прогонов за период
+     */
+    @GetMapping("/period")
+    public ResponseEntity<List<PriceDTO>> getPricesForPeriod(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(analysisService.getPricesForPeriod(from, to));
+    }
 }
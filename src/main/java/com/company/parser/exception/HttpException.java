@@ -1,5 +1,7 @@
 package com.company.parser.exception;
 
+import java.time.Duration;
+
 /**
  * Исключение при HTTP ошибках
  */
@@ -8,6 +10,7 @@ public class HttpException extends ParserException {
     private int statusCode;
     private String url;
     private String method;
+    private Duration retryAfter;
 
     public HttpException(String message) {
         super(message);
@@ -24,6 +27,11 @@ public class HttpException extends ParserException {
         this.statusCode = statusCode;
     }
 
+    public HttpException(String url, int statusCode, String message, Duration retryAfter) {
+        this(url, statusCode, message);
+        this.retryAfter = retryAfter;
+    }
+
     public HttpException(String method, String url, int statusCode, String message) {
         super(String.format("HTTP %s %s failed with status %d: %s",
                 method, url, statusCode, message));
@@ -44,6 +52,13 @@ public class HttpException extends ParserException {
         return method;
     }
 
+    /**
+     * Значение Retry-After ответа (429/503); null, если не было
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
     public boolean isClientError() {
         return statusCode >= 400 && statusCode < 500;
     }
@@ -2,6 +2,8 @@ package com.company.parser.mapper;
 
 import com.company.parser.model.domain.PriceRecord;
 import com.company.parser.model.dto.*;
+import com.company.parser.util.Kopecks;
+import com.company.parser.util.PriceSummary;
 import com.company.parser.util.PriceUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
@@ -33,24 +35,22 @@ public class ReportMapper {
 
         List<SitePriceDTO> sitePrices = pricesBySite.entrySet().stream()
                 .filter(entry -> !entry.getKey().equals(baseSiteId))
-                .map(entry -> createSitePriceDto(entry.getValue(), basePrice))
+                .map(entry -> createSitePriceDto(entry.getValue(), baseRecord))
                 .sorted(Comparator.comparing(SitePriceDTO::getPrice))
                 .toList();
 
         // Расчет min/max
-        List<BigDecimal> allPrices = pricesBySite.values().stream()
-                .map(PriceRecord::getPrice)
-                .filter(Objects::nonNull)
-                .toList();
+        PriceSummary prices = new PriceSummary();
+        pricesBySite.values().forEach(prices::accept);
 
-        BigDecimal minPrice = allPrices.stream().min(BigDecimal::compareTo).orElse(null);
-        BigDecimal maxPrice = allPrices.stream().max(BigDecimal::compareTo).orElse(null);
+        BigDecimal minPrice = prices.getMin();
+        BigDecimal maxPrice = prices.getMax();
 
         BigDecimal priceRange = null;
         BigDecimal priceRangePercent = null;
 
         if (minPrice != null && maxPrice != null) {
-            priceRange = maxPrice.subtract(minPrice);
+            priceRange = priceUtils.calculateChangeAmount(minPrice, maxPrice);
             if (minPrice.compareTo(BigDecimal.ZERO) > 0) {
                 priceRangePercent = priceUtils.calculateChangePercent(minPrice, maxPrice);
             }
@@ -74,13 +74,20 @@ public class ReportMapper {
     /**
      * Создание SitePriceDTO
      */
-    private SitePriceDTO createSitePriceDto(PriceRecord record, BigDecimal basePrice) {
+    private SitePriceDTO createSitePriceDto(PriceRecord record, PriceRecord baseRecord) {
         BigDecimal difference = null;
         BigDecimal differencePercent = null;
 
-        if (basePrice != null && record.getPrice() != null) {
-            difference = record.getPrice().subtract(basePrice);
-            differencePercent = priceUtils.calculateChangePercent(basePrice, record.getPrice());
+        if (baseRecord != null && baseRecord.getPrice() != null && record.getPrice() != null) {
+            long baseKopecks = baseRecord.getPriceKopecks();
+            long kopecks = record.getPriceKopecks();
+            if (baseKopecks != Kopecks.NONE && kopecks != Kopecks.NONE) {
+                difference = Kopecks.toBigDecimal(kopecks - baseKopecks);
+                differencePercent = priceUtils.calculateChangePercent(baseKopecks, kopecks);
+            } else {
+                difference = priceUtils.calculateChangeAmount(baseRecord.getPrice(), record.getPrice());
+                differencePercent = priceUtils.calculateChangePercent(baseRecord.getPrice(), record.getPrice());
+            }
         }
 
         return SitePriceDTO.builder()
@@ -123,11 +130,8 @@ public class ReportMapper {
                 .count();
 
         // Статистика цен
-        DoubleSummaryStatistics priceStats = records.stream()
-                .map(PriceRecord::getPrice)
-                .filter(Objects::nonNull)
-                .mapToDouble(BigDecimal::doubleValue)
-                .summaryStatistics();
+        PriceSummary prices = new PriceSummary();
+        records.forEach(prices::accept);
 
         // Статистика изменений
         int priceIncreases = 0;
@@ -151,9 +155,9 @@ public class ReportMapper {
                 .recordsBySite(recordsBySite)
                 .uniqueProducts(uniqueProducts)
                 .uniqueSizes(uniqueSizes)
-                .averagePrice(BigDecimal.valueOf(priceStats.getAverage()))
-                .minPrice(BigDecimal.valueOf(priceStats.getMin()))
-                .maxPrice(BigDecimal.valueOf(priceStats.getMax()))
+                .averagePrice(prices.getAverage())
+                .minPrice(prices.getMin())
+                .maxPrice(prices.getMax())
                 .priceIncreases(priceIncreases)
                 .priceDecreases(priceDecreases)
                 .newProducts(newProducts)
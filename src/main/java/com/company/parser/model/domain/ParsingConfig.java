@@ -32,6 +32,82 @@ public class ParsingConfig {
     @Builder.Default
     private long delayBetweenPages = 500;
 
+    /**
+     * Частота запросов к сайту (в секунду); null - общее значение app.http.rateLimitPerSecond
+     */
+    private Double requestsPerSecond;
+
+    /**
+     * Допустимый всплеск запросов сверх равномерной частоты; null - без всплеска
+     */
+    private Integer burst;
+
+    /**
+     * Конвейерная пагинация: URL следующей страницы определяется до разбора карточек,
+     * и страница загружается в фоне, пока разбирается текущая
+     */
+    @Builder.Default
+    private boolean pipelinedPagination = false;
+
+    /**
+     * Условные запросы (If-None-Match / If-Modified-Since): для неизменившейся страницы
+     * используются записи, разобранные в прошлый запуск
+     */
+    @Builder.Default
+    private boolean conditionalFetch = false;
+
+    /**
+     * Потоковое извлечение: страница не строится целиком, в памяти держатся только
+     * карточки (listSelector) по мере чтения; скрипты и стили отбрасываются.
+     * Имеет приоритет над условными запросами; поддерживается не всеми парсерами
+     */
+    @Builder.Default
+    private boolean streamingExtraction = false;
+
+    /**
+     * Параллельный разбор карточек страницы (общий ограниченный ForkJoinPool);
+     * порядок записей сохраняется
+     */
+    @Builder.Default
+    private boolean parallelCardParsing = false;
+
+    /**
+     * Доля ошибок в скользящем окне (%), при которой circuit breaker размыкается; null - 50
+     */
+    private Integer circuitFailureRatePercent;
+
+    /**
+     * Доля медленных ответов в окне (%), при которой circuit breaker размыкается; null - 100 (не учитывается)
+     */
+    private Integer circuitSlowCallRatePercent;
+
+    /**
+     * Порог медленного ответа (мс); null - 10000
+     */
+    private Integer circuitSlowCallMs;
+
+    /**
+     * Время в разомкнутом состоянии до пробных запросов (секунды); null - 30
+     */
+    private Integer circuitOpenSeconds;
+
+    /**
+     * Версия HTTP для сайта: HTTP_2 или HTTP_1_1; null - HTTP/2 с переходом
+     * на HTTP/1.1, если сайт его не согласует
+     */
+    private String httpVersion;
+
+    /**
+     * Максимум одновременных запросов к хосту сайта (соединений HTTP/1.1 или потоков
+     * HTTP/2); null - app.http.maxConcurrentRequests
+     */
+    private Integer maxConnections;
+
+    /**
+     * Время жизни ответов сайта в кэше HTTP (минуты); null - app.http.cacheTtlMinutes
+     */
+    private Integer cacheTtlMinutes;
+
     /**
      * Загружать ли детальные страницы товаров
      */
@@ -1,5 +1,6 @@
 package com.company.parser.model.domain;
 
+import com.company.parser.util.Kopecks;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -71,13 +72,27 @@ public class PriceHistory {
      * Расчет изменения цены
      */
     public void calculateChange() {
-        if (previousPrice != null && price != null) {
-            priceChange = price.subtract(previousPrice);
-            if (previousPrice.compareTo(BigDecimal.ZERO) != 0) {
-                priceChangePercent = priceChange
-                        .divide(previousPrice, 4, java.math.RoundingMode.HALF_UP)
-                        .multiply(BigDecimal.valueOf(100));
-            }
+        calculateChange(Kopecks.of(price), Kopecks.of(previousPrice));
+    }
+
+    /**
+     * Расчет изменения цены по уже известным копейкам цен (без повторного перевода).
+     * Если цена не представима в копейках ({@link Kopecks#NONE}), расчет идет в BigDecimal.
+     */
+    public void calculateChange(long priceKopecks, long previousPriceKopecks) {
+        if (previousPrice == null || price == null) return;
+
+        if (priceKopecks != Kopecks.NONE && previousPriceKopecks != Kopecks.NONE) {
+            priceChange = Kopecks.toBigDecimal(priceKopecks - previousPriceKopecks);
+            priceChangePercent = Kopecks.changePercent(previousPriceKopecks, priceKopecks);
+            return;
+        }
+
+        priceChange = price.subtract(previousPrice);
+        if (previousPrice.compareTo(BigDecimal.ZERO) != 0) {
+            priceChangePercent = priceChange
+                    .divide(previousPrice, 4, java.math.RoundingMode.HALF_UP)
+                    .multiply(BigDecimal.valueOf(100));
         }
     }
 }
@@ -1,13 +1,20 @@
 package com.company.parser.model.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.company.parser.util.Kopecks;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Основная модель записи о цене товара
@@ -88,6 +95,24 @@ public class PriceRecord {
      */
     private Map<String, String> additionalProperties;
 
+    /**
+     * Вычисленный ключ продукта (не входит в builder, JSON и equals)
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final transient AtomicReference<CachedKey> cachedKey = new AtomicReference<>();
+
+    /**
+     * Цена в копейках, вычисленная из price (не входит в builder, JSON и equals)
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final transient AtomicReference<CachedKopecks> cachedKopecks = new AtomicReference<>();
+
     /**
      * Проверка валидности записи
      */
@@ -108,4 +133,66 @@ public class PriceRecord {
                 steelGrade != null ? steelGrade : ""
         );
     }
+
+    /**
+     * Компактный ключ продукта для карт сравнения и кэшей.
+     * Вычисляется один раз и пересчитывается, только если поля ключа заменены.
+     */
+    @JsonIgnore
+    public ProductKey getProductKey() {
+        CachedKey cached = cachedKey.get();
+        if (cached != null && cached.isFor(siteId, size, thickness, steelGrade)) {
+            return cached.key();
+        }
+        ProductKey key = ProductKey.of(siteId, size, thickness, steelGrade);
+        cachedKey.set(new CachedKey(siteId, size, thickness, steelGrade, key));
+        return key;
+    }
+
+    /**
+     * Цена в копейках для внутренних сравнений и статистики; {@link Kopecks#NONE},
+     * если цены нет или она не представима в копейках точно.
+     * Вычисляется один раз и пересчитывается, только если цена заменена.
+     */
+    @JsonIgnore
+    public long getPriceKopecks() {
+        CachedKopecks cached = cachedKopecks.get();
+        if (cached != null && cached.price() == price) {
+            return cached.kopecks();
+        }
+        long kopecks = Kopecks.of(price);
+        cachedKopecks.set(new CachedKopecks(price, kopecks));
+        return kopecks;
+    }
+
+    /**
+     * Сравнение цены с ценой другой записи (по значению, без учёта масштаба).
+     * В копейках, если обе цены в них представимы, иначе в BigDecimal.
+     */
+    public int comparePrice(PriceRecord other) {
+        long kopecks = getPriceKopecks();
+        long otherKopecks = other.getPriceKopecks();
+        if (kopecks != Kopecks.NONE && otherKopecks != Kopecks.NONE) {
+            return Long.compare(kopecks, otherKopecks);
+        }
+        return price.compareTo(other.getPrice());
+    }
+
+    /**
+     * Ключ и поля, из которых он вычислен
+     */
+    private record CachedKey(String siteId, String size, String thickness, String steelGrade, ProductKey key) {
+
+        // Сравнение ссылок: строки неизменяемы, другая ссылка - просто пересчёт ключа
+        boolean isFor(String siteId, String size, String thickness, String steelGrade) {
+            return this.siteId == siteId && this.size == size
+                    && this.thickness == thickness && this.steelGrade == steelGrade;
+        }
+    }
+
+    /**
+     * Копейки и цена, из которой они вычислены
+     */
+    private record CachedKopecks(BigDecimal price, long kopecks) {
+    }
 }
@@ -0,0 +1,199 @@
+package com.company.parser.model.domain;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Компактный ключ продукта: сайт, размер, толщина и марка стали
+ *
+ * Значения полей интернируются в словари процесса, а их id (по 16 бит)
+ * упаковываются в один long. Сравнение и хэширование ключа не трогают строки,
+ * поэтому ключ дёшев для карт сравнения прогонов и кэшей репозиториев.
+ * Null и пустая строка считаются одним значением, как в {@link PriceRecord#getUniqueKey()}.
+ *
+ * Словарь поля ограничен 65535 значениями. Если значение в него уже не помещается,
+ * ключ хранит строки полей как есть: сравнение дороже, но ключ по-прежнему
+ * однозначен (заполненный словарь новых значений не принимает).
+ */
+@Slf4j
+public final class ProductKey {
+
+    private static final int FIELD_BITS = 16;
+    private static final int MAX_ID = (1 << FIELD_BITS) - 1;
+    private static final String SEPARATOR = "|";
+    private static final int NOT_INTERNED = -1;
+
+    private static final Dictionary SITES = new Dictionary("siteId");
+    private static final Dictionary SIZES = new Dictionary("size");
+    private static final Dictionary THICKNESSES = new Dictionary("thickness");
+    private static final Dictionary GRADES = new Dictionary("steelGrade");
+
+    private final long packed;
+    // Строки полей (сайт, размер, толщина, марка), если значения не поместились в словари; иначе null
+    private final String[] values;
+    private final int hash;
+
+    private ProductKey(long packed) {
+        this.packed = packed;
+        this.values = null;
+        // Перемешивание битов (SplitMix64), чтобы соседние id не давали соседних хэшей
+        long h = packed * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        this.hash = (int) (h ^ (h >>> 31));
+    }
+
+    private ProductKey(String[] values) {
+        this.packed = 0;
+        this.values = values;
+        this.hash = Arrays.hashCode(values);
+    }
+
+    /**
+     * Создание ключа из значений полей
+     */
+    public static ProductKey of(String siteId, String size, String thickness, String steelGrade) {
+        int site = SITES.intern(siteId);
+        int sizeId = SIZES.intern(size);
+        int thicknessId = THICKNESSES.intern(thickness);
+        int grade = GRADES.intern(steelGrade);
+        if (site == NOT_INTERNED || sizeId == NOT_INTERNED || thicknessId == NOT_INTERNED || grade == NOT_INTERNED) {
+            return new ProductKey(new String[] {
+                    normalize(siteId), normalize(size), normalize(thickness), normalize(steelGrade)});
+        }
+        return new ProductKey(((long) site << (3 * FIELD_BITS))
+                | ((long) sizeId << (2 * FIELD_BITS))
+                | ((long) thicknessId << FIELD_BITS)
+                | grade);
+    }
+
+    /**
+     * Создание ключа из сайта и строкового ключа продукта (size|thickness|steelGrade)
+     */
+    public static ProductKey parse(String siteId, String productKey) {
+        String[] parts = productKey != null ? productKey.split("\\|", -1) : new String[0];
+        return of(siteId,
+                parts.length > 0 ? parts[0] : null,
+                parts.length > 1 ? parts[1] : null,
+                parts.length > 2 ? parts[2] : null);
+    }
+
+    /**
+     * Ключ без марки стали (продукт определяется сайтом, размером и толщиной)
+     */
+    public ProductKey withoutSteelGrade() {
+        if (values != null) {
+            return values[3].isEmpty() ? this : of(values[0], values[1], values[2], null);
+        }
+        long withoutGrade = packed & ~(long) MAX_ID;
+        return withoutGrade == packed ? this : new ProductKey(withoutGrade);
+    }
+
+    public String getSiteId() {
+        return values != null ? values[0] : SITES.value(field(3));
+    }
+
+    public String getSize() {
+        return values != null ? values[1] : SIZES.value(field(2));
+    }
+
+    public String getThickness() {
+        return values != null ? values[2] : THICKNESSES.value(field(1));
+    }
+
+    public String getSteelGrade() {
+        return values != null ? values[3] : GRADES.value(field(0));
+    }
+
+    /**
+     * Строковый ключ продукта без сайта (size|thickness|steelGrade)
+     */
+    public String toProductKeyString() {
+        return String.join(SEPARATOR, getSize(), getThickness(), getSteelGrade());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ProductKey other)) return false;
+        // Способ хранения определяется значениями, поэтому равные ключи хранятся одинаково
+        return values == null
+                ? other.values == null && packed == other.packed
+                : Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(SEPARATOR, getSiteId(), getSize(), getThickness(), getSteelGrade());
+    }
+
+    private int field(int index) {
+        return (int) (packed >>> (index * FIELD_BITS)) & MAX_ID;
+    }
+
+    private static String normalize(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * Словарь значений одного поля: строка -> id и обратно. Id 0 зарезервирован за пустым значением.
+     * Заполненный словарь новых значений не принимает (NOT_INTERNED).
+     */
+    private static final class Dictionary {
+
+        private final String field;
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[64];
+        private int size;
+        private boolean full;
+
+        Dictionary(String field) {
+            this.field = field;
+            ids.put("", 0);
+            values[0] = "";
+            size = 1;
+        }
+
+        int intern(String value) {
+            if (value == null || value.isEmpty()) return 0;
+
+            Integer id = ids.get(value);
+            return id != null ? id : register(value);
+        }
+
+        String value(int id) {
+            return values[id];
+        }
+
+        private synchronized int register(String value) {
+            Integer id = ids.get(value);
+            if (id != null) return id;
+
+            if (size > MAX_ID) {
+                if (!full) {
+                    full = true;
+                    log.warn("Product key dictionary for {} is full ({} values), new values are not interned",
+                            field, size);
+                }
+                return NOT_INTERNED;
+            }
+
+            // Значение записывается в массив до публикации id через карту
+            String[] current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, Math.min(current.length * 2, MAX_ID + 1));
+            }
+            current[size] = value;
+            values = current;
+            ids.put(value, size);
+            return size++;
+        }
+    }
+}
@@ -1,21 +1,33 @@
 package com.company.parser.parser.base;
 
+import com.company.parser.client.ConditionalPage;
 import com.company.parser.client.HttpClient;
 import com.company.parser.exception.ParseException;
 import com.company.parser.exception.ScrapingException;
 import com.company.parser.model.domain.ParsingConfig;
 import com.company.parser.model.domain.PriceRecord;
 import com.company.parser.model.domain.Site;
+import com.company.parser.parser.selector.SelectorPlan;
+import com.company.parser.repository.PageRecordRepository;
 import com.company.parser.util.SizeNormalizer;
 import com.company.parser.util.TextUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
 
+import java.io.Serial;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -25,62 +37,113 @@ import java.util.concurrent.ThreadLocalRandom;
 @RequiredArgsConstructor
 public abstract class AbstractSiteParser implements SiteParser {
 
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Общий для всех сайтов пул разбора карточек: не больше потоков, чем ядер
+    private static final ForkJoinPool CARD_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private static final int CARD_SPLIT_THRESHOLD = 32;
+
     protected final HttpClient httpClient;
     protected final TextUtils textUtils;
     protected final SizeNormalizer sizeNormalizer;
+    protected final PageRecordRepository pageRecordRepository;
 
     /**
      * Основной метод парсинга сайта
      */
     @Override
     public List<PriceRecord> parse(Site site) {
+        List<PriceRecord> records = new ArrayList<>();
+        parse(site, page -> {
+            records.addAll(page);
+            return true;
+        });
+        return records;
+    }
+
+    /**
+     * Постраничный парсинг сайта. Пост-обработка выполняется для каждой страницы,
+     * и записи сразу передаются получателю, поэтому в памяти держится только текущая страница
+     * (и множество уже переданных записей прогона для отсева повторов между страницами).
+     */
+    @Override
+    public int parse(Site site, PageSink sink) {
         validateSite(site);
 
         log.info("Starting parse for site: {} ({})", site.getId(), site.getName());
 
         try {
-            List<PriceRecord> records = new ArrayList<>();
+            int fetchedCount = 0;
+            int emittedCount = 0;
             Set<String> visitedUrls = new HashSet<>();
+            // Записи, уже переданные получателю: повторы с прошлых страниц отбрасываются,
+            // как distinct() по всему результату. Хранятся ссылки на те же объекты, что у получателя.
+            Set<PriceRecord> emittedRecords = new HashSet<>();
             ParsingContext context = createContext(site);
 
             String currentUrl = site.getStartUrl();
             int pageNumber = 1;
+            boolean pipelined = site.getConfig() != null && site.getConfig().isPipelinedPagination();
+            CompletableFuture<LoadedPage> prefetched = null;
 
-            while (shouldContinueParsing(context, pageNumber, records.size(), currentUrl)) {
+            while (shouldContinueParsing(context, pageNumber, fetchedCount, currentUrl)) {
                 // Проверка на циклы
                 if (!visitedUrls.add(currentUrl)) {
                     log.warn("URL already visited: {}", currentUrl);
                     break;
                 }
 
+                List<PriceRecord> pageRecords;
                 try {
-                    // Загрузка страницы
-                    Document document = loadPage(currentUrl);
+                    // Загрузка страницы (в конвейерном режиме - уже запущенная в фоне)
+                    LoadedPage page = prefetched != null ? awaitPage(prefetched) : loadPage(currentUrl, site);
+                    prefetched = null;
+
+                    // Конвейер: следующая страница грузится, пока разбираются карточки текущей
+                    String nextUrl = null;
+                    if (pipelined) {
+                        nextUrl = nextPageUrl(page, site);
+                        prefetched = prefetchPage(nextUrl, site, visitedUrls, pageNumber + 1);
+                    }
 
-                    // Парсинг товаров на странице
-                    List<PriceRecord> pageRecords = parsePage(document, site, context, currentUrl);
+                    // Парсинг товаров на странице (неизменившаяся страница не разбирается повторно)
+                    if (page.cached != null) {
+                        pageRecords = page.cached.getRecords();
+                        context.addRecords(pageRecords.size());
+                        log.debug("Page {} not modified, reusing {} parsed records", pageNumber, pageRecords.size());
+                    } else if (page.streamed != null) {
+                        // Карточки уже извлечены при потоковом чтении
+                        pageRecords = page.streamed.records();
+                        context.addRecords(pageRecords.size());
+                    } else {
+                        pageRecords = parsePage(page.document, site, context, currentUrl);
+                    }
 
                     if (pageRecords.isEmpty() && pageNumber > 1) {
                         log.info("No items found on page {}, stopping", pageNumber);
                         break;
                     }
 
-                    records.addAll(pageRecords);
+                    fetchedCount += pageRecords.size();
                     log.info("Page {} parsed: {} items found (total: {})",
-                            pageNumber, pageRecords.size(), records.size());
+                            pageNumber, pageRecords.size(), fetchedCount);
 
                     // Получение URL следующей страницы
-                    currentUrl = getNextPageUrl(document, site);
-                    pageNumber++;
-
-                    // Задержка между страницами
-                    if (currentUrl != null) {
-                        pauseBetweenPages(site.getConfig());
+                    if (!pipelined) {
+                        nextUrl = nextPageUrl(page, site);
+                    }
+                    if (page.cached == null && page.contentHash != null) {
+                        pageRecordRepository.save(site.getId(), currentUrl, page.contentHash,
+                                pageRecordRepository.configHash(site), nextUrl, pageRecords);
                     }
+                    currentUrl = nextUrl;
+                    pageNumber++;
 
                 } catch (Exception e) {
                     log.error("Error parsing page {} of site {}: {}",
                             pageNumber, site.getId(), e.getMessage());
+                    discard(prefetched);
+                    prefetched = null;
 
                     if (pageNumber == 1) {
                         // Если первая страница не загрузилась, прерываем
@@ -88,14 +151,32 @@ public abstract class AbstractSiteParser implements SiteParser {
                                 "Failed to load first page: " + e.getMessage());
                     }
                     // Для остальных страниц продолжаем
+                    continue;
+                }
+
+                // Пост-обработка и передача страницы получателю
+                List<PriceRecord> processedRecords = postProcess(pageRecords, site).stream()
+                        .filter(emittedRecords::add)
+                        .toList();
+                if (!processedRecords.isEmpty()) {
+                    emittedCount += processedRecords.size();
+                    if (!sink.accept(processedRecords)) {
+                        log.info("Parsing of site {} stopped by consumer", site.getId());
+                        break;
+                    }
+                }
+
+                // Задержка между страницами (в конвейерном режиме выдерживается перед фоновой загрузкой)
+                if (currentUrl != null && prefetched == null) {
+                    pauseBetweenPages(site.getConfig());
                 }
             }
 
-            // Пост-обработка результатов
-            List<PriceRecord> processedRecords = postProcess(records, site);
+            // Предзагрузка могла оказаться лишней (остановка по лимиту или получателем)
+            discard(prefetched);
 
-            log.info("Parsing completed for site {}: {} records", site.getId(), processedRecords.size());
-            return processedRecords;
+            log.info("Parsing completed for site {}: {} records", site.getId(), emittedCount);
+            return emittedCount;
 
         } catch (Exception e) {
             log.error("Failed to parse site {}: {}", site.getId(), e.getMessage(), e);
@@ -114,6 +195,45 @@ public abstract class AbstractSiteParser implements SiteParser {
      */
     protected abstract String getNextPageUrl(Document document, Site site);
 
+    /**
+     * Потоковое извлечение страницы без построения Document (режим streamingExtraction).
+     * По умолчанию не поддерживается.
+     *
+     * @return null, если парсер не поддерживает режим для этого сайта
+     */
+    protected StreamedPage streamPage(String url, Site site) throws Exception {
+        return null;
+    }
+
+    /**
+     * Разбор карточек страницы в порядке документа. Ошибка или null для карточки -
+     * карточка пропускается. При parallelCardParsing список делится пополам до
+     * CARD_SPLIT_THRESHOLD карточек и разбирается в CARD_POOL; cardParser должен
+     * быть потокобезопасным (карточки независимы, документ только читается).
+     */
+    protected List<PriceRecord> parseCards(Elements cards, Site site, CardParser cardParser) {
+        boolean parallel = site.getConfig() != null && site.getConfig().isParallelCardParsing();
+        if (!parallel || cards.size() <= CARD_SPLIT_THRESHOLD) {
+            return parseCards(cards, 0, cards.size(), cardParser);
+        }
+        return CARD_POOL.invoke(new CardTask(cards, 0, cards.size(), cardParser));
+    }
+
+    private static List<PriceRecord> parseCards(Elements cards, int from, int to, CardParser cardParser) {
+        List<PriceRecord> records = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            try {
+                PriceRecord record = cardParser.parse(cards.get(i));
+                if (record != null) {
+                    records.add(record);
+                }
+            } catch (Exception e) {
+                log.debug("Failed to parse product card: {}", e.getMessage());
+            }
+        }
+        return records;
+    }
+
     /**
      * Создание контекста парсинга
      */
@@ -144,6 +264,102 @@ public abstract class AbstractSiteParser implements SiteParser {
         return httpClient.get(url);
     }
 
+    /**
+     * Загрузка страницы с учётом условных запросов. Если страница не изменилась
+     * и её записи сохранены, документ не загружается и не разбирается.
+     */
+    private LoadedPage loadPage(String url, Site site) throws Exception {
+        if (site.getConfig() != null && site.getConfig().isStreamingExtraction()) {
+            log.debug("Loading page (streaming): {}", url);
+            StreamedPage streamed = streamPage(url, site);
+            if (streamed != null) {
+                return new LoadedPage(streamed);
+            }
+        }
+        if (site.getConfig() == null || !site.getConfig().isConditionalFetch()) {
+            return new LoadedPage(loadPage(url), null, null);
+        }
+
+        log.debug("Loading page (conditional): {}", url);
+        ConditionalPage response = httpClient.getConditional(url, true);
+        if (response.isUnchanged()) {
+            Optional<PageRecordRepository.CachedPage> cached =
+                    pageRecordRepository.find(site.getId(), url, response.getContentHash(),
+                            pageRecordRepository.configHash(site));
+            if (cached.isPresent()) {
+                return new LoadedPage(null, response.getContentHash(), cached.get());
+            }
+            if (response.getDocument() == null) {
+                // 304, но записей страницы нет - загружаем полностью
+                response = httpClient.getConditional(url, false);
+            }
+        }
+        return new LoadedPage(response.getDocument(), response.getContentHash(), null);
+    }
+
+    /**
+     * URL следующей страницы: из документа, из сохранённой или потоково разобранной страницы
+     */
+    private String nextPageUrl(LoadedPage page, Site site) {
+        if (page.cached != null) {
+            return page.cached.getNextPageUrl();
+        }
+        if (page.streamed != null) {
+            return page.streamed.nextPageUrl();
+        }
+        return getNextPageUrl(page.document, site);
+    }
+
+    /**
+     * Фоновая загрузка следующей страницы с задержкой между страницами.
+     * Загрузка идёт через HttpClient, поэтому ограничение частоты запросов к сайту сохраняется.
+     *
+     * @return null, если следующей страницы нет или её загрузка не понадобится
+     */
+    protected CompletableFuture<LoadedPage> prefetchPage(String url, Site site, Set<String> visitedUrls, int pageNumber) {
+        if (url == null || url.isBlank() || visitedUrls.contains(url)) {
+            return null;
+        }
+        ParsingConfig config = site.getConfig();
+        if (config != null && pageNumber > config.getMaxPages()) {
+            return null;
+        }
+
+        log.debug("Prefetching page {} of site {}: {}", pageNumber, site.getId(), url);
+        return CompletableFuture.supplyAsync(() -> {
+            pauseBetweenPages(config);
+            try {
+                return loadPage(url, site);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, PREFETCH_EXECUTOR);
+    }
+
+    /**
+     * Ожидание предзагруженной страницы; ошибка загрузки пробрасывается как из loadPage
+     */
+    private LoadedPage awaitPage(CompletableFuture<LoadedPage> page) throws Exception {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Отказ от ненужной предзагрузки. Уже начатый запрос не прерывается;
+     * без условных запросов его результат остаётся в кэше HTTP ответов.
+     */
+    private void discard(CompletableFuture<LoadedPage> page) {
+        if (page != null) {
+            page.cancel(false);
+        }
+    }
+
     /**
      * Проверка необходимости продолжения парсинга
      */
@@ -185,7 +401,7 @@ public abstract class AbstractSiteParser implements SiteParser {
     }
 
     /**
-     * Пост-обработка результатов
+     * Пост-обработка результатов страницы
      */
     protected List<PriceRecord> postProcess(List<PriceRecord> records, Site site) {
         return records.stream()
@@ -239,7 +455,7 @@ public abstract class AbstractSiteParser implements SiteParser {
     }
 
     /**
-     * Безопасное извлечение текста по селектору
+     * Безопасное извлечение текста по селектору (запрос компилируется один раз)
      */
     protected String extractText(Element element, String selector) {
         if (element == null || selector == null || selector.isBlank()) {
@@ -247,14 +463,31 @@ public abstract class AbstractSiteParser implements SiteParser {
         }
 
         try {
-            Element found = element.selectFirst(selector);
-            return found != null ? textUtils.normalize(found.text()) : "";
+            return extractText(element, SelectorPlan.compile(selector));
         } catch (Exception e) {
             log.debug("Failed to extract text with selector '{}': {}", selector, e.getMessage());
             return "";
         }
     }
 
+    /**
+     * Извлечение текста по скомпилированному селектору
+     */
+    protected String extractText(Element element, Evaluator selector) {
+        if (element == null || selector == null) {
+            return "";
+        }
+
+        return textOf(element.selectFirst(selector));
+    }
+
+    /**
+     * Нормализованный текст найденного элемента ("" - если не найден)
+     */
+    protected String textOf(Element found) {
+        return found != null ? textUtils.normalize(found.text()) : "";
+    }
+
     /**
      * Безопасное извлечение цены
      */
@@ -263,6 +496,14 @@ public abstract class AbstractSiteParser implements SiteParser {
         return textUtils.extractPrice(text).orElse(null);
     }
 
+    /**
+     * Извлечение цены по скомпилированному селектору
+     */
+    protected BigDecimal extractPrice(Element element, Evaluator selector) {
+        String text = extractText(element, selector);
+        return textUtils.extractPrice(text).orElse(null);
+    }
+
     /**
      * Безопасное извлечение URL
      */
@@ -272,11 +513,106 @@ public abstract class AbstractSiteParser implements SiteParser {
         }
 
         try {
-            Element link = element.selectFirst(selector);
-            return link != null ? link.absUrl("href") : null;
+            return extractUrl(element, SelectorPlan.compile(selector));
         } catch (Exception e) {
             log.debug("Failed to extract URL with selector '{}': {}", selector, e.getMessage());
             return null;
         }
     }
+
+    /**
+     * Извлечение URL по скомпилированному селектору
+     */
+    protected String extractUrl(Element element, Evaluator selector) {
+        if (element == null || selector == null) {
+            return null;
+        }
+
+        return hrefOf(element.selectFirst(selector));
+    }
+
+    /**
+     * Абсолютный URL ссылки (null - если не найдена)
+     */
+    protected String hrefOf(Element link) {
+        return link != null ? link.absUrl("href") : null;
+    }
+
+    /**
+     * Разбор одной карточки; null - карточка пропускается
+     */
+    @FunctionalInterface
+    protected interface CardParser {
+        PriceRecord parse(Element card);
+    }
+
+    /**
+     * Разбор диапазона карточек: левая половина - в fork, правая - в текущем потоке,
+     * результаты склеиваются в исходном порядке
+     */
+    private static final class CardTask extends RecursiveTask<List<PriceRecord>> {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        // задача не сериализуется: живёт только в CARD_POOL
+        private final transient Elements cards;
+        private final int from;
+        private final int to;
+        private final transient CardParser cardParser;
+
+        CardTask(Elements cards, int from, int to, CardParser cardParser) {
+            this.cards = cards;
+            this.from = from;
+            this.to = to;
+            this.cardParser = cardParser;
+        }
+
+        @Override
+        protected List<PriceRecord> compute() {
+            if (to - from <= CARD_SPLIT_THRESHOLD) {
+                return parseCards(cards, from, to, cardParser);
+            }
+            int middle = (from + to) >>> 1;
+            CardTask left = new CardTask(cards, from, middle, cardParser);
+            left.fork();
+            List<PriceRecord> right = new CardTask(cards, middle, to, cardParser).compute();
+
+            List<PriceRecord> records = new ArrayList<>(left.join());
+            records.addAll(right);
+            return records;
+        }
+    }
+
+    /**
+     * Результат потокового извлечения страницы: записи карточек и URL следующей страницы
+     */
+    public record StreamedPage(List<PriceRecord> records, String nextPageUrl) {
+    }
+
+    /**
+     * Загруженная страница: документ для разбора, сохранённые записи неизменившейся страницы
+     * или записи, извлечённые потоково
+     */
+    protected static final class LoadedPage {
+
+        private final Document document;
+        private final Long contentHash;
+        private final PageRecordRepository.CachedPage cached;
+        private final StreamedPage streamed;
+
+        private LoadedPage(Document document, Long contentHash, PageRecordRepository.CachedPage cached) {
+            this.document = document;
+            this.contentHash = contentHash;
+            this.cached = cached;
+            this.streamed = null;
+        }
+
+        private LoadedPage(StreamedPage streamed) {
+            this.document = null;
+            this.contentHash = null;
+            this.cached = null;
+            this.streamed = streamed;
+        }
+    }
 }
@@ -0,0 +1,22 @@
+package com.company.parser.parser.base;
+
+import com.company.parser.model.domain.PriceRecord;
+
+import java.util.List;
+
+/**
+ * Получатель записей, передаваемых парсером постранично
+ *
+ * Вызывается синхронно в потоке парсинга: следующая страница не загружается,
+ * пока получатель не обработал текущую, поэтому медленный потребитель
+ * естественно притормаживает парсер.
+ */
+@FunctionalInterface
+public interface PageSink {
+
+    /**
+     * Обработка записей очередной страницы (после пост-обработки)
+     * @return false, чтобы остановить парсинг сайта
+     */
+    boolean accept(List<PriceRecord> page);
+}
@@ -17,6 +17,21 @@ public interface SiteParser {
      */
     List<PriceRecord> parse(Site site);
 
+    /**
+     * Постраничный парсинг сайта: записи каждой страницы передаются получателю
+     * сразу после её разбора, без накопления всего каталога
+     * @param site конфигурация сайта
+     * @param sink получатель записей страницы
+     * @return количество переданных записей
+     */
+    default int parse(Site site, PageSink sink) {
+        List<PriceRecord> records = parse(site);
+        if (!records.isEmpty()) {
+            sink.accept(records);
+        }
+        return records.size();
+    }
+
     /**
      * Получение типа парсера
      */
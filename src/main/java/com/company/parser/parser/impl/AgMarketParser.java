@@ -4,6 +4,7 @@ import com.company.parser.client.HttpClient;
 import com.company.parser.model.domain.PriceRecord;
 import com.company.parser.model.domain.Site;
 import com.company.parser.parser.base.ParsingContext;
+import com.company.parser.repository.PageRecordRepository;
 import com.company.parser.util.SizeNormalizer;
 import com.company.parser.util.TextUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -14,7 +15,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -29,8 +29,9 @@ public class AgMarketParser extends CustomSiteParser {
     private static final Pattern ARTICLE_PATTERN = Pattern.compile("Артикул:\\s*(\\S+)");
 
     @Autowired
-    public AgMarketParser(HttpClient httpClient, TextUtils textUtils, SizeNormalizer sizeNormalizer) {
-        super(httpClient, textUtils, sizeNormalizer);
+    public AgMarketParser(HttpClient httpClient, TextUtils textUtils, SizeNormalizer sizeNormalizer,
+                          PageRecordRepository pageRecordRepository) {
+        super(httpClient, textUtils, sizeNormalizer, pageRecordRepository);
     }
 
     @Override
@@ -41,21 +42,10 @@ public class AgMarketParser extends CustomSiteParser {
     @Override
     protected List<PriceRecord> parsePage(Document document, Site site,
                                           ParsingContext context, String pageUrl) {
-        List<PriceRecord> records = new ArrayList<>();
-
         // AG Market использует другую структуру
         Elements productCards = document.select(".products-list .product-card");
 
-        for (Element card : productCards) {
-            try {
-                PriceRecord record = parseAgMarketProduct(card, pageUrl);
-                if (record != null) {
-                    records.add(record);
-                }
-            } catch (Exception e) {
-                log.debug("Failed to parse AG Market product: {}", e.getMessage());
-            }
-        }
+        List<PriceRecord> records = parseCards(productCards, site, card -> parseAgMarketProduct(card, pageUrl));
 
         context.addRecords(records.size());
         return records;
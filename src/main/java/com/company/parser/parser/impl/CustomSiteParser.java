@@ -5,6 +5,7 @@ import com.company.parser.model.domain.PriceRecord;
 import com.company.parser.model.domain.Site;
 import com.company.parser.parser.base.AbstractSiteParser;
 import com.company.parser.parser.base.ParsingContext;
+import com.company.parser.repository.PageRecordRepository;
 import com.company.parser.util.SizeNormalizer;
 import com.company.parser.util.TextUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -23,8 +24,9 @@ import java.util.List;
 public abstract class CustomSiteParser extends AbstractSiteParser {
 
     @Autowired
-    public CustomSiteParser(HttpClient httpClient, TextUtils textUtils, SizeNormalizer sizeNormalizer) {
-        super(httpClient, textUtils, sizeNormalizer);
+    public CustomSiteParser(HttpClient httpClient, TextUtils textUtils, SizeNormalizer sizeNormalizer,
+                            PageRecordRepository pageRecordRepository) {
+        super(httpClient, textUtils, sizeNormalizer, pageRecordRepository);
     }
 
     @Override
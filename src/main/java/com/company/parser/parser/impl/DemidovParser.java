@@ -4,6 +4,7 @@ import com.company.parser.client.HttpClient;
 import com.company.parser.model.domain.PriceRecord;
 import com.company.parser.model.domain.Site;
 import com.company.parser.parser.base.ParsingContext;
+import com.company.parser.repository.PageRecordRepository;
 import com.company.parser.util.SizeNormalizer;
 import com.company.parser.util.TextUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -14,7 +15,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -25,8 +25,9 @@ import java.util.List;
 public class DemidovParser extends CustomSiteParser {
 
     @Autowired
-    public DemidovParser(HttpClient httpClient, TextUtils textUtils, SizeNormalizer sizeNormalizer) {
-        super(httpClient, textUtils, sizeNormalizer);
+    public DemidovParser(HttpClient httpClient, TextUtils textUtils, SizeNormalizer sizeNormalizer,
+                         PageRecordRepository pageRecordRepository) {
+        super(httpClient, textUtils, sizeNormalizer, pageRecordRepository);
     }
 
     @Override
@@ -37,21 +38,10 @@ public class DemidovParser extends CustomSiteParser {
     @Override
     protected List<PriceRecord> parsePage(Document document, Site site,
                                           ParsingContext context, String pageUrl) {
-        List<PriceRecord> records = new ArrayList<>();
-
         // Специфичные селекторы для Demidov Steel
         Elements productCards = document.select(".catalog__list .catalog-item");
 
-        for (Element card : productCards) {
-            try {
-                PriceRecord record = parseDemidovProduct(card, pageUrl);
-                if (record != null) {
-                    records.add(record);
-                }
-            } catch (Exception e) {
-                log.debug("Failed to parse Demidov product: {}", e.getMessage());
-            }
-        }
+        List<PriceRecord> records = parseCards(productCards, site, card -> parseDemidovProduct(card, pageUrl));
 
         context.addRecords(records.size());
         return records;
@@ -3,33 +3,47 @@ package com.company.parser.parser.impl;
 import com.company.parser.client.HttpClient;
 import com.company.parser.model.domain.PriceRecord;
 import com.company.parser.model.domain.Site;
-import com.company.parser.model.domain.SiteSelectors;
 import com.company.parser.parser.base.AbstractSiteParser;
 import com.company.parser.parser.base.ParsingContext;
+import com.company.parser.parser.selector.SelectorPlan;
+import com.company.parser.parser.selector.SelectorPlanCache;
+import com.company.parser.parser.selector.StreamingExtractor;
+import com.company.parser.repository.PageRecordRepository;
 import com.company.parser.util.SizeNormalizer;
 import com.company.parser.util.TextUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Универсальный CSS парсер для большинства сайтов
+ *
+ * Селекторы сайта компилируются один раз (SelectorPlan) и переиспользуются
+ * для всех карточек и страниц. Поля карточки находятся за один обход её
+ * поддерева, текст карточки строится один раз.
  */
 @Slf4j
 @Component("genericCssParser")
 public class GenericCssParser extends AbstractSiteParser {
 
+    private final SelectorPlanCache selectorPlanCache;
+
     @Autowired
-    public GenericCssParser(HttpClient httpClient, TextUtils textUtils, SizeNormalizer sizeNormalizer) {
-        super(httpClient, textUtils, sizeNormalizer);
+    public GenericCssParser(HttpClient httpClient, TextUtils textUtils, SizeNormalizer sizeNormalizer,
+                            PageRecordRepository pageRecordRepository, SelectorPlanCache selectorPlanCache) {
+        super(httpClient, textUtils, sizeNormalizer, pageRecordRepository);
+        this.selectorPlanCache = selectorPlanCache;
     }
 
     @Override
@@ -46,41 +60,74 @@ public class GenericCssParser extends AbstractSiteParser {
     @Override
     protected List<PriceRecord> parsePage(Document document, Site site,
                                           ParsingContext context, String pageUrl) {
-        List<PriceRecord> records = new ArrayList<>();
-        SiteSelectors selectors = site.getSelectors();
+        SelectorPlan plan = selectorPlanCache.planFor(site);
+        if (plan.getList() == null) {
+            log.warn("No valid list selector for site {}", site.getId());
+            return new ArrayList<>();
+        }
 
         // Поиск карточек товаров
-        Elements productCards = document.select(selectors.getListSelector());
+        Elements productCards = document.select(plan.getList());
         log.debug("Found {} product cards on page", productCards.size());
 
-        for (Element card : productCards) {
-            try {
-                PriceRecord record = parseProductCard(card, site, pageUrl);
-                if (record != null) {
-                    records.add(record);
-                }
-            } catch (Exception e) {
-                log.debug("Failed to parse product card: {}", e.getMessage());
-            }
+        // Детальные страницы загружаются параллельно, страница ждёт их все сразу
+        // (список общий для потоков при параллельном разборе карточек)
+        List<CompletableFuture<Void>> pendingDetails = Collections.synchronizedList(new ArrayList<>());
+
+        List<PriceRecord> records = parseCards(productCards, site,
+                card -> parseProductCard(card, site, plan, pageUrl, pendingDetails));
+
+        if (!pendingDetails.isEmpty()) {
+            log.debug("Waiting for {} product detail pages", pendingDetails.size());
+            CompletableFuture.allOf(pendingDetails.toArray(CompletableFuture[]::new)).join();
         }
 
         context.addRecords(records.size());
         return records;
     }
 
+    /**
+     * Потоковый режим: карточки разбираются по мере чтения страницы, Document не строится
+     */
     @Override
-    protected String getNextPageUrl(Document document, Site site) {
-        String nextPageSelector = site.getSelectors().getNextPageSelector();
-
-        if (nextPageSelector == null || nextPageSelector.isBlank()) {
+    protected StreamedPage streamPage(String url, Site site) throws Exception {
+        SelectorPlan plan = selectorPlanCache.planFor(site);
+        if (plan.getList() == null) {
             return null;
         }
 
-        // Пробуем разные варианты селекторов
-        String[] selectors = nextPageSelector.split("\\|");
+        // Детальные страницы ждём после чтения ответа, не занимая лимит запросов к хосту
+        List<CompletableFuture<Void>> pendingDetails = new ArrayList<>();
+        StreamedPage page = httpClient.getStreamed(url, (body, charset) -> {
+            List<PriceRecord> records = new ArrayList<>();
+            pendingDetails.clear();
+
+            String nextUrl = StreamingExtractor.extract(body, charset, url, plan.getList(), plan.getNextPage(),
+                    card -> {
+                        try {
+                            PriceRecord record = parseProductCard(card, site, plan, url, pendingDetails);
+                            if (record != null) {
+                                records.add(record);
+                            }
+                        } catch (Exception e) {
+                            log.debug("Failed to parse product card: {}", e.getMessage());
+                        }
+                    });
+            return new StreamedPage(records, nextUrl);
+        });
+
+        if (!pendingDetails.isEmpty()) {
+            log.debug("Waiting for {} product detail pages", pendingDetails.size());
+            CompletableFuture.allOf(pendingDetails.toArray(CompletableFuture[]::new)).join();
+        }
+        return page;
+    }
 
-        for (String selector : selectors) {
-            Element nextLink = document.selectFirst(selector.trim());
+    @Override
+    protected String getNextPageUrl(Document document, Site site) {
+        // Пробуем разные варианты селекторов (пусто, если селектор не задан)
+        for (Evaluator selector : selectorPlanCache.planFor(site).getNextPage()) {
+            Element nextLink = document.selectFirst(selector);
             if (nextLink != null) {
                 String nextUrl = nextLink.absUrl("href");
                 if (!nextUrl.isBlank()) {
@@ -94,41 +141,42 @@ public class GenericCssParser extends AbstractSiteParser {
     }
 
     /**
-     * Парсинг карточки товара
+     * Парсинг карточки товара. Загрузка детальной страницы (если нужна) добавляется
+     * в pendingDetails и дополняет запись по завершении.
      */
-    private PriceRecord parseProductCard(Element card, Site site, String pageUrl) {
-        SiteSelectors selectors = site.getSelectors();
+    private PriceRecord parseProductCard(Element card, Site site, SelectorPlan plan, String pageUrl,
+                                         List<CompletableFuture<Void>> pendingDetails) {
+        // Все поля карточки - за один обход
+        SelectorPlan.CardMatch match = plan.matchCard(card);
 
         // Извлечение основных данных
-        String name = extractText(card, selectors.getNameSelector());
+        String name = textOf(match.name());
         if (name.isBlank()) {
             log.debug("Product name is empty, skipping");
             return null;
         }
 
         // Извлечение цены
-        BigDecimal price = extractPrice(card, selectors.getPriceSelector());
+        BigDecimal price = textUtils.extractPrice(textOf(match.price())).orElse(null);
         if (price == null || price.compareTo(BigDecimal.ZERO) <= 0) {
             log.debug("Invalid price for product: {}", name);
             return null;
         }
 
         // URL товара
-        String productUrl = extractUrl(card, selectors.getUrlSelector());
+        String productUrl = hrefOf(match.url());
         if (productUrl == null || productUrl.isBlank()) {
             productUrl = pageUrl;
         }
 
         // Извлечение размеров и характеристик
-        ProductDimensions dimensions = extractDimensions(card, selectors, name);
+        ProductDimensions dimensions = extractDimensions(match, name);
 
-        // Если не удалось извлечь размеры с карточки и включена загрузка деталей
-        if (shouldFetchDetails(site, dimensions)) {
-            dimensions = fetchProductDetails(productUrl, selectors, dimensions);
-        }
+        // Текст карточки для валюты и единицы измерения
+        String cardText = card.text().toLowerCase();
 
         // Создание записи
-        return PriceRecord.builder()
+        PriceRecord record = PriceRecord.builder()
                 .productName(name)
                 .size(dimensions.size)
                 .thickness(dimensions.thickness)
@@ -136,15 +184,28 @@ public class GenericCssParser extends AbstractSiteParser {
                 .length(dimensions.length)
                 .price(price)
                 .url(productUrl)
-                .currency(extractCurrency(card))
-                .unit(extractUnit(card))
+                .currency(extractCurrency(cardText))
+                .unit(extractUnit(cardText))
                 .build();
+
+        // Если не удалось извлечь размеры с карточки и включена загрузка деталей
+        if (shouldFetchDetails(site, dimensions)) {
+            pendingDetails.add(fetchProductDetails(productUrl, plan, dimensions)
+                    .thenAccept(details -> {
+                        record.setSize(details.size);
+                        record.setThickness(details.thickness);
+                        record.setSteelGrade(details.steelGrade);
+                        record.setLength(details.length);
+                    }));
+        }
+
+        return record;
     }
 
     /**
      * Извлечение размеров и характеристик
      */
-    private ProductDimensions extractDimensions(Element element, SiteSelectors selectors, String productName) {
+    private ProductDimensions extractDimensions(SelectorPlan.CardMatch match, String productName) {
         ProductDimensions dimensions = new ProductDimensions();
 
         // Извлечение из названия товара
@@ -154,7 +215,7 @@ public class GenericCssParser extends AbstractSiteParser {
         dimensions.length = textUtils.extractLength(productName).orElse("");
 
         // Извлечение из блока с размерами
-        String sizeBlock = extractText(element, selectors.getSizeSelector());
+        String sizeBlock = textOf(match.size());
         if (!sizeBlock.isBlank()) {
             if (dimensions.size.isBlank()) {
                 dimensions.size = textUtils.extractSize(sizeBlock).orElse(dimensions.size);
@@ -171,25 +232,19 @@ public class GenericCssParser extends AbstractSiteParser {
         }
 
         // Дополнительные селекторы если указаны
-        if (selectors.getThicknessSelector() != null) {
-            String thickness = extractText(element, selectors.getThicknessSelector());
-            if (!thickness.isBlank()) {
-                dimensions.thickness = thickness;
-            }
+        String thickness = textOf(match.thickness());
+        if (!thickness.isBlank()) {
+            dimensions.thickness = thickness;
         }
 
-        if (selectors.getSteelGradeSelector() != null) {
-            String steelGrade = extractText(element, selectors.getSteelGradeSelector());
-            if (!steelGrade.isBlank()) {
-                dimensions.steelGrade = steelGrade;
-            }
+        String steelGrade = textOf(match.steelGrade());
+        if (!steelGrade.isBlank()) {
+            dimensions.steelGrade = steelGrade;
         }
 
-        if (selectors.getLengthSelector() != null) {
-            String length = extractText(element, selectors.getLengthSelector());
-            if (!length.isBlank()) {
-                dimensions.length = length;
-            }
+        String length = textOf(match.length());
+        if (!length.isBlank()) {
+            dimensions.length = length;
         }
 
         return dimensions;
@@ -208,50 +263,54 @@ public class GenericCssParser extends AbstractSiteParser {
     }
 
     /**
-     * Загрузка детальной информации о товаре
+     * Асинхронная загрузка детальной информации о товаре. При ошибке остаются
+     * размеры с карточки.
      */
-    private ProductDimensions fetchProductDetails(String url, SiteSelectors selectors,
-                                                  ProductDimensions current) {
+    private CompletableFuture<ProductDimensions> fetchProductDetails(String url, SelectorPlan plan,
+                                                                     ProductDimensions current) {
         if (url == null || url.isBlank()) {
-            return current;
+            return CompletableFuture.completedFuture(current);
         }
 
-        try {
-            log.debug("Fetching product details from: {}", url);
-            Document doc = httpClient.get(url);
-
-            // Извлечение из всего текста страницы
-            String fullText = doc.text();
-            ProductDimensions details = new ProductDimensions();
-
-            details.size = textUtils.extractSize(fullText).orElse(current.size);
-            details.thickness = textUtils.extractThickness(fullText).orElse(current.thickness);
-            details.steelGrade = textUtils.extractSteelGrade(fullText).orElse(current.steelGrade);
-            details.length = textUtils.extractLength(fullText).orElse(current.length);
-
-            // Если указан селектор для блока с характеристиками
-            if (selectors.getSizeSelector() != null) {
-                String sizeBlock = extractText(doc.body(), selectors.getSizeSelector());
-                if (!sizeBlock.isBlank()) {
-                    details.size = textUtils.extractSize(sizeBlock).orElse(details.size);
-                    details.thickness = textUtils.extractThickness(sizeBlock).orElse(details.thickness);
-                }
-            }
-
-            return details;
+        log.debug("Fetching product details from: {}", url);
+        return httpClient.getAsync(url)
+                .thenApply(doc -> applyProductDetails(doc, plan, current))
+                .exceptionally(e -> {
+                    log.debug("Failed to fetch product details from {}: {}", url, e.getMessage());
+                    return current;
+                });
+    }
 
-        } catch (Exception e) {
-            log.debug("Failed to fetch product details from {}: {}", url, e.getMessage());
-            return current;
+    /**
+     * Извлечение характеристик с детальной страницы товара
+     */
+    private ProductDimensions applyProductDetails(Document doc, SelectorPlan plan,
+                                                  ProductDimensions current) {
+        // Извлечение из всего текста страницы
+        String fullText = doc.text();
+        ProductDimensions details = new ProductDimensions();
+
+        details.size = textUtils.extractSize(fullText).orElse(current.size);
+        details.thickness = textUtils.extractThickness(fullText).orElse(current.thickness);
+        details.steelGrade = textUtils.extractSteelGrade(fullText).orElse(current.steelGrade);
+        details.length = textUtils.extractLength(fullText).orElse(current.length);
+
+        // Если указан селектор для блока с характеристиками
+        if (plan.getSize() != null) {
+            String sizeBlock = extractText(doc.body(), plan.getSize());
+            if (!sizeBlock.isBlank()) {
+                details.size = textUtils.extractSize(sizeBlock).orElse(details.size);
+                details.thickness = textUtils.extractThickness(sizeBlock).orElse(details.thickness);
+            }
         }
+
+        return details;
     }
 
     /**
-     * Извлечение валюты
+     * Извлечение валюты по тексту карточки (в нижнем регистре)
      */
-    private String extractCurrency(Element element) {
-        String text = element.text().toLowerCase();
-
+    private String extractCurrency(String text) {
         if (text.contains("₽") || text.contains("руб") || text.contains("rub")) {
             return "RUB";
         } else if (text.contains("$") || text.contains("usd") || text.contains("долл")) {
@@ -264,11 +323,9 @@ public class GenericCssParser extends AbstractSiteParser {
     }
 
     /**
-     * Извлечение единицы измерения
+     * Извлечение единицы измерения по тексту карточки (в нижнем регистре)
      */
-    private String extractUnit(Element element) {
-        String text = element.text().toLowerCase();
-
+    private String extractUnit(String text) {
         if (text.contains("/т") || text.contains("за тонну") || text.contains("тонна")) {
             return "т";
         } else if (text.contains("/м") || text.contains("за метр") || text.contains("метр")) {
@@ -2,12 +2,15 @@ package com.company.parser.parser.selector;
 
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.nodes.Element;
+import org.jsoup.select.Evaluator;
 import org.springframework.stereotype.Component;
 
 import java.util.Optional;
 
 /**
  * CSS селектор стратегия
+ *
+ * Запросы компилируются один раз и берутся из общего кэша SelectorPlan.
  */
 @Slf4j
 @Component
@@ -21,10 +24,8 @@ public class CssSelector implements SelectorStrategy {
 
         try {
             // Поддержка множественных селекторов через |
-            String[] selectors = selector.split("\\|");
-
-            for (String sel : selectors) {
-                Element found = element.selectFirst(sel.trim());
+            for (Evaluator sel : SelectorPlan.alternatives(selector)) {
+                Element found = element.selectFirst(sel);
                 if (found != null) {
                     String text = found.text();
                     if (!text.isBlank()) {
@@ -47,7 +48,7 @@ public class CssSelector implements SelectorStrategy {
         }
 
         try {
-            Element found = element.selectFirst(selector);
+            Element found = element.selectFirst(SelectorPlan.compile(selector));
             if (found != null) {
                 String value = found.attr(attribute);
                 if (!value.isBlank()) {
@@ -70,7 +71,7 @@ public class CssSelector implements SelectorStrategy {
         }
 
         try {
-            return element.selectFirst(selector) != null;
+            return element.selectFirst(SelectorPlan.compile(selector)) != null;
         } catch (Exception e) {
             return false;
         }
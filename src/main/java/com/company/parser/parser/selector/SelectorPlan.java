@@ -0,0 +1,212 @@
+package com.company.parser.parser.selector;
+
+import com.company.parser.model.domain.SiteSelectors;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Collector;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.QueryParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Скомпилированные селекторы сайта
+ *
+ * Строки SiteSelectors разбираются QueryParser один раз при построении плана,
+ * дальше карточки обходятся готовыми Evaluator. Пустой или некорректный
+ * селектор - null (поле не извлекается). Альтернативы через | хранятся списком.
+ * Для селекторов, заданных строкой в коде, есть общий кэш compile/alternatives.
+ *
+ * Поля карточки (название, цена, ссылка, размеры) находятся за один обход
+ * поддерева карточки - см. matchCard.
+ */
+@Slf4j
+@Getter
+public final class SelectorPlan {
+
+    private static final int MAX_CACHED_QUERIES = 1024;
+    private static final Map<String, Evaluator> QUERIES = new ConcurrentHashMap<>();
+    private static final Map<String, List<Evaluator>> ALTERNATIVES = new ConcurrentHashMap<>();
+    static final String MEMO_RESET_TAG = "memo-reset";
+
+    private final SiteSelectors source;
+    private final Evaluator list;
+    private final Evaluator name;
+    private final Evaluator price;
+    private final Evaluator url;
+    private final List<Evaluator> nextPage;
+    private final Evaluator size;
+    private final Evaluator thickness;
+    private final Evaluator steelGrade;
+    private final Evaluator length;
+    private final Evaluator unit;
+    private final Evaluator availability;
+    @Getter(AccessLevel.NONE)
+    private final Evaluator[] cardFields;
+
+    private SelectorPlan(SiteSelectors source) {
+        this.source = source;
+        this.list = tryCompile(source.getListSelector());
+        this.name = tryCompile(source.getNameSelector());
+        this.price = tryCompile(source.getPriceSelector());
+        this.url = tryCompile(source.getUrlSelector());
+        this.nextPage = tryAlternatives(source.getNextPageSelector());
+        this.size = tryCompile(source.getSizeSelector());
+        this.thickness = tryCompile(source.getThicknessSelector());
+        this.steelGrade = tryCompile(source.getSteelGradeSelector());
+        this.length = tryCompile(source.getLengthSelector());
+        this.unit = tryCompile(source.getUnitSelector());
+        this.availability = tryCompile(source.getAvailabilitySelector());
+        this.cardFields = new Evaluator[] {name, price, url, size, thickness, steelGrade, length};
+    }
+
+    /**
+     * Построение плана по селекторам сайта
+     */
+    public static SelectorPlan of(SiteSelectors selectors) {
+        return new SelectorPlan(selectors);
+    }
+
+    /**
+     * Скомпилированный CSS запрос (из общего кэша).
+     * Некорректный запрос - Selector.SelectorParseException, как у Element.select.
+     */
+    public static Evaluator compile(String query) {
+        Evaluator evaluator = QUERIES.get(query);
+        if (evaluator == null) {
+            evaluator = QueryParser.parse(query);
+            trim(QUERIES);
+            QUERIES.putIfAbsent(query, evaluator);
+        }
+        return evaluator;
+    }
+
+    /**
+     * Скомпилированные альтернативы запроса "a | b | c" (из общего кэша)
+     */
+    public static List<Evaluator> alternatives(String query) {
+        List<Evaluator> evaluators = ALTERNATIVES.get(query);
+        if (evaluators == null) {
+            List<Evaluator> compiled = new ArrayList<>();
+            for (String alternative : query.split("\\|")) {
+                if (!alternative.isBlank()) {
+                    compiled.add(compile(alternative.trim()));
+                }
+            }
+            evaluators = List.copyOf(compiled);
+            trim(ALTERNATIVES);
+            ALTERNATIVES.putIfAbsent(query, evaluators);
+        }
+        return evaluators;
+    }
+
+    /**
+     * Поля карточки за один обход её поддерева. Результат совпадает с selectFirst
+     * по каждому селектору: первый в порядке документа элемент (включая саму карточку).
+     */
+    public CardMatch matchCard(Element card) {
+        Element[] found = selectFirst(card, cardFields);
+        return new CardMatch(found[0], found[1], found[2], found[3], found[4], found[5], found[6]);
+    }
+
+    /**
+     * Первые совпадения нескольких селекторов за один обход поддерева root.
+     * Для null селектора - null; обход прекращается, когда найдены все.
+     */
+    public static Element[] selectFirst(Element root, Evaluator... evaluators) {
+        Element[] found = new Element[evaluators.length];
+        int[] pending = {0};
+        for (Evaluator evaluator : evaluators) {
+            if (evaluator != null) {
+                pending[0]++;
+            }
+        }
+        if (pending[0] == 0) {
+            return found;
+        }
+
+        NodeFilter filter = (node, depth) -> {
+            if (node instanceof Element element) {
+                for (int i = 0; i < evaluators.length; i++) {
+                    if (found[i] == null && evaluators[i] != null && evaluators[i].matches(root, element)) {
+                        found[i] = element;
+                        if (--pending[0] == 0) {
+                            return NodeFilter.FilterResult.STOP;
+                        }
+                    }
+                }
+            }
+            return NodeFilter.FilterResult.CONTINUE;
+        };
+        try {
+            NodeTraversor.filter(filter, root);
+        } finally {
+            resetMemo(new Element(MEMO_RESET_TAG), evaluators);
+        }
+        return found;
+    }
+
+    /**
+     * Структурные селекторы ("a b", :has) кэшируют совпадения в ThreadLocal.
+     * Element.select сбрасывает кэш сам; после прямых matches/is - нужно сбросить,
+     * иначе кэш удерживает элементы разобранных страниц.
+     *
+     * Evaluator.reset() закрыт, поэтому сброс идёт через Collector.findFirst по пустому
+     * элементу вызывающего (scratch): он сбрасывает всё дерево оценщика и ничего не обходит.
+     * Элемент свой у каждого вызова и наружу не передаётся.
+     */
+    static void resetMemo(Element scratch, Evaluator... evaluators) {
+        for (Evaluator evaluator : evaluators) {
+            if (evaluator != null) {
+                Collector.findFirst(evaluator, scratch);
+            }
+        }
+    }
+
+    /**
+     * Найденные элементы полей карточки (null - не найден или селектор не задан)
+     */
+    public record CardMatch(Element name, Element price, Element url, Element size,
+                            Element thickness, Element steelGrade, Element length) {
+    }
+
+    // === Private методы ===
+
+    private static Evaluator tryCompile(String query) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+        try {
+            return compile(query.trim());
+        } catch (Exception e) {
+            log.warn("Invalid selector '{}': {}", query, e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<Evaluator> tryAlternatives(String query) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        try {
+            return alternatives(query);
+        } catch (Exception e) {
+            log.warn("Invalid selector '{}': {}", query, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static void trim(Map<String, ?> cache) {
+        // Запросы берутся из конфигурации, их немного; защита от неограниченного роста
+        if (cache.size() >= MAX_CACHED_QUERIES) {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.company.parser.parser.selector;
+
+import com.company.parser.model.domain.Site;
+import com.company.parser.repository.SiteConfigRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кэш скомпилированных селекторов по сайтам
+ *
+ * План строится при первом разборе сайта и сбрасывается при изменении
+ * конфигурации (reload/save/delete в SiteConfigRepository). Если у сайта
+ * подменили объект селекторов, план перестраивается и без события.
+ */
+@Slf4j
+@Component
+public class SelectorPlanCache {
+
+    private final Map<String, SelectorPlan> plans = new ConcurrentHashMap<>();
+
+    /**
+     * План селекторов сайта
+     */
+    public SelectorPlan planFor(Site site) {
+        String key = site.getId() != null ? site.getId() : "";
+        SelectorPlan plan = plans.get(key);
+        if (plan == null || plan.getSource() != site.getSelectors()) {
+            plan = SelectorPlan.of(site.getSelectors());
+            plans.put(key, plan);
+            log.debug("Compiled selectors for site {}", key);
+        }
+        return plan;
+    }
+
+    @EventListener
+    public void onSitesChanged(SiteConfigRepository.SitesChangedEvent event) {
+        if (event.siteId() == null) {
+            plans.clear();
+        } else {
+            plans.remove(event.siteId());
+        }
+    }
+}
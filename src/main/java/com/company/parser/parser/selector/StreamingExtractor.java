@@ -0,0 +1,169 @@
+package com.company.parser.parser.selector;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Evaluator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Потоковое извлечение карточек из HTML (jsoup StreamParser)
+ *
+ * Элементы приходят по мере закрытия тегов. Карточка (cardSelector) передаётся
+ * получателю целиком и сразу удаляется из дерева. Любое другое закрытое поддерево
+ * вне карточек удаляется, как только на нём проверены селекторы следующей страницы;
+ * внутри ещё не закрытой карточки удаляются только script/style/noscript/template.
+ * В памяти остаются открытые предки текущего элемента и незакрытая карточка.
+ *
+ * Селекторы проверяются в момент закрытия элемента: они могут опираться на сам
+ * элемент, его содержимое и предков, но не на уже удалённые соседние поддеревья
+ * (соседние комбинаторы, :nth-* среди удалённых элементов, :has по ним).
+ * Открытый предок проверяется на селектор карточки один раз - при закрытии
+ * его первого потомка, поэтому карточка должна узнаваться по себе и своим
+ * предкам, а не по содержимому.
+ */
+@Slf4j
+public final class StreamingExtractor {
+
+    private static final Set<String> DISCARDED_TAGS = Set.of("script", "style", "noscript", "template", "head");
+    private static final int CHARSET_SNIFF_BYTES = 4096;
+    private static final Pattern META_CHARSET =
+            Pattern.compile("<meta[^>]+charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+
+    private StreamingExtractor() {
+    }
+
+    /**
+     * Разбор потока: каждая карточка передаётся cardConsumer (пока ещё в дереве,
+     * absUrl работает), результат - URL следующей страницы или null
+     */
+    public static String extract(InputStream body, String charset, String baseUri, Evaluator cardSelector,
+                                 List<Evaluator> nextPageSelectors, Consumer<Element> cardConsumer)
+            throws IOException {
+        BufferedInputStream input = new BufferedInputStream(body);
+        Charset detected = detectCharset(input, charset);
+
+        int alternatives = nextPageSelectors.size();
+        boolean[] matched = new boolean[alternatives];
+        String[] nextUrls = new String[alternatives];
+        int cards = 0;
+        // Открытые предки: лежат ли они в карточке (проверяются один раз на элемент)
+        Map<Element, Boolean> openInCard = new IdentityHashMap<>();
+        // Пустой элемент этого вызова для сброса мемоизации структурных селекторов
+        Element memoReset = new Element(SelectorPlan.MEMO_RESET_TAG);
+        Evaluator[] selectors = new Evaluator[alternatives + 1];
+        selectors[0] = cardSelector;
+        for (int i = 0; i < alternatives; i++) {
+            selectors[i + 1] = nextPageSelectors.get(i);
+        }
+
+        try (StreamParser streamer = new StreamParser(Parser.htmlParser())) {
+            // CharacterReader jsoup требует Reader с поддержкой mark()
+            streamer.parse(new BufferedReader(new InputStreamReader(input, detected)), baseUri);
+
+            Iterator<Element> elements = streamer.iterator();
+            while (elements.hasNext()) {
+                Element element = elements.next();
+                openInCard.remove(element);
+
+                if (element.is(cardSelector)) {
+                    cardConsumer.accept(element);
+                    element.remove();
+                    cards++;
+                    // Кэш структурных селекторов держит удалённые элементы -
+                    // сбрасывается после каждой карточки и в конце страницы
+                    SelectorPlan.resetMemo(memoReset, selectors);
+                } else {
+                    for (int i = 0; i < alternatives; i++) {
+                        if (!matched[i] && element.is(nextPageSelectors.get(i))) {
+                            matched[i] = true;
+                            nextUrls[i] = element.absUrl("href");
+                        }
+                    }
+
+                    if (DISCARDED_TAGS.contains(element.normalName())
+                            || !inCard(element.parent(), cardSelector, openInCard)) {
+                        element.remove();
+                    }
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            SelectorPlan.resetMemo(memoReset, selectors);
+        }
+
+        log.debug("Streamed {} product cards from {}", cards, baseUri);
+
+        for (String nextUrl : nextUrls) {
+            if (nextUrl != null && !nextUrl.isBlank()) {
+                return nextUrl;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Является ли открытый элемент карточкой или лежит в ней. Ответ запоминается
+     * до закрытия элемента, поэтому предки не обходятся для каждого потомка.
+     */
+    private static boolean inCard(Element open, Evaluator cardSelector, Map<Element, Boolean> openInCard) {
+        if (open == null) {
+            return false;
+        }
+        Boolean known = openInCard.get(open);
+        if (known == null) {
+            known = open.is(cardSelector) || inCard(open.parent(), cardSelector, openInCard);
+            openInCard.put(open, known);
+        }
+        return known;
+    }
+
+    /**
+     * Кодировка: из Content-Type, иначе из meta charset в начале документа, иначе UTF-8.
+     * BOM UTF-8 пропускается.
+     */
+    private static Charset detectCharset(BufferedInputStream input, String charset) throws IOException {
+        input.mark(CHARSET_SNIFF_BYTES);
+        byte[] head = input.readNBytes(CHARSET_SNIFF_BYTES);
+        input.reset();
+
+        boolean bom = head.length >= 3 && (head[0] & 0xFF) == 0xEF
+                && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF;
+        if (bom) {
+            input.skipNBytes(3);
+            return StandardCharsets.UTF_8;
+        }
+
+        String name = charset;
+        if (name == null) {
+            Matcher matcher = META_CHARSET.matcher(new String(head, StandardCharsets.ISO_8859_1));
+            name = matcher.find() ? matcher.group(1) : null;
+        }
+        if (name != null) {
+            try {
+                return Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                log.debug("Unsupported charset '{}', using UTF-8", name);
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
@@ -0,0 +1,322 @@
+package com.company.parser.repository;
+
+import com.company.parser.model.domain.PriceHistory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Сегментированный append-only журнал истории цен
+ *
+ * Каждая запись истории - одна строка JSON в конце активного сегмента
+ * (history-NNNNNNNNNN.log). При превышении размера сегмент закрывается
+ * и открывается следующий. Компакция записывает живые записи в снимок
+ * (snapshot-NNNNNNNNNN.log), который заменяет все сегменты с номером
+ * не больше своего, поэтому восстановление читает только последний снимок
+ * и сегменты после него.
+ */
+@Slf4j
+class HistoryLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "history-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final Pattern FILE_PATTERN = Pattern.compile("(history|snapshot)-(\\d{10})\\.log");
+
+    private static final long SEGMENT_MAX_BYTES = 16L * 1024 * 1024;
+    private static final int COMPACTION_SEGMENT_THRESHOLD = 8;
+    private static final byte NEW_LINE = '\n';
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private final Path dir;
+    private final ObjectMapper objectMapper;
+
+    private FileChannel active;
+    private long activeSeq;
+    private long snapshotSeq;
+    private int segmentsSinceSnapshot;
+
+    HistoryLog(Path dir, ObjectMapper objectMapper) {
+        this.dir = dir;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Восстановление состояния: чтение последнего снимка и сегментов после него.
+     * Повреждённый хвост последнего сегмента (недописанная строка) отрезается.
+     */
+    synchronized void recover(Consumer<PriceHistory> consumer) throws IOException {
+        Files.createDirectories(dir);
+        deleteTempFiles();
+
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(path -> {
+                Matcher matcher = FILE_PATTERN.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    long seq = Long.parseLong(matcher.group(2));
+                    (matcher.group(1).equals("history") ? segments : snapshots).put(seq, path);
+                }
+            });
+        }
+
+        snapshotSeq = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+        if (snapshotSeq > 0) {
+            replayFile(snapshots.get(snapshotSeq), consumer, false);
+        }
+
+        // Сегменты, уже вошедшие в снимок, остались после прерванной компакции
+        deleteObsolete(segments.headMap(snapshotSeq, true).values());
+        deleteObsolete(snapshots.headMap(snapshotSeq, false).values());
+
+        NavigableMap<Long, Path> live = segments.tailMap(snapshotSeq, false);
+        for (Map.Entry<Long, Path> entry : live.entrySet()) {
+            boolean last = entry.getKey().equals(live.lastKey());
+            replayFile(entry.getValue(), consumer, last);
+        }
+
+        segmentsSinceSnapshot = live.size();
+        activeSeq = live.isEmpty() ? snapshotSeq + 1 : live.lastKey();
+        openActive();
+
+        log.info("History log recovered: snapshot={}, segments={}", snapshotSeq, live.size());
+    }
+
+    /**
+     * Есть ли на диске данные журнала
+     */
+    synchronized boolean isEmpty() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.noneMatch(path -> FILE_PATTERN.matcher(path.getFileName().toString()).matches());
+        }
+    }
+
+    /**
+     * Дописывание записи в конец активного сегмента
+     */
+    synchronized void append(PriceHistory history) throws IOException {
+        write(encode(history));
+        rollIfNeeded();
+    }
+
+    /**
+     * Дописывание пачки записей одной операцией записи
+     */
+    synchronized void appendAll(Collection<PriceHistory> histories) throws IOException {
+        if (histories.isEmpty()) {
+            return;
+        }
+
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(histories.size() * 256);
+        for (PriceHistory history : histories) {
+            batch.write(encode(history));
+        }
+        write(batch.toByteArray());
+        rollIfNeeded();
+    }
+
+    /**
+     * Сброс активного сегмента на диск (fsync)
+     */
+    synchronized void sync() throws IOException {
+        if (active != null) {
+            active.force(false);
+        }
+    }
+
+    /**
+     * Нужна ли компакция для ограничения времени восстановления
+     */
+    synchronized boolean needsCompaction() {
+        return segmentsSinceSnapshot > COMPACTION_SEGMENT_THRESHOLD;
+    }
+
+    /**
+     * Компакция: запись живых записей в новый снимок и удаление старых сегментов.
+     * Снимок берётся под монитором журнала - так же, как append, поэтому каждая
+     * запись либо уже в снимке, либо будет дописана после него в новый сегмент.
+     */
+    synchronized void compact(Supplier<? extends Collection<PriceHistory>> liveRecordsSupplier) throws IOException {
+        Collection<PriceHistory> liveRecords = liveRecordsSupplier.get();
+
+        // Все записи до текущего момента входят в снимок с номером активного сегмента
+        long seq = activeSeq;
+        closeActive();
+
+        Path target = dir.resolve(fileName(SNAPSHOT_PREFIX, seq));
+        Path tmp = dir.resolve(target.getFileName() + TMP_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             OutputStream os = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024)) {
+
+            for (PriceHistory history : liveRecords) {
+                os.write(encode(history));
+            }
+            os.flush();
+            channel.force(true);
+        }
+
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        long previousSnapshot = snapshotSeq;
+        snapshotSeq = seq;
+        try (Stream<Path> files = Files.list(dir)) {
+            deleteObsolete(files
+                    .filter(path -> {
+                        Matcher matcher = FILE_PATTERN.matcher(path.getFileName().toString());
+                        if (!matcher.matches()) return false;
+                        long fileSeq = Long.parseLong(matcher.group(2));
+                        return matcher.group(1).equals("history")
+                                ? fileSeq <= seq
+                                : fileSeq < seq;
+                    })
+                    .toList());
+        }
+
+        segmentsSinceSnapshot = 0;
+        activeSeq = seq + 1;
+        openActive();
+
+        log.info("History log compacted: {} records, snapshot {} -> {}", liveRecords.size(), previousSnapshot, seq);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeActive();
+    }
+
+    // === Private методы ===
+
+    private byte[] encode(PriceHistory history) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(history);
+        byte[] line = Arrays.copyOf(json, json.length + 1);
+        line[json.length] = NEW_LINE;
+        return line;
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        if (active == null) {
+            openActive();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            active.write(buffer);
+        }
+    }
+
+    private void rollIfNeeded() throws IOException {
+        if (active.size() < SEGMENT_MAX_BYTES) {
+            return;
+        }
+        closeActive();
+        activeSeq++;
+        openActive();
+        log.debug("History log rolled to segment {}", activeSeq);
+    }
+
+    private void openActive() throws IOException {
+        Path path = dir.resolve(fileName(SEGMENT_PREFIX, activeSeq));
+        boolean created = !Files.exists(path);
+        active = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (created) {
+            segmentsSinceSnapshot++;
+        }
+    }
+
+    private void closeActive() throws IOException {
+        if (active != null) {
+            try {
+                active.force(true);
+            } finally {
+                active.close();
+                active = null;
+            }
+        }
+    }
+
+    /**
+     * Чтение файла журнала построчно. Для последнего сегмента недописанная
+     * или повреждённая строка в конце отрезается, чтобы новые записи не склеились с ней.
+     */
+    private void replayFile(Path path, Consumer<PriceHistory> consumer, boolean truncateTail) throws IOException {
+        long validBytes = 0;
+        long offset = 0;
+        int loaded = 0;
+        int corrupted = 0;
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), READ_BUFFER_BYTES)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+            byte[] chunk = new byte[READ_BUFFER_BYTES];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (chunk[i] != NEW_LINE) {
+                        continue;
+                    }
+                    line.write(chunk, start, i - start);
+                    start = i + 1;
+                    long lineEnd = offset + start;
+                    if (line.size() > 0) {
+                        try {
+                            consumer.accept(objectMapper.readValue(line.toByteArray(), PriceHistory.class));
+                            loaded++;
+                        } catch (IOException e) {
+                            corrupted++;
+                            log.warn("Skipping corrupted history entry in {} at offset {}: {}",
+                                    path.getFileName(), lineEnd - line.size() - 1, e.getMessage());
+                        }
+                    }
+                    validBytes = lineEnd;
+                    line.reset();
+                }
+                line.write(chunk, start, read - start);
+                offset += read;
+            }
+        }
+
+        if (truncateTail && validBytes < offset) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+            }
+            log.warn("Truncated incomplete tail of {} ({} bytes)", path.getFileName(), offset - validBytes);
+        }
+
+        log.debug("Replayed {} history entries from {} ({} corrupted)", loaded, path.getFileName(), corrupted);
+    }
+
+    private void deleteTempFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            deleteObsolete(files.filter(path -> path.getFileName().toString().endsWith(TMP_SUFFIX)).toList());
+        }
+    }
+
+    private void deleteObsolete(Collection<Path> paths) {
+        for (Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to delete obsolete history file {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    private String fileName(String prefix, long seq) {
+        return String.format("%s%010d%s", prefix, seq, LOG_SUFFIX);
+    }
+}
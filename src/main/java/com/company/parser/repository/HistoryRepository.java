@@ -2,22 +2,24 @@ package com.company.parser.repository;
 
 import com.company.parser.model.domain.PriceHistory;
 import com.company.parser.model.domain.PriceRecord;
+import com.company.parser.model.domain.ProductKey;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.*;
 import java.nio.file.*;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * Репозиторий для истории изменений цен
@@ -29,27 +31,115 @@ public class HistoryRepository {
 
     private static final String HISTORY_DIR = "./data/history";
     private static final String HISTORY_FILE = "price_history.json.gz";
+    private static final String MIGRATED_SUFFIX = ".migrated";
+    private static final String LOG_DIR = "log";
+    private static final int MAX_PENDING = 1000;
+    private static final long FLUSH_INTERVAL_MS = 5_000;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final Map<String, List<PriceHistory>> historyCache = new ConcurrentHashMap<>();
+    private final Map<ProductKey, List<PriceHistory>> historyCache = new ConcurrentHashMap<>();
+    private final HistoryTimeIndex timeIndex = new HistoryTimeIndex();
+    private final List<PriceHistory> pending = new ArrayList<>();
+    private HistoryLog historyLog;
 
     @PostConstruct
     public void init() {
         objectMapper.registerModule(new JavaTimeModule());
         createDirectories();
-        loadHistory();
+        historyLog = new HistoryLog(Paths.get(HISTORY_DIR, LOG_DIR), objectMapper);
+        recover();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushPending();
+        try {
+            historyLog.close();
+        } catch (IOException e) {
+            log.error("Failed to close history log", e);
+        }
     }
 
     /**
-     * Сохранение истории изменения цены
+     * Сохранение истории изменения цены. Кэш и журнал обновляются под монитором
+     * журнала, поэтому компакция не может взять снимок между ними.
+     * Запись сбрасывается на диск до возврата - как и при перезаписи файла целиком.
+     * Для потока записей следует использовать saveAll или enqueue.
      */
     public void save(PriceHistory history) {
         if (history == null) return;
 
-        String key = generateKey(history.getSiteId(), history.getProductKey());
-        historyCache.computeIfAbsent(key, k -> new ArrayList<>()).add(history);
+        try {
+            synchronized (historyLog) {
+                addToCache(history);
+                historyLog.append(history);
+            }
+            historyLog.sync();
+            if (historyLog.needsCompaction()) {
+                compact();
+            }
+        } catch (IOException e) {
+            log.error("Failed to append history entry", e);
+        }
+    }
+
+    /**
+     * Пакетное сохранение истории: одна запись в журнал и один fsync на пачку
+     */
+    public void saveAll(Collection<PriceHistory> histories) {
+        if (histories == null || histories.isEmpty()) return;
 
-        saveToFile();
+        try {
+            synchronized (historyLog) {
+                histories.forEach(this::addToCache);
+                historyLog.appendAll(histories);
+            }
+            historyLog.sync();
+            if (historyLog.needsCompaction()) {
+                compact();
+            }
+        } catch (IOException e) {
+            log.error("Failed to append {} history entries", histories.size(), e);
+        }
+
+        log.debug("Saved {} history entries", histories.size());
+    }
+
+    /**
+     * Буферизованное сохранение истории. Записи сразу видны в кэше,
+     * а в журнал попадают при заполнении буфера или по таймеру.
+     */
+    public void enqueue(Collection<PriceHistory> histories) {
+        if (histories == null || histories.isEmpty()) return;
+
+        boolean full;
+        synchronized (pending) {
+            histories.forEach(this::addToCache);
+            pending.addAll(histories);
+            full = pending.size() >= MAX_PENDING;
+        }
+
+        if (full) {
+            flushPending();
+        }
+    }
+
+    /**
+     * Сброс буфера истории в журнал
+     */
+    @Scheduled(fixedDelay = FLUSH_INTERVAL_MS)
+    public void flushPending() {
+        try {
+            synchronized (historyLog) {
+                if (appendPending() == 0) return;
+            }
+            historyLog.sync();
+            if (historyLog.needsCompaction()) {
+                compact();
+            }
+        } catch (IOException e) {
+            log.error("Failed to flush buffered history entries", e);
+        }
     }
 
     /**
@@ -60,11 +150,43 @@ public class HistoryRepository {
         save(history);
     }
 
+    /**
+     * Создание записи истории по текущей и предыдущей цене
+     */
+    public PriceHistory createHistory(PriceRecord current, PriceRecord previous) {
+        PriceHistory history = PriceHistory.builder()
+                .id(UUID.randomUUID().toString())
+                .siteId(current.getSiteId())
+                .productKey(current.getProductKey().toProductKeyString())
+                .productName(current.getProductName())
+                .price(current.getPrice())
+                .timestamp(current.getTimestamp())
+                .previousPrice(previous != null ? previous.getPrice() : null)
+                .build();
+
+        if (previous != null) {
+            history.calculateChange(current.getPriceKopecks(), previous.getPriceKopecks());
+
+            int comparison = current.comparePrice(previous);
+            if (comparison > 0) {
+                history.setChangeType("INCREASE");
+            } else if (comparison < 0) {
+                history.setChangeType("DECREASE");
+            } else {
+                history.setChangeType("NO_CHANGE");
+            }
+        } else {
+            history.setChangeType("NEW");
+        }
+
+        return history;
+    }
+
     /**
      * Получение истории для продукта
      */
     public List<PriceHistory> findByProduct(String siteId, String productKey) {
-        String key = generateKey(siteId, productKey);
+        ProductKey key = ProductKey.parse(siteId, productKey);
         return historyCache.getOrDefault(key, Collections.emptyList());
     }
 
@@ -72,10 +194,7 @@ public class HistoryRepository {
      * Получение истории за период
      */
     public List<PriceHistory> findByPeriod(Instant from, Instant to) {
-        return historyCache.values().stream()
-                .flatMap(List::stream)
-                .filter(h -> !h.getTimestamp().isBefore(from) && !h.getTimestamp().isAfter(to))
-                .collect(Collectors.toList());
+        return timeIndex.range(from, to);
     }
 
     /**
@@ -83,12 +202,7 @@ public class HistoryRepository {
      */
     public List<PriceHistory> findRecent(int days) {
         Instant cutoff = Instant.now().minus(days, ChronoUnit.DAYS);
-
-        return historyCache.values().stream()
-                .flatMap(List::stream)
-                .filter(h -> h.getTimestamp().isAfter(cutoff))
-                .sorted(Comparator.comparing(PriceHistory::getTimestamp).reversed())
-                .collect(Collectors.toList());
+        return timeIndex.newerThan(cutoff);
     }
 
     /**
@@ -97,14 +211,23 @@ public class HistoryRepository {
     public void cleanOldHistory(int daysToKeep) {
         Instant cutoff = Instant.now().minus(daysToKeep, ChronoUnit.DAYS);
 
-        historyCache.values().forEach(list ->
-                list.removeIf(h -> h.getTimestamp().isBefore(cutoff))
-        );
-
-        // Удаление пустых записей
-        historyCache.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+        // Под тем же монитором, что и запись в журнал: append не должен
+        // попасть между очисткой кэша и снимком компакции
+        synchronized (historyLog) {
+            historyCache.values().forEach(list ->
+                    list.removeIf(h -> h.getTimestamp().isBefore(cutoff))
+            );
+
+            // Удаление пустых записей. enqueue пополняет кэш только под pending:
+            // без него запись могла бы попасть в список, который тут же удаляется
+            synchronized (pending) {
+                historyCache.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+            }
+            timeIndex.removeBefore(cutoff);
 
-        saveToFile();
+            // Компакция журнала: в снимок попадают только оставшиеся записи
+            compact();
+        }
         log.info("Cleaned history older than {} days", daysToKeep);
     }
 
@@ -112,17 +235,91 @@ public class HistoryRepository {
 
     private void createDirectories() {
         try {
-            Files.createDirectories(Paths.get(HISTORY_DIR));
+            Files.createDirectories(Paths.get(HISTORY_DIR, LOG_DIR));
         } catch (IOException e) {
             log.error("Failed to create directories", e);
         }
     }
 
-    private void loadHistory() {
-        Path filePath = Paths.get(HISTORY_DIR, HISTORY_FILE);
-        if (!Files.isRegularFile(filePath)) return;
+    /**
+     * Восстановление истории из журнала; при первом запуске - миграция старого файла
+     */
+    private void recover() {
+        Path legacyFile = Paths.get(HISTORY_DIR, HISTORY_FILE);
+
+        try {
+            if (historyLog.isEmpty() && Files.isRegularFile(legacyFile)) {
+                migrateLegacyHistory(legacyFile);
+            } else {
+                historyLog.recover(this::addToCache);
+            }
+            log.info("Loaded price history for {} products", historyCache.size());
+
+        } catch (IOException e) {
+            log.error("Failed to recover price history", e);
+        }
+    }
 
-        try (InputStream fis = Files.newInputStream(filePath);
+    /**
+     * Перенос price_history.json.gz в журнал. Старый файл переименовывается
+     * только после того, как снимок журнала записан на диск.
+     */
+    private void migrateLegacyHistory(Path legacyFile) throws IOException {
+        historyLog.recover(history -> { });
+        loadHistory(legacyFile);
+        historyLog.compact(this::liveRecords);
+
+        Files.move(legacyFile, legacyFile.resolveSibling(HISTORY_FILE + MIGRATED_SUFFIX),
+                StandardCopyOption.REPLACE_EXISTING);
+        log.info("Migrated legacy history file {} to history log", legacyFile.getFileName());
+    }
+
+    private void compact() {
+        try {
+            synchronized (historyLog) {
+                // Буфер уже виден в кэше: без сброса он попал бы и в снимок, и в следующий сегмент.
+                // enqueue не должен вклиниться между сбросом и снимком.
+                List<PriceHistory> snapshot;
+                synchronized (pending) {
+                    appendPending();
+                    snapshot = liveRecords();
+                }
+                historyLog.compact(() -> snapshot);
+            }
+        } catch (IOException e) {
+            log.error("Failed to compact history log", e);
+        }
+    }
+
+    /**
+     * Перенос буфера в журнал. Вызывается под монитором журнала: выборка и запись
+     * не разделяются компакцией. Порядок блокировок - historyLog, затем pending.
+     */
+    private int appendPending() throws IOException {
+        List<PriceHistory> batch;
+        synchronized (pending) {
+            if (pending.isEmpty()) return 0;
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        historyLog.appendAll(batch);
+        return batch.size();
+    }
+
+    private List<PriceHistory> liveRecords() {
+        return historyCache.values().stream()
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    private void addToCache(PriceHistory history) {
+        ProductKey key = ProductKey.parse(history.getSiteId(), history.getProductKey());
+        historyCache.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(history);
+        timeIndex.add(history);
+    }
+
+    private void loadHistory(Path filePath) throws IOException {
+        try (InputStream fis = new BufferedInputStream(Files.newInputStream(filePath));
              InputStream in  = isGzip(fis) ? new GZIPInputStream(fis) : fis) {
 
             var tf = objectMapper.getTypeFactory();
@@ -134,73 +331,16 @@ public class HistoryRepository {
             if (loaded == null) loaded = Map.of();
 
             historyCache.clear();
-            historyCache.putAll(loaded);
-            log.info("Loaded price history for {} products", historyCache.size());
-
-        } catch (IOException e) {
-            log.error("Failed to load history from file {}", filePath.toAbsolutePath(), e);
+            timeIndex.clear();
+            loaded.values().forEach(list -> list.forEach(this::addToCache));
         }
     }
 
-    /** Проверяем сигнатуру GZIP (0x1F 0x8B), не закрывая поток. */
+    /** Проверяем сигнатуру GZIP (0x1F 0x8B), не закрывая поток (поток должен поддерживать mark). */
     private boolean isGzip(InputStream is) throws IOException {
-        if (!is.markSupported()) is = new BufferedInputStream(is);
         is.mark(2);
         int b1 = is.read(), b2 = is.read();
         is.reset();
         return b1 == 0x1f && b2 == 0x8b;
     }
-
-    private void saveToFile() {
-        Path filePath = Paths.get(HISTORY_DIR, HISTORY_FILE);
-
-        try (OutputStream os = Files.newOutputStream(filePath);
-             GZIPOutputStream gzos = new GZIPOutputStream(os)) {
-
-            objectMapper.writeValue(gzos, historyCache);
-
-        } catch (IOException e) {
-            log.error("Failed to save history to file", e);
-        }
-    }
-
-    private PriceHistory createHistory(PriceRecord current, PriceRecord previous) {
-        PriceHistory history = PriceHistory.builder()
-                .id(UUID.randomUUID().toString())
-                .siteId(current.getSiteId())
-                .productKey(generateProductKey(current))
-                .productName(current.getProductName())
-                .price(current.getPrice())
-                .timestamp(current.getTimestamp())
-                .previousPrice(previous != null ? previous.getPrice() : null)
-                .build();
-
-        history.calculateChange();
-
-        if (previous != null) {
-            if (current.getPrice().compareTo(previous.getPrice()) > 0) {
-                history.setChangeType("INCREASE");
-            } else if (current.getPrice().compareTo(previous.getPrice()) < 0) {
-                history.setChangeType("DECREASE");
-            } else {
-                history.setChangeType("NO_CHANGE");
-            }
-        } else {
-            history.setChangeType("NEW");
-        }
-
-        return history;
-    }
-
-    private String generateKey(String siteId, String productKey) {
-        return siteId + "|" + productKey;
-    }
-
-    private String generateProductKey(PriceRecord record) {
-        return String.join("|",
-                record.getSize() != null ? record.getSize() : "",
-                record.getThickness() != null ? record.getThickness() : "",
-                record.getSteelGrade() != null ? record.getSteelGrade() : ""
-        );
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,100 @@
+package com.company.parser.repository;
+
+import com.company.parser.model.domain.PriceHistory;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Индекс истории цен по времени: записи разложены по суточным корзинам (UTC),
+ * внутри корзины отсортированы по времени. Запрос за период затрагивает
+ * только корзины периода, последние изменения читаются в обратном порядке без сортировки.
+ * Записи с одинаковым временем упорядочены по номеру добавления, поэтому не совпадают
+ * в множестве корзины, даже если у них нет id.
+ */
+class HistoryTimeIndex {
+
+    private static final long SECONDS_PER_DAY = 24L * 3600L;
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparing((Entry entry) -> entry.history().getTimestamp())
+            .thenComparingLong(Entry::seq);
+
+    private final ConcurrentSkipListMap<Long, ConcurrentSkipListSet<Entry>> buckets =
+            new ConcurrentSkipListMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Добавление записи (записи без времени не индексируются)
+     */
+    void add(PriceHistory history) {
+        if (history.getTimestamp() == null) return;
+        buckets.computeIfAbsent(day(history.getTimestamp()), d -> new ConcurrentSkipListSet<>(ORDER))
+                .add(new Entry(history, sequence.incrementAndGet()));
+    }
+
+    /**
+     * Записи за период [from, to] в порядке возрастания времени
+     */
+    List<PriceHistory> range(Instant from, Instant to) {
+        List<PriceHistory> result = new ArrayList<>();
+        for (ConcurrentSkipListSet<Entry> bucket : buckets.subMap(day(from), true, day(to), true).values()) {
+            for (Entry entry : bucket) {
+                PriceHistory history = entry.history();
+                Instant timestamp = history.getTimestamp();
+                if (timestamp.isAfter(to)) break;
+                if (!timestamp.isBefore(from)) {
+                    result.add(history);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Записи позже cutoff, от новых к старым
+     */
+    List<PriceHistory> newerThan(Instant cutoff) {
+        List<PriceHistory> result = new ArrayList<>();
+        for (ConcurrentSkipListSet<Entry> bucket : buckets.tailMap(day(cutoff), true).descendingMap().values()) {
+            for (Entry entry : bucket.descendingSet()) {
+                if (!entry.history().getTimestamp().isAfter(cutoff)) break;
+                result.add(entry.history());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Удаление записей старше cutoff: целые корзины отбрасываются, граничная - фильтруется
+     */
+    void removeBefore(Instant cutoff) {
+        long cutoffDay = day(cutoff);
+        buckets.headMap(cutoffDay, false).clear();
+
+        ConcurrentSkipListSet<Entry> boundary = buckets.get(cutoffDay);
+        if (boundary != null) {
+            boundary.removeIf(entry -> entry.history().getTimestamp().isBefore(cutoff));
+            if (boundary.isEmpty()) {
+                buckets.remove(cutoffDay, boundary);
+            }
+        }
+    }
+
+    void clear() {
+        buckets.clear();
+    }
+
+    private static long day(Instant instant) {
+        return Math.floorDiv(instant.getEpochSecond(), SECONDS_PER_DAY);
+    }
+
+    /**
+     * Запись в корзине и её номер добавления (уникален в пределах индекса)
+     */
+    private record Entry(PriceHistory history, long seq) {
+    }
+}
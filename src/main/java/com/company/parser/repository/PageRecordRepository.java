@@ -0,0 +1,194 @@
+package com.company.parser.repository;
+
+import com.company.parser.model.domain.PriceRecord;
+import com.company.parser.model.domain.Site;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Записи, разобранные со страниц каталога, по URL страницы
+ *
+ * Используется при условных запросах: если страница не изменилась (304 или тот же
+ * хэш содержимого), записи берутся отсюда без повторного разбора. Хранятся
+ * сырые записи parsePage (до пост-обработки), по файлу на сайт. Вместе с записями
+ * хранится отпечаток селекторов и настроек сайта: после их изменения страница
+ * разбирается заново.
+ */
+@Slf4j
+@Repository
+public class PageRecordRepository {
+
+    private static final String PAGES_DIR = "./data/pages";
+    private static final String FILE_SUFFIX = ".json.gz";
+    private static final long FLUSH_INTERVAL_MS = 60_000;
+    private static final TypeReference<Map<String, CachedPage>> PAGES_TYPE = new TypeReference<>() {};
+    private static final TypeReference<List<PriceRecord>> RECORDS_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Map<String, CachedPage>> pagesBySite = new ConcurrentHashMap<>();
+    private final Set<String> dirtySites = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        objectMapper.registerModule(new JavaTimeModule());
+        // uniqueKey вычисляемый, при чтении пропускается
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Отпечаток селекторов и настроек разбора сайта
+     */
+    public long configHash(Site site) {
+        try {
+            byte[] config = objectMapper.writeValueAsBytes(Arrays.asList(site.getSelectors(), site.getConfig()));
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(config)).getLong();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to fingerprint config of site " + site.getId(), e);
+        }
+    }
+
+    /**
+     * Записи страницы, если сохранены для того же хэша содержимого и той же конфигурации.
+     * Возвращаются копии: пост-обработка изменяет записи.
+     */
+    public Optional<CachedPage> find(String siteId, String url, long contentHash, long configHash) {
+        CachedPage page = pages(siteId).get(url);
+        if (page == null || page.getContentHash() != contentHash || page.getConfigHash() != configHash) {
+            return Optional.empty();
+        }
+        return Optional.of(new CachedPage(page.getContentHash(), page.getConfigHash(), page.getNextPageUrl(),
+                copy(page.getRecords()), page.getParsedAt()));
+    }
+
+    /**
+     * Сохранение разобранных записей страницы
+     */
+    public void save(String siteId, String url, long contentHash, long configHash,
+                     String nextPageUrl, List<PriceRecord> records) {
+        pages(siteId).put(url, new CachedPage(contentHash, configHash, nextPageUrl, copy(records), Instant.now()));
+        dirtySites.add(siteId);
+    }
+
+    /**
+     * Запись изменённых сайтов на диск
+     */
+    @Scheduled(fixedDelay = FLUSH_INTERVAL_MS)
+    public synchronized void flush() {
+        for (String siteId : List.copyOf(dirtySites)) {
+            dirtySites.remove(siteId);
+            try {
+                write(siteId, pages(siteId));
+            } catch (IOException e) {
+                dirtySites.add(siteId);
+                log.error("Failed to save page records for site {}", siteId, e);
+            }
+        }
+    }
+
+    // === Private методы ===
+
+    private Map<String, CachedPage> pages(String siteId) {
+        return pagesBySite.computeIfAbsent(siteId, this::load);
+    }
+
+    private Map<String, CachedPage> load(String siteId) {
+        Map<String, CachedPage> pages = new ConcurrentHashMap<>();
+        Path file = Paths.get(PAGES_DIR, siteId + FILE_SUFFIX);
+        if (!Files.exists(file)) {
+            return pages;
+        }
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            pages.putAll(objectMapper.readValue(in, PAGES_TYPE));
+            log.debug("Loaded {} cached pages for site {}", pages.size(), siteId);
+        } catch (IOException e) {
+            log.error("Failed to load page records for site {}, starting empty", siteId, e);
+        }
+        return pages;
+    }
+
+    private void write(String siteId, Map<String, CachedPage> pages) throws IOException {
+        Path dir = Paths.get(PAGES_DIR);
+        Files.createDirectories(dir);
+        Path target = dir.resolve(siteId + FILE_SUFFIX);
+        Path tmp = dir.resolve(siteId + FILE_SUFFIX + ".tmp");
+
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+            objectMapper.writeValue(out, Map.copyOf(pages));
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private List<PriceRecord> copy(List<PriceRecord> records) {
+        return objectMapper.convertValue(records, RECORDS_TYPE);
+    }
+
+    /**
+     * Сохранённая страница
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CachedPage {
+
+        /**
+         * Хэш содержимого, по которому разобраны записи
+         */
+        private long contentHash;
+
+        /**
+         * Отпечаток конфигурации сайта, с которой разобраны записи (см. configHash)
+         */
+        private long configHash;
+
+        /**
+         * URL следующей страницы
+         */
+        private String nextPageUrl;
+
+        /**
+         * Записи страницы до пост-обработки
+         */
+        private List<PriceRecord> records;
+
+        /**
+         * Время разбора
+         */
+        private Instant parsedAt;
+    }
+}
@@ -0,0 +1,572 @@
+package com.company.parser.repository;
+
+import com.company.parser.model.domain.PriceRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Колоночное хранилище цен с партиционированием по дням
+ *
+ * Каждый прогон записывается в отдельный файл
+ * data/prices/columnar/yyyy-MM-dd/run-&lt;commitMillis&gt;-&lt;minMillis&gt;.pcol: партиция и первое
+ * число - время записи прогона, второе - время самой ранней записи. Строковые поля кодируются
+ * словарём файла (int id), цены хранятся как long с общим для файла масштабом (не меньше 2,
+ * т.е. как минимум копейки), время - в миллисекундах. Заголовок содержит min/max времени записей,
+ * поэтому сканирование по периоду пропускает файлы, не читая колонки. Чтение идёт через
+ * отображение файла в память ({@link PriceSnapshot}) без копирования колонок в heap.
+ *
+ * Формат файла (версия 1):
+ * <pre>
+ * int magic, short version, int rowCount, long minTimestamp, long maxTimestamp, byte priceScale
+ * int dictSize, dictSize x (int length, byte[] utf8)
+ * long[rowCount] timestamp, long[rowCount] price
+ * STRING_COLUMNS x int[rowCount] (id в словаре, -1 = null)
+ * int[dictSize] id словаря в порядке байтов UTF-8
+ * int[rowCount] номера строк в порядке ключа (SITE_ID, SIZE, THICKNESS, STEEL_GRADE, строка)
+ * </pre>
+ */
+@Slf4j
+class PriceColumnStore {
+
+    static final int MAGIC = 0x50434F4C; // "PCOL"
+    static final short VERSION = 1;
+    static final String FILE_PREFIX = "run-";
+    static final String FILE_SUFFIX = ".pcol";
+    static final int PRICE_SCALE = 2;
+    static final int MAX_PRICE_SCALE = 6;
+    static final long NULL_LONG = Long.MIN_VALUE;
+    static final int NULL_ID = -1;
+
+    /**
+     * Порядок строковых колонок в файле
+     */
+    static final int SITE_ID = 0;
+    static final int SIZE = 1;
+    static final int THICKNESS = 2;
+    static final int STEEL_GRADE = 3;
+    static final int SITE_NAME = 4;
+    static final int PRODUCT_NAME = 5;
+    static final int LENGTH = 6;
+    static final int CURRENCY = 7;
+    static final int UNIT = 8;
+    static final int URL = 9;
+    static final int ID = 10;
+    static final int EXTRA = 11;
+    static final int STRING_COLUMNS = 12;
+
+    /**
+     * Колонки ключа продукта в порядке индекса строк
+     */
+    static final int[] KEY_COLUMNS = {SITE_ID, SIZE, THICKNESS, STEEL_GRADE};
+
+    private final Path root;
+    private final ObjectMapper objectMapper;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    PriceColumnStore(Path root, ObjectMapper objectMapper) {
+        this.root = root;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Запись прогона в партицию текущего дня
+     */
+    Path write(Collection<PriceRecord> records) throws IOException {
+        ChunkWriter writer = newWriter();
+        records.forEach(writer::append);
+        return writer.commit();
+    }
+
+    /**
+     * Создание писателя для постепенного наполнения одного прогона
+     */
+    ChunkWriter newWriter() {
+        return new ChunkWriter();
+    }
+
+    /**
+     * Есть ли в хранилище хотя бы один прогон
+     */
+    boolean isEmpty() throws IOException {
+        return latestChunk() == null;
+    }
+
+    /**
+     * Чтение последнего записанного прогона
+     */
+    List<PriceRecord> readLatest() throws IOException {
+        Path latest = latestChunk();
+        if (latest == null) {
+            return new ArrayList<>();
+        }
+        List<PriceRecord> result = new ArrayList<>();
+        readChunk(latest, null, null, null, result);
+        return result;
+    }
+
+    /**
+     * Сканирование записей за период [from, to]
+     */
+    List<PriceRecord> scan(Instant from, Instant to) throws IOException {
+        List<PriceRecord> result = new ArrayList<>();
+        for (Path chunk : chunksBetween(from, to)) {
+            readChunk(chunk, from, to, null, result);
+        }
+        return result;
+    }
+
+    /**
+     * Сканирование записей продукта за период. Null в ключе означает любое значение.
+     */
+    List<PriceRecord> scanProduct(String siteId, String size, String thickness, String steelGrade,
+                                  Instant from, Instant to) throws IOException {
+        String[] key = new String[STRING_COLUMNS];
+        key[SITE_ID] = siteId;
+        key[SIZE] = size;
+        key[THICKNESS] = thickness;
+        key[STEEL_GRADE] = steelGrade;
+
+        List<PriceRecord> result = new ArrayList<>();
+        for (Path chunk : chunksBetween(from, to)) {
+            readChunk(chunk, from, to, key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Последний прогон, отображённый в память, без материализации записей.
+     * Снимок закрывает вызывающий.
+     */
+    Optional<PriceSnapshot> openLatest() throws IOException {
+        Path latest = latestChunk();
+        return latest != null ? Optional.of(PriceSnapshot.open(latest, objectMapper)) : Optional.empty();
+    }
+
+    // === Private методы ===
+
+    /**
+     * Файлы прогонов в хронологическом порядке, которые могут содержать записи из [from, to].
+     * Время прогона не меньше времени его записей, поэтому партиции раньше дня from пропускаются.
+     * Прогон может быть записан позже дня to, поэтому более поздние файлы отбираются по времени
+     * самой ранней записи из имени файла - без отображения в память.
+     */
+    private List<Path> chunksBetween(Instant from, Instant to) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+
+        String fromPartition = from != null ? LocalDate.ofInstant(from, zone).toString() : "";
+        long toMillis = to != null ? to.toEpochMilli() : Long.MAX_VALUE;
+        List<Path> chunks = new ArrayList<>();
+
+        try (Stream<Path> partitions = Files.list(root)) {
+            List<Path> sorted = partitions
+                    .filter(Files::isDirectory)
+                    .filter(p -> p.getFileName().toString().compareTo(fromPartition) >= 0)
+                    .sorted()
+                    .toList();
+
+            for (Path partition : sorted) {
+                try (Stream<Path> files = Files.list(partition)) {
+                    files.filter(this::isChunk)
+                            .filter(chunk -> chunkMinTime(chunk) <= toMillis)
+                            .sorted(Comparator.comparingLong(this::chunkTime))
+                            .forEach(chunks::add);
+                }
+            }
+        }
+        return chunks;
+    }
+
+    private Path latestChunk() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return null;
+        }
+
+        try (Stream<Path> partitions = Files.list(root)) {
+            List<Path> sorted = partitions
+                    .filter(Files::isDirectory)
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+
+            for (Path partition : sorted) {
+                try (Stream<Path> files = Files.list(partition)) {
+                    Optional<Path> latest = files.filter(this::isChunk)
+                            .max(Comparator.comparingLong(this::chunkTime));
+                    if (latest.isPresent()) {
+                        return latest.get();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean isChunk(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX) && chunkNameParts(path).length == 2;
+    }
+
+    private long chunkTime(Path path) {
+        String[] parts = chunkNameParts(path);
+        try {
+            return Long.parseLong(parts[0]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Время самой ранней записи из имени файла
+     */
+    private long chunkMinTime(Path path) {
+        String[] parts = chunkNameParts(path);
+        try {
+            return Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private String[] chunkNameParts(Path path) {
+        String name = path.getFileName().toString();
+        return name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()).split("-");
+    }
+
+    /**
+     * Чтение файла прогона через отображение в память. Файл пропускается по заголовку,
+     * записи материализуются только для строк, прошедших фильтр по времени и ключу.
+     */
+    private void readChunk(Path chunk, Instant from, Instant to, String[] key,
+                           List<PriceRecord> result) throws IOException {
+        long fromMillis = from != null ? from.toEpochMilli() : Long.MIN_VALUE;
+        long toMillis = to != null ? to.toEpochMilli() : Long.MAX_VALUE;
+
+        PriceSnapshot snapshot = openChunk(chunk);
+        if (snapshot == null) {
+            return;
+        }
+
+        try (snapshot) {
+            if (snapshot.size() == 0
+                    || snapshot.getMaxTimestamp() < fromMillis || snapshot.getMinTimestamp() > toMillis) {
+                return;
+            }
+
+            if (key == null) {
+                for (int row = 0; row < snapshot.size(); row++) {
+                    collect(snapshot, row, fromMillis, toMillis, result);
+                }
+                return;
+            }
+
+            // Ключ продукта переводится в id словаря; отсутствие значения в словаре - файл пропускается
+            int[] keyIds = snapshot.resolveKey(key[SITE_ID], key[SIZE], key[THICKNESS], key[STEEL_GRADE]);
+            if (keyIds == null) {
+                return;
+            }
+
+            // Индекс отдаёт строки в порядке ключа; записи выдаются в порядке файла, как при переборе
+            IntStream.Builder matched = IntStream.builder();
+            snapshot.forEachMatch(keyIds, matched);
+            matched.build().sorted().forEach(row -> collect(snapshot, row, fromMillis, toMillis, result));
+        }
+    }
+
+    private void collect(PriceSnapshot snapshot, int row, long fromMillis, long toMillis, List<PriceRecord> result) {
+        long ts = snapshot.timestampAt(row);
+        if (ts != NULL_LONG && (ts < fromMillis || ts > toMillis)) return;
+
+        result.add(snapshot.get(row));
+    }
+
+    private PriceSnapshot openChunk(Path chunk) {
+        try {
+            return PriceSnapshot.open(chunk, objectMapper);
+        } catch (IOException e) {
+            log.warn("Skipping {}: {}", chunk, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Перевод цены в long с заданным масштабом без округления
+     *
+     * @throws ArithmeticException если цена не представима точно в этом масштабе или не помещается в long
+     */
+    static long toScaled(BigDecimal price, int scale) {
+        if (price == null) return NULL_LONG;
+        long scaled = price.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        if (scaled == NULL_LONG) {
+            throw new ArithmeticException("Price collides with the null marker: " + price);
+        }
+        return scaled;
+    }
+
+    /**
+     * Сравнение двух номеров строк или id словаря
+     */
+    @FunctionalInterface
+    interface IntComparator {
+        int compare(int a, int b);
+    }
+
+    /**
+     * Накопитель одного прогона: строки хранятся сразу в колонках,
+     * объекты PriceRecord после append не удерживаются
+     */
+    class ChunkWriter {
+
+        private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private long[] timestamps = new long[256];
+        private long[] prices = new long[256];
+        private int[][] columns = new int[STRING_COLUMNS][256];
+        private int rows;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+        private int priceScale = PRICE_SCALE;
+        private int rejected;
+
+        /**
+         * Добавление записи в прогон. Цена хранится точно: при более мелкой дробной части
+         * масштаб колонки цен увеличивается (до MAX_PRICE_SCALE). Запись с ценой,
+         * которую нельзя сохранить без потери точности, отклоняется.
+         *
+         * @return false, если запись отклонена и в прогон не попала
+         */
+        boolean append(PriceRecord record) {
+            long price;
+            try {
+                price = scalePrice(record.getPrice());
+            } catch (ArithmeticException e) {
+                rejected++;
+                log.warn("Rejected price {} for {} ({}): not representable in the price column",
+                        record.getPrice(), record.getSiteId(), record.getProductName());
+                return false;
+            }
+
+            ensureCapacity(rows + 1);
+
+            long ts = record.getTimestamp() != null ? record.getTimestamp().toEpochMilli() : NULL_LONG;
+            if (ts != NULL_LONG) {
+                minTimestamp = Math.min(minTimestamp, ts);
+                maxTimestamp = Math.max(maxTimestamp, ts);
+            }
+            timestamps[rows] = ts;
+            prices[rows] = price;
+
+            columns[SITE_ID][rows] = encode(record.getSiteId());
+            columns[SIZE][rows] = encode(record.getSize());
+            columns[THICKNESS][rows] = encode(record.getThickness());
+            columns[STEEL_GRADE][rows] = encode(record.getSteelGrade());
+            columns[SITE_NAME][rows] = encode(record.getSiteName());
+            columns[PRODUCT_NAME][rows] = encode(record.getProductName());
+            columns[LENGTH][rows] = encode(record.getLength());
+            columns[CURRENCY][rows] = encode(record.getCurrency());
+            columns[UNIT][rows] = encode(record.getUnit());
+            columns[URL][rows] = encode(record.getUrl());
+            columns[ID][rows] = encode(record.getId());
+            columns[EXTRA][rows] = encode(encodeExtra(record.getAdditionalProperties()));
+
+            rows++;
+            return true;
+        }
+
+        /**
+         * Количество накопленных строк
+         */
+        int size() {
+            return rows;
+        }
+
+        /**
+         * Количество отклонённых записей
+         */
+        int rejected() {
+            return rejected;
+        }
+
+        /**
+         * Запись прогона на диск (через временный файл и атомарное переименование)
+         */
+        Path commit() throws IOException {
+            long runTime = System.currentTimeMillis();
+            Path partition = root.resolve(LocalDate.ofInstant(Instant.ofEpochMilli(runTime), zone).toString());
+            Files.createDirectories(partition);
+
+            long firstRecord = rows > 0 && minTimestamp != Long.MAX_VALUE ? minTimestamp : runTime;
+            Path target = partition.resolve(FILE_PREFIX + runTime + "-" + firstRecord + FILE_SUFFIX);
+            while (Files.exists(target)) {
+                target = partition.resolve(FILE_PREFIX + (++runTime) + "-" + firstRecord + FILE_SUFFIX);
+            }
+            Path tmp = partition.resolve(target.getFileName() + ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeInt(rows);
+                out.writeLong(rows > 0 && minTimestamp != Long.MAX_VALUE ? minTimestamp : NULL_LONG);
+                out.writeLong(rows > 0 && maxTimestamp != Long.MIN_VALUE ? maxTimestamp : NULL_LONG);
+                out.writeByte(priceScale);
+
+                byte[][] encoded = new byte[dictionary.size()][];
+                out.writeInt(dictionary.size());
+                for (int id = 0; id < encoded.length; id++) {
+                    encoded[id] = dictionary.get(id).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(encoded[id].length);
+                    out.write(encoded[id]);
+                }
+
+                for (int i = 0; i < rows; i++) out.writeLong(timestamps[i]);
+                for (int i = 0; i < rows; i++) out.writeLong(prices[i]);
+                for (int c = 0; c < STRING_COLUMNS; c++) {
+                    int[] column = columns[c];
+                    for (int i = 0; i < rows; i++) out.writeInt(column[i]);
+                }
+
+                // Индексы для двоичного поиска значения в словаре и строк по ключу продукта
+                for (int id : sortedOrder(encoded.length, (a, b) -> Arrays.compare(encoded[a], encoded[b]))) {
+                    out.writeInt(id);
+                }
+                for (int row : sortedOrder(rows, this::compareKey)) {
+                    out.writeInt(row);
+                }
+            }
+
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Wrote {} price rows ({} dictionary entries, price scale {}) to {}",
+                    rows, dictionary.size(), priceScale, target);
+            if (rejected > 0) {
+                log.warn("{} records with non-representable prices were not written to {}", rejected, target);
+            }
+            return target;
+        }
+
+        /**
+         * Порядок ключа продукта; при равных ключах - по номеру строки
+         */
+        private int compareKey(int a, int b) {
+            for (int c : KEY_COLUMNS) {
+                int cmp = Integer.compare(columns[c][a], columns[c][b]);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return Integer.compare(a, b);
+        }
+
+        /**
+         * Номера 0..size-1 в порядке comparator (сортировка слиянием по int[], без упаковки)
+         */
+        private int[] sortedOrder(int size, IntComparator comparator) {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            mergeSort(order, new int[size], 0, size, comparator);
+            return order;
+        }
+
+        private void mergeSort(int[] values, int[] buffer, int from, int to, IntComparator comparator) {
+            if (to - from < 2) {
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            mergeSort(values, buffer, from, mid, comparator);
+            mergeSort(values, buffer, mid, to, comparator);
+            if (comparator.compare(values[mid - 1], values[mid]) <= 0) {
+                return;
+            }
+
+            System.arraycopy(values, from, buffer, from, to - from);
+            int left = from;
+            int right = mid;
+            for (int i = from; i < to; i++) {
+                if (right >= to || (left < mid && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+                    values[i] = buffer[left++];
+                } else {
+                    values[i] = buffer[right++];
+                }
+            }
+        }
+
+        /**
+         * Цена в масштабе колонки. Если у цены больше знаков после запятой,
+         * уже накопленные цены пересчитываются в новый масштаб.
+         */
+        private long scalePrice(BigDecimal price) {
+            if (price == null) return NULL_LONG;
+
+            int required = Math.max(price.stripTrailingZeros().scale(), PRICE_SCALE);
+            if (required > MAX_PRICE_SCALE) {
+                throw new ArithmeticException("Price scale " + required + " exceeds " + MAX_PRICE_SCALE);
+            }
+            if (required > priceScale) {
+                long scaled = toScaled(price, required);
+                rescale(required);
+                return scaled;
+            }
+            return toScaled(price, priceScale);
+        }
+
+        /**
+         * Перевод накопленных цен в больший масштаб; при переполнении колонка не меняется
+         */
+        private void rescale(int scale) {
+            long factor = BigDecimal.TEN.pow(scale - priceScale).longValueExact();
+            long[] rescaled = new long[prices.length];
+            for (int i = 0; i < rows; i++) {
+                rescaled[i] = prices[i] == NULL_LONG ? NULL_LONG : Math.multiplyExact(prices[i], factor);
+            }
+            prices = rescaled;
+            priceScale = scale;
+        }
+
+        private int encode(String value) {
+            if (value == null) return NULL_ID;
+            Integer id = dictionaryIndex.get(value);
+            if (id == null) {
+                id = dictionary.size();
+                dictionary.add(value);
+                dictionaryIndex.put(value, id);
+            }
+            return id;
+        }
+
+        private String encodeExtra(Map<String, String> properties) {
+            if (properties == null || properties.isEmpty()) return null;
+            try {
+                return objectMapper.writeValueAsString(properties);
+            } catch (IOException e) {
+                log.debug("Failed to encode additional properties: {}", e.getMessage());
+                return null;
+            }
+        }
+
+        private void ensureCapacity(int required) {
+            if (required <= timestamps.length) return;
+
+            int capacity = Math.max(required, timestamps.length * 2);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            for (int c = 0; c < STRING_COLUMNS; c++) {
+                columns[c] = Arrays.copyOf(columns[c], capacity);
+            }
+        }
+    }
+}
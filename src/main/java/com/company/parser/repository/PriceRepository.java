@@ -1,6 +1,8 @@
 package com.company.parser.repository;
 
 import com.company.parser.model.domain.PriceRecord;
+import com.company.parser.model.domain.ProductKey;
+import com.company.parser.util.SizeNormalizer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.RequiredArgsConstructor;
@@ -12,18 +14,20 @@ import java.io.*;
 import java.nio.file.*;
 import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * Репозиторий для работы с данными о ценах
+ *
+ * Помимо основного кэша по ключу поддерживаются вторичные индексы
+ * (сайт, нормализованные размер и толщина, время), которые обновляются
+ * вместе с кэшем при сохранении и удалении записей.
  */
 @Slf4j
 @Repository
@@ -32,15 +36,24 @@ public class PriceRepository {
 
     private static final String DATA_DIR = "./data/prices";
     private static final String ARCHIVE_DIR = "./data/prices/archive";
-    private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HHmmss");
+    private static final String COLUMNAR_DIR = "./data/prices/columnar";
 
+    private final SizeNormalizer sizeNormalizer;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final Map<String, PriceRecord> cache = new ConcurrentHashMap<>();
+    private final Map<ProductKey, PriceRecord> cache = new ConcurrentHashMap<>();
+
+    // Вторичные индексы: значение -> ключи кэша
+    private final Map<String, Set<ProductKey>> siteIndex = new ConcurrentHashMap<>();
+    private final Map<String, Set<ProductKey>> sizeIndex = new ConcurrentHashMap<>();
+    private final Map<String, Set<ProductKey>> thicknessIndex = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Instant, Set<ProductKey>> timeIndex = new ConcurrentSkipListMap<>();
+    private PriceColumnStore columnStore;
 
     @PostConstruct
     public void init() {
         objectMapper.registerModule(new JavaTimeModule());
         createDirectories();
+        columnStore = new PriceColumnStore(Paths.get(COLUMNAR_DIR), objectMapper);
         loadCache();
     }
 
@@ -52,16 +65,20 @@ public class PriceRepository {
             return;
         }
 
-        // Обновление кэша
-        records.forEach(record -> {
-            String key = generateKey(record);
-            cache.put(key, record);
-        });
+        // Обновление кэша и индексов вместе с записью прогона в файл
+        RunWriter run = openRun();
+        run.append(records);
+        run.commit();
 
-        // Сохранение в файл
-        saveToFile(records);
+        log.info("Saved {} price records", run.size());
+    }
 
-        log.info("Saved {} price records", records.size());
+    /**
+     * Открытие постепенно наполняемого прогона. Записи попадают в кэш сразу
+     * при добавлении, на диск прогон записывается одним файлом при commit().
+     */
+    public RunWriter openRun() {
+        return new RunWriter(columnStore.newWriter());
     }
 
     /**
@@ -75,9 +92,25 @@ public class PriceRepository {
      * Получение записей по сайту
      */
     public List<PriceRecord> findBySiteId(String siteId) {
-        return cache.values().stream()
-                .filter(record -> siteId.equals(record.getSiteId()))
-                .collect(Collectors.toList());
+        return resolve(siteIndex.get(siteId), record -> siteId.equals(record.getSiteId()));
+    }
+
+    /**
+     * Получение записей по размеру (сравнение после нормализации)
+     */
+    public List<PriceRecord> findBySize(String size) {
+        String normalized = sizeNormalizer.normalizeSize(size);
+        return resolve(sizeIndex.get(normalized),
+                record -> normalized.equals(sizeNormalizer.normalizeSize(record.getSize())));
+    }
+
+    /**
+     * Получение записей по толщине (сравнение после нормализации)
+     */
+    public List<PriceRecord> findByThickness(String thickness) {
+        String normalized = sizeNormalizer.normalizeThickness(thickness);
+        return resolve(thicknessIndex.get(normalized),
+                record -> normalized.equals(sizeNormalizer.normalizeThickness(record.getThickness())));
     }
 
     /**
@@ -87,29 +120,66 @@ public class PriceRepository {
         Instant startOfDay = date.atStartOfDay(ZoneId.systemDefault()).toInstant();
         Instant endOfDay = date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant();
 
-        return cache.values().stream()
-                .filter(record -> {
-                    Instant timestamp = record.getTimestamp();
-                    return timestamp != null &&
-                            !timestamp.isBefore(startOfDay) &&
-                            timestamp.isBefore(endOfDay);
-                })
-                .collect(Collectors.toList());
+        return findByPeriod(startOfDay, endOfDay);
+    }
+
+    /**
+     * Получение записей за период [from, to) по индексу времени
+     */
+    public List<PriceRecord> findByPeriod(Instant from, Instant to) {
+        List<PriceRecord> result = new ArrayList<>();
+        for (Set<ProductKey> keys : timeIndex.subMap(from, true, to, false).values()) {
+            result.addAll(resolve(keys, record -> {
+                Instant timestamp = record.getTimestamp();
+                return timestamp != null && !timestamp.isBefore(from) && timestamp.isBefore(to);
+            }));
+        }
+        return result;
     }
 
     /**
      * Поиск записи по ключу
      */
     public Optional<PriceRecord> findByKey(String siteId, String size, String thickness) {
-        String key = generateKey(siteId, size, thickness);
+        ProductKey key = generateKey(siteId, size, thickness);
         return Optional.ofNullable(cache.get(key));
     }
 
     /**
-     * Загрузка последних данных из файла
+     * Записи за период из колоночного хранилища (включая прошлые прогоны)
+     */
+    public List<PriceRecord> scan(Instant from, Instant to) {
+        try {
+            return columnStore.scan(from, to);
+        } catch (IOException e) {
+            log.error("Failed to scan prices from {} to {}", from, to, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * История цен продукта за период из колоночного хранилища
+     */
+    public List<PriceRecord> scanProduct(String siteId, String size, String thickness, String steelGrade,
+                                         Instant from, Instant to) {
+        try {
+            return columnStore.scanProduct(siteId, size, thickness, steelGrade, from, to);
+        } catch (IOException e) {
+            log.error("Failed to scan prices for {}|{}|{}|{}", siteId, size, thickness, steelGrade, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Загрузка последних данных
      */
     public List<PriceRecord> loadLatest() {
         try {
+            if (!columnStore.isEmpty()) {
+                return columnStore.readLatest();
+            }
+
+            // Данные до перехода на колоночное хранилище
             Path latestFile = findLatestFile();
             if (latestFile != null) {
                 return loadFromFile(latestFile);
@@ -122,7 +192,8 @@ public class PriceRepository {
     }
 
     /**
-     * Архивирование старых данных
+     * Архивирование старых JSON снимков. Партиции колоночного хранилища
+     * не переносятся: они компактны и нужны для запросов по периоду.
      */
     public void archiveOldData(int daysToKeep) {
         try {
@@ -147,19 +218,74 @@ public class PriceRepository {
     /**
      * Удаление записей старше указанной даты
      */
-    public void deleteOlderThan(Instant timestamp) {
-        cache.entrySet().removeIf(entry -> {
-            PriceRecord record = entry.getValue();
-            return record.getTimestamp() != null && record.getTimestamp().isBefore(timestamp);
+    public synchronized void deleteOlderThan(Instant timestamp) {
+        List<ProductKey> expired = timeIndex.headMap(timestamp, false).values().stream()
+                .flatMap(Set::stream)
+                .toList();
+
+        expired.forEach(key -> {
+            PriceRecord record = cache.get(key);
+            if (record != null && record.getTimestamp() != null && record.getTimestamp().isBefore(timestamp)) {
+                cache.remove(key);
+                unindex(key, record);
+            }
         });
     }
 
+    /**
+     * Прогон, наполняемый постранично. Строки копятся в колонках файла прогона,
+     * объекты записей после добавления не удерживаются. Не потокобезопасен.
+     */
+    public class RunWriter {
+
+        private final PriceColumnStore.ChunkWriter writer;
+
+        private RunWriter(PriceColumnStore.ChunkWriter writer) {
+            this.writer = writer;
+        }
+
+        /**
+         * Добавление записей страницы в прогон и кэш
+         */
+        public void append(List<PriceRecord> records) {
+            records.forEach(record -> {
+                // Запись с непредставимой ценой не попадает ни в прогон, ни в кэш
+                if (writer.append(record)) {
+                    put(record);
+                }
+            });
+        }
+
+        /**
+         * Количество записей в прогоне
+         */
+        public int size() {
+            return writer.size();
+        }
+
+        /**
+         * Запись прогона на диск (пустой прогон не записывается)
+         */
+        public void commit() {
+            if (writer.size() == 0) {
+                return;
+            }
+            try {
+                Path chunk = writer.commit();
+                log.info("Saved {} price records to {}", writer.size(), chunk.getFileName());
+            } catch (IOException e) {
+                log.error("Failed to save data to columnar store", e);
+            }
+        }
+    }
+
     // === Private методы ===
 
     private void createDirectories() {
         try {
             Files.createDirectories(Paths.get(DATA_DIR));
             Files.createDirectories(Paths.get(ARCHIVE_DIR));
+            Files.createDirectories(Paths.get(COLUMNAR_DIR));
         } catch (IOException e) {
             log.error("Failed to create directories", e);
         }
@@ -167,27 +293,69 @@ public class PriceRepository {
 
     private void loadCache() {
         List<PriceRecord> records = loadLatest();
-        records.forEach(record -> {
-            String key = generateKey(record);
-            cache.put(key, record);
-        });
+        records.forEach(this::put);
         log.info("Loaded {} records into cache", cache.size());
     }
 
-    private void saveToFile(List<PriceRecord> records) {
-        String timestamp = LocalDateTime.now().format(FILE_DATE_FORMAT);
-        String fileName = String.format("prices_%s.json.gz", timestamp);
-        Path filePath = Paths.get(DATA_DIR, fileName);
+    /**
+     * Запись в кэш с заменой индексов предыдущей версии записи
+     */
+    private synchronized void put(PriceRecord record) {
+        ProductKey key = generateKey(record);
+        PriceRecord previous = cache.put(key, record);
+        if (previous != null) {
+            unindex(key, previous);
+        }
+        index(key, record);
+    }
 
-        try (OutputStream os = Files.newOutputStream(filePath);
-             GZIPOutputStream gzos = new GZIPOutputStream(os)) {
+    private void index(ProductKey key, PriceRecord record) {
+        addToIndex(siteIndex, record.getSiteId(), key);
+        addToIndex(sizeIndex, sizeNormalizer.normalizeSize(record.getSize()), key);
+        addToIndex(thicknessIndex, sizeNormalizer.normalizeThickness(record.getThickness()), key);
+        if (record.getTimestamp() != null) {
+            addToIndex(timeIndex, record.getTimestamp(), key);
+        }
+    }
 
-            objectMapper.writeValue(gzos, records);
-            log.debug("Saved {} records to {}", records.size(), fileName);
+    private void unindex(ProductKey key, PriceRecord record) {
+        removeFromIndex(siteIndex, record.getSiteId(), key);
+        removeFromIndex(sizeIndex, sizeNormalizer.normalizeSize(record.getSize()), key);
+        removeFromIndex(thicknessIndex, sizeNormalizer.normalizeThickness(record.getThickness()), key);
+        if (record.getTimestamp() != null) {
+            removeFromIndex(timeIndex, record.getTimestamp(), key);
+        }
+    }
 
-        } catch (IOException e) {
-            log.error("Failed to save data to file", e);
+    private static <K> void addToIndex(Map<K, Set<ProductKey>> index, K value, ProductKey key) {
+        if (value == null) return;
+        index.computeIfAbsent(value, v -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<ProductKey>> index, K value, ProductKey key) {
+        if (value == null) return;
+        index.computeIfPresent(value, (v, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /**
+     * Получение записей по ключам индекса. Чтение идёт без блокировки,
+     * поэтому запись перепроверяется на случай параллельного обновления.
+     */
+    private List<PriceRecord> resolve(Set<ProductKey> keys, Predicate<PriceRecord> check) {
+        if (keys == null) {
+            return new ArrayList<>();
         }
+        List<PriceRecord> result = new ArrayList<>(keys.size());
+        for (ProductKey key : keys) {
+            PriceRecord record = cache.get(key);
+            if (record != null && check.test(record)) {
+                result.add(record);
+            }
+        }
+        return result;
     }
 
     private List<PriceRecord> loadFromFile(Path filePath) {
@@ -232,15 +400,14 @@ public class PriceRepository {
         }
     }
 
-    private String generateKey(PriceRecord record) {
+    /**
+     * Ключ кэша: продукт определяется сайтом, размером и толщиной
+     */
+    private ProductKey generateKey(PriceRecord record) {
         return generateKey(record.getSiteId(), record.getSize(), record.getThickness());
     }
 
-    private String generateKey(String siteId, String size, String thickness) {
-        return String.join("|",
-                siteId != null ? siteId : "",
-                size != null ? size : "",
-                thickness != null ? thickness : ""
-        );
+    private ProductKey generateKey(String siteId, String size, String thickness) {
+        return ProductKey.of(siteId, size, thickness, null);
     }
 }
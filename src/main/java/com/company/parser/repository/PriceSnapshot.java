@@ -0,0 +1,385 @@
+package com.company.parser.repository;
+
+import com.company.parser.model.domain.PriceRecord;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static com.company.parser.repository.PriceColumnStore.*;
+
+/**
+ * Снимок прогона цен, отображённый в память (FileChannel.map)
+ *
+ * Колонки читаются напрямую из отображения по смещению, строки словаря
+ * декодируются только при обращении. Записи материализуются по одной,
+ * поэтому для поиска продукта не нужно поднимать весь файл в heap.
+ * Поиск по ключу продукта идёт двоичным поиском по индексам из конца файла.
+ *
+ * Отображение освобождает GC, когда снимок становится недостижим. close() только
+ * запрещает дальнейшее чтение: явное освобождение отображения при конкурентном
+ * чтении привело бы к падению JVM вместо исключения.
+ */
+@Slf4j
+final class PriceSnapshot implements Closeable {
+
+    private static final int HEADER_BYTES = 4 + 2 + 4 + 8 + 8 + 1;
+    private static final TypeReference<Map<String, String>> EXTRA_TYPE = new TypeReference<>() {};
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final ObjectMapper objectMapper;
+    private final int rows;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final int priceScale;
+    private final int[] dictionaryOffsets;
+    private final String[] decoded;
+    private final int timestampOffset;
+    private final int priceOffset;
+    private final int columnsOffset;
+    private final int dictionaryOrderOffset;
+    private final int keyOrderOffset;
+    private volatile boolean closed;
+
+    private PriceSnapshot(Path path, MappedByteBuffer buffer, ObjectMapper objectMapper) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        this.objectMapper = objectMapper;
+
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a price chunk: " + path);
+        }
+        short version = buffer.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported price chunk version " + version + ": " + path);
+        }
+
+        this.rows = buffer.getInt(6);
+        this.minTimestamp = buffer.getLong(10);
+        this.maxTimestamp = buffer.getLong(18);
+        this.priceScale = buffer.get(HEADER_BYTES - 1);
+
+        // Смещения строк словаря (без декодирования)
+        int offset = HEADER_BYTES;
+        int dictionarySize = buffer.getInt(offset);
+        offset += 4;
+        this.dictionaryOffsets = new int[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionaryOffsets[i] = offset;
+            offset += 4 + buffer.getInt(offset);
+        }
+        this.decoded = new String[dictionarySize];
+
+        this.timestampOffset = offset;
+        this.priceOffset = timestampOffset + rows * 8;
+        this.columnsOffset = priceOffset + rows * 8;
+
+        this.dictionaryOrderOffset = columnsOffset + STRING_COLUMNS * rows * 4;
+        this.keyOrderOffset = dictionaryOrderOffset + dictionarySize * 4;
+        long expected = (long) columnsOffset + (long) STRING_COLUMNS * rows * 4
+                + dictionarySize * 4L + rows * 4L;
+        if (expected > buffer.capacity()) {
+            throw new IOException("Truncated price chunk: " + path);
+        }
+    }
+
+    /**
+     * Отображение файла прогона в память
+     */
+    static PriceSnapshot open(Path path, ObjectMapper objectMapper) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return new PriceSnapshot(path, buffer, objectMapper);
+    }
+
+    /**
+     * Закрытие снимка: дальнейшие обращения бросают IllegalStateException.
+     * Повторный вызов ничего не делает.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Путь к файлу снимка
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Количество записей
+     */
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * Минимальное время записей (мс), Long.MIN_VALUE если не задано
+     */
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    /**
+     * Максимальное время записей (мс), Long.MIN_VALUE если не задано
+     */
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /**
+     * Масштаб колонки цен: цена = priceAt(row) * 10^-priceScale
+     */
+    public int getPriceScale() {
+        return priceScale;
+    }
+
+    /**
+     * Время записи в миллисекундах (Long.MIN_VALUE - не задано)
+     */
+    public long timestampAt(int row) {
+        ensureOpen();
+        return buffer.getLong(timestampOffset + row * 8);
+    }
+
+    /**
+     * Цена записи в единицах масштаба {@link #getPriceScale()} (Long.MIN_VALUE - не задана)
+     */
+    public long priceAt(int row) {
+        ensureOpen();
+        return buffer.getLong(priceOffset + row * 8);
+    }
+
+    /**
+     * Значение строковой колонки записи
+     */
+    public String stringAt(int column, int row) {
+        return lookup(idAt(column, row));
+    }
+
+    /**
+     * Материализация одной записи
+     */
+    public PriceRecord get(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        }
+
+        long ts = timestampAt(row);
+        long price = priceAt(row);
+
+        return PriceRecord.builder()
+                .id(stringAt(ID, row))
+                .siteId(stringAt(SITE_ID, row))
+                .siteName(stringAt(SITE_NAME, row))
+                .productName(stringAt(PRODUCT_NAME, row))
+                .size(stringAt(SIZE, row))
+                .thickness(stringAt(THICKNESS, row))
+                .steelGrade(stringAt(STEEL_GRADE, row))
+                .length(stringAt(LENGTH, row))
+                .price(price != NULL_LONG ? BigDecimal.valueOf(price, priceScale) : null)
+                .currency(stringAt(CURRENCY, row))
+                .unit(stringAt(UNIT, row))
+                .url(stringAt(URL, row))
+                .timestamp(ts != NULL_LONG ? Instant.ofEpochMilli(ts) : null)
+                .additionalProperties(decodeExtra(stringAt(EXTRA, row)))
+                .build();
+    }
+
+    /**
+     * Поиск первой записи по ключу продукта. Null в ключе означает любое значение.
+     *
+     * @return индекс записи или -1
+     */
+    public int find(String siteId, String size, String thickness, String steelGrade) {
+        int[] keyIds = resolveKey(siteId, size, thickness, steelGrade);
+        if (keyIds == null) {
+            return -1;
+        }
+        int[] found = {-1};
+        forEachMatch(keyIds, row -> {
+            if (found[0] < 0 || row < found[0]) {
+                found[0] = row;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Ключ продукта в id словаря: [SITE_ID, SIZE, THICKNESS, STEEL_GRADE],
+     * Integer.MIN_VALUE - любое значение; null - значения нет в снимке
+     */
+    int[] resolveKey(String siteId, String size, String thickness, String steelGrade) {
+        String[] values = {siteId, size, thickness, steelGrade};
+        int[] ids = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                ids[i] = Integer.MIN_VALUE;
+                continue;
+            }
+            ids[i] = dictionaryId(values[i]);
+            if (ids[i] == NULL_ID) {
+                return null;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Обход записей, совпадающих с ключом из resolveKey. При индексе двоичным поиском
+     * находится диапазон по заданному префиксу ключа (сайт, размер, толщина, марка),
+     * остальные поля проверяются в диапазоне; без префикса - перебор всех записей.
+     */
+    void forEachMatch(int[] keyIds, IntConsumer consumer) {
+        ensureOpen();
+        int prefix = 0;
+        while (prefix < KEY_COLUMNS.length && keyIds[prefix] != Integer.MIN_VALUE) {
+            prefix++;
+        }
+
+        if (prefix == 0) {
+            for (int row = 0; row < rows; row++) {
+                if (matches(row, keyIds)) {
+                    consumer.accept(row);
+                }
+            }
+            return;
+        }
+
+        for (int pos = lowerBound(keyIds, prefix); pos < rows; pos++) {
+            int row = keyOrderAt(pos);
+            if (compareKey(row, keyIds, prefix) != 0) {
+                break;
+            }
+            if (matches(row, keyIds)) {
+                consumer.accept(row);
+            }
+        }
+    }
+
+    /**
+     * Совпадение записи с ключом из resolveKey
+     */
+    boolean matches(int row, int[] keyIds) {
+        for (int column = 0; column < keyIds.length; column++) {
+            if (keyIds[column] != Integer.MIN_VALUE && idAt(column, row) != keyIds[column]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // === Private методы ===
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Price snapshot is closed: " + path);
+        }
+    }
+
+    private int idAt(int column, int row) {
+        return buffer.getInt(columnsOffset + (column * rows + row) * 4);
+    }
+
+    private String lookup(int id) {
+        if (id == NULL_ID) return null;
+        ensureOpen();
+
+        String value = decoded[id];
+        if (value == null) {
+            int offset = dictionaryOffsets[id];
+            int length = buffer.getInt(offset);
+            value = StandardCharsets.UTF_8.decode(buffer.slice(offset + 4, length)).toString();
+            decoded[id] = value;
+        }
+        return value;
+    }
+
+    private int keyOrderAt(int pos) {
+        return buffer.getInt(keyOrderOffset + pos * 4);
+    }
+
+    /**
+     * Первая позиция индекса ключей, не меньшая префикса ключа
+     */
+    private int lowerBound(int[] keyIds, int prefix) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareKey(keyOrderAt(mid), keyIds, prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareKey(int row, int[] keyIds, int prefix) {
+        for (int column = 0; column < prefix; column++) {
+            int cmp = Integer.compare(idAt(column, row), keyIds[column]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Поиск значения в словаре сравнением байтов прямо в отображении:
+     * двоичный поиск по отсортированному порядку словаря
+     */
+    private int dictionaryId(String value) {
+        ensureOpen();
+        ByteBuffer bytes = ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+
+        int low = 0;
+        int high = dictionaryOffsets.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = buffer.getInt(dictionaryOrderOffset + mid * 4);
+            int cmp = entry(id).compareTo(bytes);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return id;
+            }
+        }
+        return NULL_ID;
+    }
+
+    private ByteBuffer entry(int id) {
+        int offset = dictionaryOffsets[id];
+        return buffer.slice(offset + 4, buffer.getInt(offset));
+    }
+
+    private Map<String, String> decodeExtra(String json) {
+        if (json == null) return null;
+        try {
+            return objectMapper.readValue(json, EXTRA_TYPE);
+        } catch (IOException e) {
+            log.debug("Failed to decode additional properties: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Repository;
@@ -15,6 +16,7 @@ import org.springframework.stereotype.Repository;
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -28,6 +30,7 @@ public class SiteConfigRepository {
 
     private final AppProperties appProperties;
     private final ResourceLoader resourceLoader;
+    private final ApplicationEventPublisher eventPublisher;
     private final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
     private final Map<String, Site> sitesCache = new ConcurrentHashMap<>();
 
@@ -60,6 +63,21 @@ public class SiteConfigRepository {
         return Optional.ofNullable(sitesCache.get(siteId));
     }
 
+    /**
+     * Поиск сайта по хосту стартового URL (без учёта регистра и префикса www.)
+     */
+    public Optional<Site> findByHost(String host) {
+        if (host == null || host.isBlank()) {
+            return Optional.empty();
+        }
+        String normalized = normalizeHost(host);
+
+        return sitesCache.values().stream()
+                .filter(site -> site.getStartUrl() != null)
+                .filter(site -> normalized.equals(normalizeHost(hostOf(site.getStartUrl()))))
+                .findFirst();
+    }
+
     /**
      * Сохранение сайта
      */
@@ -69,6 +87,7 @@ public class SiteConfigRepository {
         }
         sitesCache.put(site.getId(), site);
         saveSites();
+        eventPublisher.publishEvent(new SitesChangedEvent(site.getId()));
         return site;
     }
 
@@ -78,6 +97,7 @@ public class SiteConfigRepository {
     public void deleteById(String siteId) {
         sitesCache.remove(siteId);
         saveSites();
+        eventPublisher.publishEvent(new SitesChangedEvent(siteId));
     }
 
     /**
@@ -86,6 +106,7 @@ public class SiteConfigRepository {
     public void reload() {
         sitesCache.clear();
         loadSites();
+        eventPublisher.publishEvent(new SitesChangedEvent(null));
         log.info("Site configurations reloaded");
     }
 
@@ -166,6 +187,20 @@ public class SiteConfigRepository {
         log.debug("Sites saved to cache");
     }
 
+    private String hostOf(String url) {
+        try {
+            return URI.create(url).getHost();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private String normalizeHost(String host) {
+        if (host == null) return "";
+        String lower = host.toLowerCase();
+        return lower.startsWith("www.") ? lower.substring(4) : lower;
+    }
+
     private Resource resolveResource(String location) {
         if (location.startsWith("classpath:") ||
                 location.startsWith("file:") ||
@@ -181,6 +216,14 @@ public class SiteConfigRepository {
         return resourceLoader.getResource("classpath:" + location);
     }
 
+    /**
+     * Событие изменения конфигурации сайтов
+     *
+     * @param siteId изменённый сайт; null - перезагружены все
+     */
+    public record SitesChangedEvent(String siteId) {
+    }
+
     /**
      * Внутренний класс для десериализации YAML
      */
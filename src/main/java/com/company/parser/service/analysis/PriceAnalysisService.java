@@ -1,4 +1,51 @@
 package com.company.parser.service.analysis;
 
+import com.company.parser.mapper.PriceMapper;
+import com.company.parser.model.domain.PriceRecord;
+import com.company.parser.model.dto.PriceDTO;
+import com.company.parser.repository.PriceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
 public class PriceAnalysisService {
+
+    private final PriceRepository priceRepository;
+    private final PriceMapper priceMapper;
+
+    /**
+     * Динамика цены продукта по всем прогонам за период (даты включительно).
+     * Null в ключе означает любое значение.
+     */
+    public List<PriceDTO> getPriceTrend(String siteId, String size, String thickness, String steelGrade,
+                                        LocalDate from, LocalDate to) {
+        List<PriceRecord> records = priceRepository.scanProduct(siteId, size, thickness, steelGrade,
+                startOf(from), endOf(to));
+        log.debug("Price trend {}|{}|{}|{} from {} to {}: {} records",
+                siteId, size, thickness, steelGrade, from, to, records.size());
+        return priceMapper.toDtoList(records);
+    }
+
+    /**
+     * Записи всех прогонов за период (даты включительно)
+     */
+    public List<PriceDTO> getPricesForPeriod(LocalDate from, LocalDate to) {
+        return priceMapper.toDtoList(priceRepository.scan(startOf(from), endOf(to)));
+    }
+
+    private Instant startOf(LocalDate date) {
+        return date != null ? date.atStartOfDay(ZoneId.systemDefault()).toInstant() : null;
+    }
+
+    private Instant endOf(LocalDate date) {
+        return date != null ? date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().minusMillis(1) : null;
+    }
 }
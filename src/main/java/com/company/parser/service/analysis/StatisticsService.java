@@ -1,18 +1,22 @@
 package com.company.parser.service.analysis;
 
 import com.company.parser.model.domain.PriceRecord;
+import com.company.parser.model.domain.ProductKey;
 import com.company.parser.model.domain.Site;
 import com.company.parser.model.dto.SiteResultDTO;
 import com.company.parser.model.dto.StatisticsDTO;
+import com.company.parser.repository.PriceRepository;
+import com.company.parser.util.PriceSummary;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.DoubleSummaryStatistics;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -20,52 +24,53 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class StatisticsService {
 
+    private final PriceRepository priceRepository;
+
+    /**
+     * Статистика текущих цен сайта (по индексу сайта)
+     */
+    public StatisticsDTO getSiteStatistics(String siteId) {
+        return calculateStatistics(priceRepository.findBySiteId(siteId), (Site) null);
+    }
+
+    /**
+     * Статистика текущих цен по размеру (по индексу нормализованного размера)
+     */
+    public StatisticsDTO getSizeStatistics(String size) {
+        return calculateStatistics(priceRepository.findBySize(size), (Site) null);
+    }
+
+    /**
+     * Статистика текущих цен по толщине (по индексу нормализованной толщины)
+     */
+    public StatisticsDTO getThicknessStatistics(String thickness) {
+        return calculateStatistics(priceRepository.findByThickness(thickness), (Site) null);
+    }
+
+    /**
+     * Статистика цен, полученных за день (по индексу времени)
+     */
+    public StatisticsDTO getDailyStatistics(LocalDate date) {
+        return calculateStatistics(priceRepository.findByDate(date), (Site) null);
+    }
+
     /**
      * Расчет статистики для списка записей
      */
     public StatisticsDTO calculateStatistics(List<PriceRecord> records, Site site) {
-        if (records == null || records.isEmpty()) {
-            return StatisticsDTO.builder()
-                    .totalRecords(0)
-                    .build();
+        Accumulator accumulator = new Accumulator();
+        if (records != null) {
+            accumulator.accept(records);
         }
+        return accumulator.toStatistics();
+    }
 
-        // Группировка по сайтам
-        Map<String, Integer> recordsBySite = records.stream()
-                .collect(Collectors.groupingBy(
-                        PriceRecord::getSiteId,
-                        Collectors.collectingAndThen(Collectors.counting(), Long::intValue)
-                ));
-
-        // Статистика цен
-        DoubleSummaryStatistics priceStats = records.stream()
-                .map(PriceRecord::getPrice)
-                .filter(price -> price != null)
-                .mapToDouble(BigDecimal::doubleValue)
-                .summaryStatistics();
-
-        // Уникальные продукты
-        int uniqueProducts = (int) records.stream()
-                .map(PriceRecord::getUniqueKey)
-                .distinct()
-                .count();
-
-        // Уникальные размеры
-        int uniqueSizes = (int) records.stream()
-                .map(PriceRecord::getSize)
-                .filter(size -> size != null && !size.isBlank())
-                .distinct()
-                .count();
-
-        return StatisticsDTO.builder()
-                .totalRecords(records.size())
-                .recordsBySite(recordsBySite)
-                .uniqueProducts(uniqueProducts)
-                .uniqueSizes(uniqueSizes)
-                .averagePrice(BigDecimal.valueOf(priceStats.getAverage()).setScale(2, RoundingMode.HALF_UP))
-                .minPrice(BigDecimal.valueOf(priceStats.getMin()))
-                .maxPrice(BigDecimal.valueOf(priceStats.getMax()))
-                .build();
+    /**
+     * Накопитель статистики для постраничной обработки: записи учитываются по мере
+     * поступления и не хранятся, в памяти только ключи продуктов и размеры
+     */
+    public Accumulator newAccumulator() {
+        return new Accumulator();
     }
 
     /**
@@ -108,14 +113,14 @@ public class StatisticsService {
         // Создаем карты для сравнения
         var currentMap = current.stream()
                 .collect(Collectors.toMap(
-                        PriceRecord::getUniqueKey,
+                        PriceRecord::getProductKey,
                         r -> r,
                         (r1, r2) -> r1
                 ));
 
         var previousMap = previous.stream()
                 .collect(Collectors.toMap(
-                        PriceRecord::getUniqueKey,
+                        PriceRecord::getProductKey,
                         r -> r,
                         (r1, r2) -> r1
                 ));
@@ -131,14 +136,14 @@ public class StatisticsService {
             if (prev == null) {
                 newProducts++;
             } else {
-                int comparison = entry.getValue().getPrice().compareTo(prev.getPrice());
+                int comparison = entry.getValue().comparePrice(prev);
                 if (comparison > 0) priceIncreases++;
                 else if (comparison < 0) priceDecreases++;
             }
         }
 
         // Считаем удаленные продукты
-        for (String key : previousMap.keySet()) {
+        for (var key : previousMap.keySet()) {
             if (!currentMap.containsKey(key)) {
                 removedProducts++;
             }
@@ -151,4 +156,55 @@ public class StatisticsService {
 
         return stats;
     }
+
+    /**
+     * Статистика записей, накапливаемая постранично. Не потокобезопасна.
+     */
+    public static final class Accumulator {
+
+        private final Map<String, Integer> recordsBySite = new HashMap<>();
+        private final Set<ProductKey> products = new HashSet<>();
+        private final Set<String> sizes = new HashSet<>();
+        private final PriceSummary prices = new PriceSummary();
+        private int totalRecords;
+
+        private Accumulator() {
+        }
+
+        /**
+         * Учет записей очередной страницы
+         */
+        public void accept(List<PriceRecord> records) {
+            for (PriceRecord record : records) {
+                totalRecords++;
+                recordsBySite.merge(record.getSiteId(), 1, Integer::sum);
+                products.add(record.getProductKey());
+                if (record.getSize() != null && !record.getSize().isBlank()) {
+                    sizes.add(record.getSize());
+                }
+                prices.accept(record);
+            }
+        }
+
+        /**
+         * Статистика по всем учтенным записям
+         */
+        public StatisticsDTO toStatistics() {
+            if (totalRecords == 0) {
+                return StatisticsDTO.builder()
+                        .totalRecords(0)
+                        .build();
+            }
+
+            return StatisticsDTO.builder()
+                    .totalRecords(totalRecords)
+                    .recordsBySite(new HashMap<>(recordsBySite))
+                    .uniqueProducts(products.size())
+                    .uniqueSizes(sizes.size())
+                    .averagePrice(prices.getAverage())
+                    .minPrice(prices.getMin())
+                    .maxPrice(prices.getMax())
+                    .build();
+        }
+    }
 }
@@ -97,19 +97,28 @@ public class ParserService {
         try {
             log.info("Starting parsing for site: {}", siteId);
 
-            List<PriceRecord> records = scraperService.scrapeSite(siteId);
-
-            if (!records.isEmpty()) {
-                persistenceService.saveData(records);
+            // Страницы сохраняются по мере загрузки, статистика накапливается постранично
+            PersistenceService.SiteRun run = persistenceService.openSiteRun(siteId);
+            StatisticsService.Accumulator statisticsAccumulator = statisticsService.newAccumulator();
+            int recordsCount;
+            try {
+                scraperService.scrapeSite(siteId, page -> {
+                    run.append(page);
+                    statisticsAccumulator.accept(page);
+                    return true;
+                });
+            } finally {
+                // Добавленные страницы уже в кэше и индексах: прогон фиксируется и при ошибке
+                recordsCount = run.finish();
             }
 
             Duration duration = Duration.between(startTime, Instant.now());
-            StatisticsDTO statistics = statisticsService.calculateStatistics(records, null);
+            StatisticsDTO statistics = statisticsAccumulator.toStatistics();
 
             return ParsingResultDTO.builder()
                     .success(true)
-                    .recordsCount(records.size())
-                    .successfulRecords(records.size())
+                    .recordsCount(recordsCount)
+                    .successfulRecords(recordsCount)
                     .duration(duration)
                     .statistics(statistics)
                     .startTime(startTime)
@@ -1,13 +1,18 @@
 package com.company.parser.service.persistence;
 
+import com.company.parser.model.domain.PriceHistory;
 import com.company.parser.model.domain.PriceRecord;
+import com.company.parser.model.domain.ProductKey;
 import com.company.parser.repository.HistoryRepository;
 import com.company.parser.repository.PriceRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -18,7 +23,7 @@ public class PersistenceService {
     private final HistoryRepository historyRepository;
 
     /**
-     * Сохранение данных
+     * Сохранение данных полного прогона (история пишется одной пачкой)
      */
     public int saveData(List<PriceRecord> records) {
         if (records == null || records.isEmpty()) {
@@ -44,6 +49,16 @@ public class PersistenceService {
         }
     }
 
+    /**
+     * Открытие постраничного сохранения данных сайта: записи и история изменений
+     * сохраняются по мере поступления страниц. Предыдущие цены сайта берутся
+     * из кэша по индексу сайта, а не из последнего прогона, который мог быть
+     * прогоном другого сайта.
+     */
+    public SiteRun openSiteRun(String siteId) {
+        return new SiteRun(previousByKey(priceRepository.findBySiteId(siteId)), priceRepository.openRun());
+    }
+
     /**
      * Загрузка последних данных
      */
@@ -59,22 +74,79 @@ public class PersistenceService {
             return;
         }
 
-        // Создаем карту предыдущих записей для быстрого поиска
-        var previousMap = previous.stream()
-                .collect(java.util.stream.Collectors.toMap(
-                        PriceRecord::getUniqueKey,
+        List<PriceHistory> changes = collectChanges(current, previousByKey(previous));
+
+        // Сохраняем одной пачкой
+        historyRepository.saveAll(changes);
+        log.debug("Saved {} price changes to history", changes.size());
+    }
+
+    /**
+     * Карта предыдущих записей для быстрого поиска
+     */
+    private Map<ProductKey, PriceRecord> previousByKey(List<PriceRecord> previous) {
+        return previous.stream()
+                .collect(Collectors.toMap(
+                        PriceRecord::getProductKey,
                         r -> r,
                         (r1, r2) -> r1
                 ));
+    }
+
+    /**
+     * Сбор изменений цен относительно предыдущего прогона
+     */
+    private List<PriceHistory> collectChanges(List<PriceRecord> current, Map<ProductKey, PriceRecord> previousMap) {
+        List<PriceHistory> changes = new ArrayList<>();
+        if (previousMap.isEmpty()) {
+            return changes;
+        }
 
-        // Сравниваем и сохраняем изменения
         for (PriceRecord currentRecord : current) {
-            PriceRecord previousRecord = previousMap.get(currentRecord.getUniqueKey());
+            PriceRecord previousRecord = previousMap.get(currentRecord.getProductKey());
 
-            if (previousRecord != null &&
-                    !currentRecord.getPrice().equals(previousRecord.getPrice())) {
-                historyRepository.addRecord(currentRecord, previousRecord);
+            // Сравнение по значению: цены из хранилища имеют масштаб 2, только что спарсенные - произвольный
+            if (previousRecord != null && currentRecord.comparePrice(previousRecord) != 0) {
+                changes.add(historyRepository.createHistory(currentRecord, previousRecord));
             }
         }
+        return changes;
+    }
+
+    /**
+     * Постраничное сохранение одного прогона сайта. Предыдущие данные читаются
+     * один раз при открытии, каждая страница сразу попадает в кэш, прогон и буфер истории.
+     */
+    public class SiteRun {
+
+        private final Map<ProductKey, PriceRecord> previousMap;
+        private final PriceRepository.RunWriter writer;
+        private int changesCount;
+
+        private SiteRun(Map<ProductKey, PriceRecord> previousMap, PriceRepository.RunWriter writer) {
+            this.previousMap = previousMap;
+            this.writer = writer;
+        }
+
+        /**
+         * Сохранение записей страницы
+         */
+        public void append(List<PriceRecord> page) {
+            writer.append(page);
+
+            List<PriceHistory> changes = collectChanges(page, previousMap);
+            historyRepository.enqueue(changes);
+            changesCount += changes.size();
+        }
+
+        /**
+         * Завершение прогона: запись файла прогона на диск
+         * @return количество сохранённых записей
+         */
+        public int finish() {
+            writer.commit();
+            log.info("Saved {} records ({} price changes)", writer.size(), changesCount);
+            return writer.size();
+        }
     }
 }
@@ -2,6 +2,7 @@ package com.company.parser.service.scraper;
 
 import com.company.parser.model.domain.PriceRecord;
 import com.company.parser.model.domain.Site;
+import com.company.parser.parser.base.PageSink;
 import com.company.parser.parser.base.SiteParser;
 import com.company.parser.repository.SiteConfigRepository;
 import com.company.parser.service.parser.SiteParserFactory;
@@ -15,6 +16,8 @@ import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -80,4 +83,48 @@ public class ScraperService {
             return Collections.emptyList();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Постраничный скрапинг сайта: записи каждой страницы передаются получателю
+     * по мере загрузки. При ошибке уже переданные страницы остаются у получателя.
+     *
+     * @return количество переданных записей
+     */
+    public int scrapeSite(String siteId, PageSink sink) {
+        log.info("Starting streaming scraping for site: {}", siteId);
+
+        Site site = siteConfigRepository.findById(siteId)
+                .orElseThrow(() -> new IllegalArgumentException("Site not found: " + siteId));
+
+        if (!site.isActive()) {
+            log.warn("Site {} is not active", siteId);
+            return 0;
+        }
+
+        AtomicInteger emitted = new AtomicInteger();
+        AtomicReference<RuntimeException> sinkFailure = new AtomicReference<>();
+        try {
+            SiteParser parser = parserFactory.getParserForSite(siteId);
+            parser.parse(site, page -> {
+                try {
+                    boolean proceed = sink.accept(page);
+                    emitted.addAndGet(page.size());
+                    return proceed;
+                } catch (RuntimeException e) {
+                    sinkFailure.set(e);
+                    throw e;
+                }
+            });
+
+            log.info("Scraped {} records from site {}", emitted.get(), siteId);
+
+        } catch (Exception e) {
+            // Ошибки получателя (сохранение) пробрасываются, ошибки парсинга - как в scrapeSite
+            if (sinkFailure.get() != null) {
+                throw sinkFailure.get();
+            }
+            log.error("Failed to scrape site {} after {} records: {}", siteId, emitted.get(), e.getMessage(), e);
+        }
+        return emitted.get();
+    }
+}
@@ -0,0 +1,84 @@
+package com.company.parser.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Арифметика цен в копейках (long с фиксированным масштабом 2)
+ *
+ * Внутренние сравнения, изменения и статистика цен считаются в long без создания
+ * BigDecimal на каждую операцию. Перевод из BigDecimal точный: цена с долями копейки
+ * или вне {@link #MAX_KOPECKS} не округляется, а получает {@link #NONE}, и вызывающий
+ * код считает такую цену в BigDecimal. В BigDecimal результат переводится только
+ * на границе API/экспорта.
+ */
+public final class Kopecks {
+
+    /**
+     * Масштаб цены (знаков после запятой)
+     */
+    public static final int SCALE = 2;
+
+    /**
+     * Цены нет или она не представима в копейках точно
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * Предел модуля цены в копейках (10 млрд руб.): разность цен, умноженная на 10^6
+     * при расчёте процента, гарантированно помещается в long
+     */
+    public static final long MAX_KOPECKS = 1_000_000_000_000L;
+
+    private static final BigDecimal MAX_PRICE = BigDecimal.valueOf(MAX_KOPECKS, SCALE);
+    private static final long PERCENT_BASIS = 10_000;
+
+    private Kopecks() {
+    }
+
+    /**
+     * Точный перевод цены в копейки; {@link #NONE}, если цены нет, у неё есть доли копейки
+     * или модуль больше {@link #MAX_KOPECKS}
+     */
+    public static long of(BigDecimal price) {
+        if (price == null || price.abs().compareTo(MAX_PRICE) > 0) return NONE;
+        if (price.scale() > SCALE && price.stripTrailingZeros().scale() > SCALE) return NONE;
+        return price.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValue();
+    }
+
+    /**
+     * Перевод копеек в цену (масштаб 2)
+     */
+    public static BigDecimal toBigDecimal(long kopecks) {
+        return kopecks == NONE ? null : BigDecimal.valueOf(kopecks, SCALE);
+    }
+
+    /**
+     * Изменение цены в базисных пунктах (1/100 процента), округление HALF_UP.
+     * Совпадает с (new - old) / old при делении до 4 знаков.
+     */
+    public static long changeBasisPoints(long oldPrice, long newPrice) {
+        return divideHalfUp((newPrice - oldPrice) * PERCENT_BASIS, oldPrice);
+    }
+
+    /**
+     * Процент изменения цены в масштабе 4, как у расчёта
+     * (new - old).divide(old, 4, HALF_UP).multiply(100); null, если процент не определён
+     */
+    public static BigDecimal changePercent(long oldPrice, long newPrice) {
+        if (oldPrice == NONE || newPrice == NONE || oldPrice == 0) return null;
+        return BigDecimal.valueOf(changeBasisPoints(oldPrice, newPrice) * 100, 4);
+    }
+
+    /**
+     * Деление с округлением HALF_UP (половина - от нуля)
+     */
+    public static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = Math.abs(dividend % divisor);
+        if (remainder != 0 && remainder >= Math.abs(divisor) - remainder) {
+            quotient += (dividend ^ divisor) < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+}
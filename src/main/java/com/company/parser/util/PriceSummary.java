@@ -0,0 +1,90 @@
+package com.company.parser.util;
+
+import com.company.parser.model.domain.PriceRecord;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Накопитель количества, суммы, минимума и максимума цен
+ *
+ * Считает в копейках ({@link PriceRecord#getPriceKopecks()}); если встретилась цена,
+ * не представимая в копейках, или сумма вышла за long, переходит на BigDecimal.
+ * Результат совпадает с расчётом в BigDecimal. Не потокобезопасен.
+ */
+public final class PriceSummary {
+
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    // Точные значения после выхода из копеек; null, пока расчёт идёт в long
+    private BigDecimal exactSum;
+    private BigDecimal exactMin;
+    private BigDecimal exactMax;
+
+    /**
+     * Учёт цены записи (записи без цены пропускаются)
+     */
+    public void accept(PriceRecord record) {
+        if (record == null || record.getPrice() == null) return;
+
+        long kopecks = record.getPriceKopecks();
+        if (exactSum == null && kopecks != Kopecks.NONE) {
+            try {
+                sum = Math.addExact(sum, kopecks);
+                min = Math.min(min, kopecks);
+                max = Math.max(max, kopecks);
+                count++;
+                return;
+            } catch (ArithmeticException e) {
+                // сумма не помещается в long - дальше считаем в BigDecimal
+            }
+        }
+        acceptExact(record.getPrice());
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Средняя цена с округлением HALF_UP до копейки; ноль для пустой статистики
+     */
+    public BigDecimal getAverage() {
+        if (count == 0) return BigDecimal.ZERO.setScale(Kopecks.SCALE);
+        if (exactSum != null) {
+            return exactSum.divide(BigDecimal.valueOf(count), Kopecks.SCALE, RoundingMode.HALF_UP);
+        }
+        return Kopecks.toBigDecimal(Kopecks.divideHalfUp(sum, count));
+    }
+
+    /**
+     * Минимальная цена; null для пустой статистики
+     */
+    public BigDecimal getMin() {
+        if (count == 0) return null;
+        return exactMin != null ? exactMin : Kopecks.toBigDecimal(min);
+    }
+
+    /**
+     * Максимальная цена; null для пустой статистики
+     */
+    public BigDecimal getMax() {
+        if (count == 0) return null;
+        return exactMax != null ? exactMax : Kopecks.toBigDecimal(max);
+    }
+
+    private void acceptExact(BigDecimal price) {
+        if (exactSum == null) {
+            exactSum = BigDecimal.valueOf(sum, Kopecks.SCALE);
+            exactMin = count > 0 ? Kopecks.toBigDecimal(min) : price;
+            exactMax = count > 0 ? Kopecks.toBigDecimal(max) : price;
+        }
+        exactSum = exactSum.add(price);
+        exactMin = exactMin.min(price);
+        exactMax = exactMax.max(price);
+        count++;
+    }
+}
@@ -37,6 +37,13 @@ public class PriceUtils {
                 .multiply(BigDecimal.valueOf(100));
     }
 
+    /**
+     * Расчет процента изменения по ценам в копейках (обе цены не {@link Kopecks#NONE})
+     */
+    public BigDecimal calculateChangePercent(long oldKopecks, long newKopecks) {
+        return oldKopecks == 0 ? BigDecimal.ZERO : Kopecks.changePercent(oldKopecks, newKopecks);
+    }
+
     /**
      * Расчет абсолютного изменения
      */
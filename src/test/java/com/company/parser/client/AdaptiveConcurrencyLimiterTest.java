@@ -0,0 +1,159 @@
+package com.company.parser.client;
+
+import com.company.parser.config.AppProperties;
+import com.company.parser.model.domain.ParsingConfig;
+import com.company.parser.model.domain.Site;
+import com.company.parser.repository.SiteConfigRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final String DOMAIN = "shop.example";
+    private static final int WINDOW = 32;
+
+    private AppProperties appProperties;
+    private SiteConfigRepository siteConfigRepository;
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties.Http http = mock(AppProperties.Http.class);
+        when(http.maxConcurrentRequests()).thenReturn(8);
+        when(http.maxStreamsPerConnection()).thenReturn(100);
+        appProperties = mock(AppProperties.class);
+        when(appProperties.http()).thenReturn(http);
+        siteConfigRepository = mock(SiteConfigRepository.class);
+
+        limiter = new AdaptiveConcurrencyLimiter(appProperties, siteConfigRepository);
+    }
+
+    @Test
+    void startsAtHalfOfMaximum() throws Exception {
+        limiter.acquire(DOMAIN).release();
+
+        assertThat(limiter.getLimit(DOMAIN)).isEqualTo(4);
+        assertThat(limiter.getLimit("unknown.example")).isEqualTo(8);
+    }
+
+    @Test
+    void overloadHalvesLimitDownToOne() throws Exception {
+        limiter.acquire(DOMAIN).onOverload(null);
+        assertThat(limiter.getLimit(DOMAIN)).isEqualTo(2);
+
+        limiter.acquire(DOMAIN).onOverload(null);
+        limiter.acquire(DOMAIN).onOverload(null);
+        limiter.acquire(DOMAIN).onOverload(null);
+        assertThat(limiter.getLimit(DOMAIN)).isEqualTo(1);
+    }
+
+    @Test
+    void saturatedWindowRaisesLimitByOne() throws Exception {
+        // Первое окно задаёт базовый p95, поэтому оно всегда "здоровое"
+        runWindow(4);
+
+        assertThat(limiter.getLimit(DOMAIN)).isEqualTo(5);
+    }
+
+    @Test
+    void underusedWindowKeepsLimit() throws Exception {
+        runWindow(1);
+
+        assertThat(limiter.getLimit(DOMAIN)).isEqualTo(4);
+    }
+
+    @Test
+    void waitersGetPermitsAsSlotsAreReleased() throws Exception {
+        List<AdaptiveConcurrencyLimiter.Permit> held = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            held.add(limiter.acquire(DOMAIN));
+        }
+
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> waiter = limiter.acquireAsync(DOMAIN);
+        assertThat(waiter).isNotDone();
+
+        held.get(0).release();
+        assertThat(waiter.get(1, TimeUnit.SECONDS)).isNotNull();
+
+        // Повторный результат по тому же разрешению не освобождает второе место
+        held.get(0).release();
+        assertThat(limiter.acquireAsync(DOMAIN)).isNotDone();
+    }
+
+    @Test
+    void retryAfterPausesNewRequests() throws Exception {
+        limiter.acquire(DOMAIN).onOverload(Duration.ofMillis(300));
+
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> waiter = limiter.acquireAsync(DOMAIN);
+        // Состояние снимается сразу: первый вызов assertThat может идти дольше паузы
+        boolean doneImmediately = waiter.isDone();
+
+        assertThat(doneImmediately).isFalse();
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void siteChangeCapsLimitAtNewMaxConnections() throws Exception {
+        limiter.acquire(DOMAIN).release();
+        assertThat(limiter.getLimit(DOMAIN)).isEqualTo(4);
+
+        Site site = Site.builder()
+                .id("shop")
+                .config(ParsingConfig.builder().maxConnections(2).build())
+                .build();
+        when(siteConfigRepository.findByHost(DOMAIN)).thenReturn(Optional.of(site));
+        limiter.onSitesChanged(new SiteConfigRepository.SitesChangedEvent("shop"));
+
+        assertThat(limiter.getLimit(DOMAIN)).isEqualTo(2);
+    }
+
+    @Test
+    void maxStreamsPerConnectionCapsLimit() throws Exception {
+        Site site = Site.builder()
+                .id("shop")
+                .config(ParsingConfig.builder().maxConnections(40).build())
+                .build();
+        when(siteConfigRepository.findByHost(DOMAIN)).thenReturn(Optional.of(site));
+        when(appProperties.http().maxStreamsPerConnection()).thenReturn(6);
+
+        limiter.acquire(DOMAIN).release();
+
+        // Старт с половины верхней границы: min(40, 6) / 2
+        assertThat(limiter.getLimit(DOMAIN)).isEqualTo(3);
+    }
+
+    @Test
+    void parsesRetryAfterSecondsAndClampsToFiveMinutes() {
+        assertThat(AdaptiveConcurrencyLimiter.parseRetryAfter("7")).isEqualTo(Duration.ofSeconds(7));
+        assertThat(AdaptiveConcurrencyLimiter.parseRetryAfter("86400")).isEqualTo(Duration.ofMinutes(5));
+        assertThat(AdaptiveConcurrencyLimiter.parseRetryAfter("-3")).isEqualTo(Duration.ZERO);
+        assertThat(AdaptiveConcurrencyLimiter.parseRetryAfter("soon")).isNull();
+        assertThat(AdaptiveConcurrencyLimiter.parseRetryAfter(null)).isNull();
+    }
+
+    /**
+     * Окно из WINDOW успешных ответов, по concurrency одновременных запросов
+     */
+    private void runWindow(int concurrency) throws Exception {
+        int completed = 0;
+        while (completed < WINDOW) {
+            List<AdaptiveConcurrencyLimiter.Permit> batch = new ArrayList<>();
+            for (int i = 0; i < concurrency && completed + batch.size() < WINDOW; i++) {
+                batch.add(limiter.acquire(DOMAIN));
+            }
+            batch.forEach(AdaptiveConcurrencyLimiter.Permit::onSuccess);
+            completed += batch.size();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.company.parser.client;
+
+import com.company.parser.model.domain.ParsingConfig;
+import com.company.parser.model.domain.Site;
+import com.company.parser.repository.SiteConfigRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CircuitBreakerTest {
+
+    private static final String DOMAIN = "shop.example";
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private SiteConfigRepository siteConfigRepository;
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        siteConfigRepository = mock(SiteConfigRepository.class);
+        circuitBreaker = new CircuitBreaker(siteConfigRepository);
+    }
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        fail(9);
+
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.allowRequest(DOMAIN)).isTrue();
+    }
+
+    @Test
+    void opensAtFailureRateAndRejectsRequests() {
+        succeed(6);
+        fail(4);
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        fail(2);
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.allowRequest(DOMAIN)).isFalse();
+    }
+
+    @Test
+    void oldCallsLeaveSlidingWindow() {
+        fail(4);
+        succeed(50);
+
+        // Ранние ошибки вытеснены из окна в 50 вызовов: нужно 25 новых
+        fail(24);
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.CLOSED);
+        fail(1);
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void opensOnSlowCallRate() {
+        configure(ParsingConfig.builder().circuitSlowCallRatePercent(50).circuitSlowCallMs(100).build());
+
+        for (int i = 0; i < 9; i++) {
+            circuitBreaker.recordSuccess(DOMAIN, SLOW);
+        }
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        circuitBreaker.recordSuccess(DOMAIN, SLOW);
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void slowCallsAreIgnoredByDefault() {
+        for (int i = 0; i < 20; i++) {
+            circuitBreaker.recordSuccess(DOMAIN, TimeUnit.SECONDS.toNanos(30));
+        }
+
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void halfOpenProbeFailureReopens() {
+        configure(ParsingConfig.builder().circuitOpenSeconds(0).build());
+        fail(10);
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.OPEN);
+
+        assertThat(circuitBreaker.allowRequest(DOMAIN)).isTrue();
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        circuitBreaker.recordFailure(DOMAIN);
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void halfOpenGrantsLimitedProbesAndClosesAfterSuccesses() throws Exception {
+        configure(ParsingConfig.builder().circuitOpenSeconds(1).build());
+        fail(10);
+        assertThat(circuitBreaker.allowRequest(DOMAIN)).isFalse();
+
+        Thread.sleep(1100);
+
+        // Одновременные вызовы получают ровно три пробы
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Callable<Boolean> probe = () -> {
+                    start.await();
+                    return circuitBreaker.allowRequest(DOMAIN);
+                };
+                results.add(executor.submit(probe));
+            }
+            start.countDown();
+
+            int granted = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(5, TimeUnit.SECONDS)) {
+                    granted++;
+                }
+            }
+            assertThat(granted).isEqualTo(3);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        succeed(2);
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        succeed(1);
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        // Окно очищено при восстановлении: одной ошибки недостаточно
+        fail(1);
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void domainsAreIndependent() {
+        fail(10);
+
+        assertThat(circuitBreaker.getState(DOMAIN)).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.allowRequest("other.example")).isTrue();
+    }
+
+    private void configure(ParsingConfig config) {
+        Site site = Site.builder().id("shop").config(config).build();
+        when(siteConfigRepository.findByHost(DOMAIN)).thenReturn(Optional.of(site));
+    }
+
+    private void succeed(int times) {
+        for (int i = 0; i < times; i++) {
+            circuitBreaker.recordSuccess(DOMAIN);
+        }
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            circuitBreaker.recordFailure(DOMAIN);
+        }
+    }
+}
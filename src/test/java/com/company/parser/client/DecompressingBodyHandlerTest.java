@@ -0,0 +1,147 @@
+package com.company.parser.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DecompressingBodyHandlerTest {
+
+    private static final String BODY = "<html><body>" + "Труба профильная 40x20x2 ".repeat(200) + "</body></html>";
+    private static final byte[] BYTES = BODY.getBytes(StandardCharsets.UTF_8);
+
+    private final DecompressingBodyHandler handler = new DecompressingBodyHandler();
+
+    @Test
+    void passesIdentityBodyThrough() throws Exception {
+        assertThat(read(BYTES, null)).isEqualTo(BODY);
+        assertThat(read(BYTES, "identity")).isEqualTo(BODY);
+    }
+
+    @Test
+    void decodesGzip() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(BYTES);
+        }
+
+        assertThat(read(out.toByteArray(), "gzip")).isEqualTo(BODY);
+        assertThat(read(out.toByteArray(), "X-GZIP")).isEqualTo(BODY);
+    }
+
+    @Test
+    void decodesZlibWrappedDeflate() throws Exception {
+        assertThat(read(deflate(false), "deflate")).isEqualTo(BODY);
+    }
+
+    @Test
+    void decodesRawDeflate() throws Exception {
+        assertThat(read(deflate(true), "deflate")).isEqualTo(BODY);
+    }
+
+    @Test
+    void acceptsEmptyEncodedBody() throws Exception {
+        assertThat(read(new byte[0], "deflate")).isEmpty();
+        assertThat(read(new byte[0], "gzip")).isEmpty();
+    }
+
+    @Test
+    void rejectsUnsupportedEncoding() {
+        assertThatThrownBy(() -> read(BYTES, "br"))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasMessageContaining("br");
+    }
+
+    @Test
+    void readsCharsetFromContentType() {
+        assertThat(DecompressingBodyHandler.charsetOf(headers("Content-Type", "text/html; charset=\"windows-1251\"")))
+                .isEqualTo(Charset.forName("windows-1251"));
+        assertThat(DecompressingBodyHandler.charsetOf(headers("Content-Type", "text/html"))).isNull();
+        assertThat(DecompressingBodyHandler.charsetOf(headers("Content-Type", "text/html; charset=nope"))).isNull();
+    }
+
+    private static byte[] deflate(boolean raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        try (DeflaterOutputStream stream = new DeflaterOutputStream(out, deflater)) {
+            stream.write(BYTES);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Прогон тела через подписчика обработчика, как это делает HttpClient
+     */
+    private String read(byte[] body, String encoding) throws Exception {
+        HttpHeaders headers = encoding != null ? headers("Content-Encoding", encoding) : headers();
+        HttpResponse.BodySubscriber<Supplier<InputStream>> subscriber = handler.apply(responseInfo(headers));
+
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        // Тело приходит несколькими буферами
+        int half = body.length / 2;
+        subscriber.onNext(List.of(ByteBuffer.wrap(body, 0, half), ByteBuffer.wrap(body, half, body.length - half)));
+        subscriber.onComplete();
+
+        Supplier<InputStream> supplier = subscriber.getBody().toCompletableFuture().get(1, TimeUnit.SECONDS);
+        try (InputStream in = supplier.get()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static HttpHeaders headers(String... nameValues) {
+        Map<String, List<String>> map = new HashMap<>();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            map.put(nameValues[i], List.of(nameValues[i + 1]));
+        }
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+
+    private static HttpResponse.ResponseInfo responseInfo(HttpHeaders headers) {
+        return new HttpResponse.ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return 200;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return headers;
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        };
+    }
+}
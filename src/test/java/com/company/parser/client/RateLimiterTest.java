@@ -0,0 +1,113 @@
+package com.company.parser.client;
+
+import com.company.parser.config.AppProperties;
+import com.company.parser.model.domain.ParsingConfig;
+import com.company.parser.model.domain.Site;
+import com.company.parser.repository.SiteConfigRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RateLimiterTest {
+
+    private static final String HOST = "shop.example";
+
+    private SiteConfigRepository siteConfigRepository;
+    private RateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties.Http http = mock(AppProperties.Http.class);
+        when(http.rateLimitPerSecond()).thenReturn(5);
+        AppProperties appProperties = mock(AppProperties.class);
+        when(appProperties.http()).thenReturn(http);
+        siteConfigRepository = mock(SiteConfigRepository.class);
+
+        limiter = new RateLimiter(appProperties, siteConfigRepository);
+    }
+
+    @Test
+    void usesDefaultRateWithoutSiteConfig() {
+        assertThat(limiter.getRate("unknown.example")).isEqualTo(5.0);
+    }
+
+    @Test
+    void allowsBurstThenAsksToWait() {
+        configure(1.0, 3);
+
+        assertThat(limiter.tryAcquire(HOST)).isZero();
+        assertThat(limiter.tryAcquire(HOST)).isZero();
+        assertThat(limiter.tryAcquire(HOST)).isZero();
+
+        long wait = limiter.tryAcquire(HOST);
+        assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    void hostIsCaseInsensitive() {
+        configure(1.0, 1);
+
+        assertThat(limiter.tryAcquire(HOST)).isZero();
+        assertThat(limiter.tryAcquire(HOST.toUpperCase())).isPositive();
+    }
+
+    @Test
+    void spacesSteadyRequestsByInterval() throws Exception {
+        configure(50.0, 1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            limiter.acquire(HOST);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // Первый запрос сразу, затем 5 интервалов по 20 мс
+        assertThat(elapsed).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(95));
+    }
+
+    @Test
+    void asyncAcquireCompletesAfterInterval() throws Exception {
+        configure(20.0, 1);
+
+        CompletableFuture<Void> first = limiter.acquireAsync(HOST);
+        long start = System.nanoTime();
+        CompletableFuture<Void> next = limiter.acquireAsync(HOST);
+        boolean nextDoneImmediately = next.isDone();
+
+        assertThat(first).isDone();
+        assertThat(nextDoneImmediately).isFalse();
+
+        next.get(1, TimeUnit.SECONDS);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+    @Test
+    void siteChangeKeepsIssuedSchedule() {
+        configure(1.0, 2);
+        assertThat(limiter.tryAcquire(HOST)).isZero();
+        assertThat(limiter.tryAcquire(HOST)).isZero();
+        assertThat(limiter.tryAcquire(HOST)).isPositive();
+
+        // Новая корзина с тем же всплеском не должна выдать его повторно
+        configure(2.0, 2);
+        limiter.onSitesChanged(new SiteConfigRepository.SitesChangedEvent("shop"));
+
+        assertThat(limiter.getRate(HOST)).isEqualTo(2.0);
+        assertThat(limiter.tryAcquire(HOST)).isPositive();
+    }
+
+    private void configure(double requestsPerSecond, int burst) {
+        Site site = Site.builder()
+                .id("shop")
+                .config(ParsingConfig.builder().requestsPerSecond(requestsPerSecond).burst(burst).build())
+                .build();
+        when(siteConfigRepository.findByHost(HOST)).thenReturn(Optional.of(site));
+    }
+}
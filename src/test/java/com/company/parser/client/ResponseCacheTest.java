@@ -0,0 +1,197 @@
+package com.company.parser.client;
+
+import com.company.parser.config.AppProperties;
+import com.company.parser.config.MetricsConfig;
+import com.company.parser.model.domain.ParsingConfig;
+import com.company.parser.model.domain.Site;
+import com.company.parser.repository.SiteConfigRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ResponseCacheTest {
+
+    private static final String HOST = "shop.example";
+    private static final int ENTRY_BYTES = 300 * 1024;
+
+    @TempDir
+    Path root;
+
+    private AppProperties appProperties;
+    private SiteConfigRepository siteConfigRepository;
+    private ResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties.Http http = mock(AppProperties.Http.class);
+        when(http.cacheEnabled()).thenReturn(true);
+        when(http.cacheDir()).thenReturn(root.toString());
+        when(http.cacheHeapMb()).thenReturn(8);
+        when(http.cacheDiskMb()).thenReturn(1);
+        when(http.cacheTtlMinutes()).thenReturn(60);
+        appProperties = mock(AppProperties.class);
+        when(appProperties.http()).thenReturn(http);
+        siteConfigRepository = mock(SiteConfigRepository.class);
+
+        cache = newCache();
+    }
+
+    @Test
+    void readsBackFromDiskAfterHeapEviction() throws IOException {
+        put(cache, "a", "<html>a</html>".getBytes(StandardCharsets.UTF_8));
+        heap(cache).invalidateAll();
+
+        Optional<ResponseCache.CachedBody> cached = cache.get("a", HOST);
+
+        assertThat(cached).isPresent();
+        assertThat(read(cached.get())).isEqualTo("<html>a</html>");
+        assertThat(cached.get().charset()).isEqualTo("UTF-8");
+    }
+
+    @Test
+    void survivesRestartThroughIndex() throws IOException {
+        put(cache, "a", "<html>a</html>".getBytes(StandardCharsets.UTF_8));
+        cache.flush();
+
+        ResponseCache restarted = newCache();
+
+        assertThat(restarted.get("a", HOST)).map(this::read).contains("<html>a</html>");
+    }
+
+    @Test
+    void sharesObjectFilesBetweenKeysUntilLastReferenceIsGone() throws IOException {
+        byte[] body = "<html>same</html>".getBytes(StandardCharsets.UTF_8);
+        put(cache, "a", body);
+        put(cache, "b", body);
+        assertThat(objectFiles()).isEqualTo(1);
+
+        // Замена одной записи не удаляет общий объект
+        put(cache, "a", "<html>other</html>".getBytes(StandardCharsets.UTF_8));
+        assertThat(objectFiles()).isEqualTo(2);
+        heap(cache).invalidateAll();
+        assertThat(cache.get("b", HOST)).map(this::read).contains("<html>same</html>");
+
+        put(cache, "b", "<html>other</html>".getBytes(StandardCharsets.UTF_8));
+        assertThat(objectFiles()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsLeastRecentlyReadEntriesDownToNinetyPercent() throws Exception {
+        Random random = new Random(42);
+        for (String key : new String[]{"a", "b", "c", "d"}) {
+            byte[] body = new byte[ENTRY_BYTES];
+            random.nextBytes(body);
+            put(cache, key, body);
+            Thread.sleep(5);
+        }
+
+        long diskBytes = ((AtomicLong) ReflectionTestUtils.getField(cache, "diskBytes")).get();
+        assertThat(diskBytes).isLessThanOrEqualTo((long) (1024 * 1024 * 0.9));
+        assertThat(objectFiles()).isEqualTo(3);
+
+        heap(cache).invalidateAll();
+        assertThat(cache.get("a", HOST)).isEmpty();
+        assertThat(cache.get("b", HOST)).isPresent();
+        assertThat(cache.get("d", HOST)).isPresent();
+    }
+
+    @Test
+    void appliesPerHostTtl() throws IOException {
+        Site site = Site.builder()
+                .id("fast")
+                .config(ParsingConfig.builder().cacheTtlMinutes(1).build())
+                .build();
+        when(siteConfigRepository.findByHost("fast.example")).thenReturn(Optional.of(site));
+
+        put(cache, "fast", "<html>fast</html>".getBytes(StandardCharsets.UTF_8));
+        put(cache, "slow", "<html>slow</html>".getBytes(StandardCharsets.UTF_8));
+        age(Duration.ofMinutes(5));
+
+        assertThat(cache.get("fast", "fast.example")).isEmpty();
+        assertThat(cache.get("slow", "slow.example")).isPresent();
+        assertThat(objectFiles()).isEqualTo(1);
+    }
+
+    @Test
+    void siteChangeResetsCachedTtl() throws IOException {
+        put(cache, "a", "<html>a</html>".getBytes(StandardCharsets.UTF_8));
+        age(Duration.ofMinutes(5));
+        assertThat(cache.get("a", HOST)).isPresent();
+
+        Site site = Site.builder()
+                .id("shop")
+                .config(ParsingConfig.builder().cacheTtlMinutes(1).build())
+                .build();
+        when(siteConfigRepository.findByHost(HOST)).thenReturn(Optional.of(site));
+        cache.onSitesChanged(new SiteConfigRepository.SitesChangedEvent("shop"));
+        heap(cache).invalidateAll();
+
+        assertThat(cache.get("a", HOST)).isEmpty();
+    }
+
+    private ResponseCache newCache() {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<MetricsConfig.ParserMetrics> metrics = mock(ObjectProvider.class);
+        ResponseCache created = new ResponseCache(appProperties, siteConfigRepository, metrics);
+        created.init();
+        return created;
+    }
+
+    private static void put(ResponseCache cache, String key, byte[] body) throws IOException {
+        ResponseCache.BodyWriter writer = cache.openWriter(key, "UTF-8");
+        writer.write(body);
+        writer.commit();
+    }
+
+    /**
+     * Сдвиг времени сохранения всех записей в прошлое (в памяти и в индексе диска)
+     */
+    private void age(Duration duration) {
+        heap(cache).invalidateAll();
+        index(cache).replaceAll((key, entry) -> new ResponseCache.DiskEntry(entry.getHash(), entry.getCharset(),
+                entry.getStoredAt().minus(duration), entry.getLastAccess()));
+    }
+
+    private long objectFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(root.resolve("objects-gz"))) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private String read(ResponseCache.CachedBody body) {
+        try (InputStream in = body.open()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cache<String, ResponseCache.CachedBody> heap(ResponseCache cache) {
+        return (Cache<String, ResponseCache.CachedBody>) ReflectionTestUtils.getField(cache, "heap");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ResponseCache.DiskEntry> index(ResponseCache cache) {
+        return (Map<String, ResponseCache.DiskEntry>) ReflectionTestUtils.getField(cache, "index");
+    }
+}
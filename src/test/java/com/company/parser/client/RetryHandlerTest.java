@@ -0,0 +1,244 @@
+package com.company.parser.client;
+
+import com.company.parser.config.AppProperties;
+import com.company.parser.exception.HttpException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RetryHandlerTest {
+
+    private static final String HOST = "shop.example";
+    private static final String URL = "https://shop.example/catalog";
+
+    private AppProperties.Http http;
+    private RetryHandler retryHandler;
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        http = mock(AppProperties.Http.class);
+        when(http.maxRetries()).thenReturn(3);
+        when(http.retryDelayMs()).thenReturn(1);
+        when(http.retryBudgetPercent()).thenReturn(10);
+        when(http.hedgeDelayMs()).thenReturn(0);
+        AppProperties appProperties = mock(AppProperties.class);
+        when(appProperties.http()).thenReturn(http);
+
+        retryHandler = new RetryHandler(appProperties);
+    }
+
+    @Test
+    void classifiesRetryableErrors() {
+        assertThat(RetryHandler.isRetryable(new IOException("reset"))).isTrue();
+        assertThat(RetryHandler.isRetryable(new HttpTimeoutException("timeout"))).isTrue();
+        for (int status : new int[]{408, 429, 500, 502, 503, 504}) {
+            assertThat(RetryHandler.isRetryable(new HttpException(URL, status, "error"))).as("HTTP %d", status).isTrue();
+        }
+        for (int status : new int[]{0, 400, 403, 404, 501}) {
+            assertThat(RetryHandler.isRetryable(new HttpException(URL, status, "error"))).as("HTTP %d", status).isFalse();
+        }
+        assertThat(RetryHandler.isRetryable(new IllegalStateException())).isFalse();
+    }
+
+    @Test
+    void retriesUpToMaxAttempts() {
+        assertThatThrownBy(() -> retryHandler.executeWithRetry(HOST, failing(new IOException("reset"))))
+                .isInstanceOf(IOException.class);
+
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        assertThatThrownBy(() -> retryHandler.executeWithRetry(HOST, failing(new HttpException(URL, 404, "not found"))))
+                .isInstanceOf(HttpException.class);
+
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void returnsResultAfterTransientFailure() throws IOException {
+        String result = retryHandler.executeWithRetry(HOST, () -> {
+            if (attempts.incrementAndGet() < 2) {
+                throw new HttpException(URL, 503, "unavailable");
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void startupBudgetAllowsTenRetries() {
+        when(http.maxRetries()).thenReturn(1000);
+
+        assertThatThrownBy(() -> retryHandler.executeWithRetry(HOST, failing(new IOException("reset"))))
+                .isInstanceOf(IOException.class);
+
+        // Исходная попытка и 10 повторов из стартового запаса; запрос добавил 0.1 повтора
+        assertThat(attempts).hasValue(11);
+        assertThat(retryHandler.getRemainingBudget(HOST)).isEqualTo(0.1);
+    }
+
+    @Test
+    void requestsRefillBudgetByPercent() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            retryHandler.executeWithRetry(HOST, () -> "ok");
+        }
+
+        assertThat(retryHandler.getRemainingBudget(HOST)).isEqualTo(20.0);
+        // Бюджет хоста не расходует бюджет других хостов
+        assertThat(retryHandler.getRemainingBudget("other.example")).isEqualTo(10.0);
+    }
+
+    @Test
+    void savedBudgetIsCapped() throws IOException {
+        when(http.retryBudgetPercent()).thenReturn(100);
+
+        for (int i = 0; i < 500; i++) {
+            retryHandler.executeWithRetry(HOST, () -> "ok");
+        }
+
+        assertThat(retryHandler.getRemainingBudget(HOST)).isEqualTo(100.0);
+    }
+
+    @Test
+    void waitsAtLeastRetryAfter() throws IOException {
+        long start = System.nanoTime();
+        String result = retryHandler.executeWithRetry(HOST, () -> {
+            if (attempts.incrementAndGet() < 2) {
+                throw new HttpException(URL, 429, "too many requests", Duration.ofMillis(300));
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(300));
+    }
+
+    @Test
+    void asyncRetriesUntilSuccess() throws Exception {
+        CompletableFuture<String> result = retryHandler.executeWithRetryAsync(HOST, () ->
+                attempts.incrementAndGet() < 3
+                        ? CompletableFuture.failedFuture(new IOException("reset"))
+                        : CompletableFuture.completedFuture("ok"));
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void hedgeIsNotSentWhenPrimaryIsFast() throws Exception {
+        when(http.hedgeDelayMs()).thenReturn(200);
+        List<CompletableFuture<String>> started = new ArrayList<>();
+
+        CompletableFuture<String> result = retryHandler.executeHedgedAsync(HOST, () -> track(started));
+        started.get(0).complete("primary");
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("primary");
+        Thread.sleep(300);
+        assertThat(started).hasSize(1);
+    }
+
+    @Test
+    void hedgeFiresAfterDelayAndFirstSuccessWins() throws Exception {
+        when(http.hedgeDelayMs()).thenReturn(100);
+        List<CompletableFuture<String>> started = new ArrayList<>();
+
+        long start = System.nanoTime();
+        CompletableFuture<String> result = retryHandler.executeHedgedAsync(HOST, () -> track(started));
+        awaitStarted(started, 2);
+        long hedgedAfter = System.nanoTime() - start;
+
+        started.get(1).complete("hedge");
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("hedge");
+        assertThat(hedgedAfter).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(started.get(0)).isCancelled();
+        assertThat(retryHandler.getRemainingBudget(HOST)).isEqualTo(9.0);
+    }
+
+    @Test
+    void hedgedRequestFailsOnlyWhenBothFail() throws Exception {
+        when(http.hedgeDelayMs()).thenReturn(50);
+        List<CompletableFuture<String>> started = new ArrayList<>();
+
+        CompletableFuture<String> result = retryHandler.executeHedgedAsync(HOST, () -> track(started));
+        awaitStarted(started, 2);
+
+        started.get(0).completeExceptionally(new IOException("primary failed"));
+        assertThat(result).isNotDone();
+
+        IOException hedgeFailure = new IOException("hedge failed");
+        started.get(1).completeExceptionally(hedgeFailure);
+
+        assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCause(hedgeFailure);
+    }
+
+    @Test
+    void hedgedRequestSucceedsWhenPrimaryFailsAfterHedge() throws Exception {
+        when(http.hedgeDelayMs()).thenReturn(50);
+        List<CompletableFuture<String>> started = new ArrayList<>();
+
+        CompletableFuture<String> result = retryHandler.executeHedgedAsync(HOST, () -> track(started));
+        awaitStarted(started, 2);
+
+        started.get(0).completeExceptionally(new IOException("primary failed"));
+        started.get(1).complete("hedge");
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("hedge");
+    }
+
+    private <T> RetryHandler.RetryableOperation<T> failing(RuntimeException error) {
+        return () -> {
+            attempts.incrementAndGet();
+            throw error;
+        };
+    }
+
+    private <T> RetryHandler.RetryableOperation<T> failing(IOException error) {
+        return () -> {
+            attempts.incrementAndGet();
+            throw error;
+        };
+    }
+
+    private static CompletableFuture<String> track(List<CompletableFuture<String>> started) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        synchronized (started) {
+            started.add(future);
+        }
+        return future;
+    }
+
+    private static void awaitStarted(List<CompletableFuture<String>> started, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            synchronized (started) {
+                if (started.size() >= expected) {
+                    return;
+                }
+            }
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.company.parser.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final String KEY = "document|https://shop.example/catalog";
+    private static final int FOLLOWERS = 4;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsShareOneUpstreamRequestAndGetCopies() throws Exception {
+        List<String> original = new ArrayList<>(List.of("page"));
+
+        Future<List<String>> leader = executor.submit(() -> singleFlight.execute(KEY, () -> {
+            calls.incrementAndGet();
+            await(release);
+            return original;
+        }, ArrayList::new));
+        awaitCalls(1);
+        List<Future<List<String>>> followers = startFollowers(() -> {
+            calls.incrementAndGet();
+            return new ArrayList<>(List.of("unexpected"));
+        });
+
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isSameAs(original);
+        for (Future<List<String>> follower : followers) {
+            List<String> copy = follower.get(5, TimeUnit.SECONDS);
+            assertThat(copy).isEqualTo(original).isNotSameAs(original);
+        }
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void failureReachesEveryWaiterAndReleasesKey() throws Exception {
+        IOException failure = new IOException("connection reset");
+
+        Future<List<String>> leader = executor.submit(() -> singleFlight.execute(KEY, () -> {
+            calls.incrementAndGet();
+            await(release);
+            throw failure;
+        }, ArrayList::new));
+        awaitCalls(1);
+        List<Future<List<String>>> followers = startFollowers(() -> {
+            throw new IOException("unexpected");
+        });
+
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCause(failure);
+        for (Future<List<String>> follower : followers) {
+            assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCause(failure);
+        }
+
+        assertThat(singleFlight.execute(KEY, () -> List.of("retry"), ArrayList::new)).containsExactly("retry");
+    }
+
+    @Test
+    void errorCompletesWaitersAndReleasesKey() throws Exception {
+        Future<List<String>> leader = executor.submit(() -> singleFlight.execute(KEY, () -> {
+            calls.incrementAndGet();
+            await(release);
+            throw new StackOverflowError();
+        }, ArrayList::new));
+        awaitCalls(1);
+        List<Future<List<String>>> followers = startFollowers(() -> List.of("unexpected"));
+
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+        for (Future<List<String>> follower : followers) {
+            assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasRootCauseInstanceOf(StackOverflowError.class);
+        }
+
+        assertThat(singleFlight.execute(KEY, () -> List.of("retry"), ArrayList::new)).containsExactly("retry");
+    }
+
+    @Test
+    void keyIsReleasedAfterSuccess() throws IOException {
+        singleFlight.execute(KEY, () -> {
+            calls.incrementAndGet();
+            return List.of("first");
+        }, ArrayList::new);
+        List<String> second = singleFlight.execute(KEY, () -> {
+            calls.incrementAndGet();
+            return List.of("second");
+        }, ArrayList::new);
+
+        assertThat(second).containsExactly("second");
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void asyncFollowersGetCopiesOfLeaderResult() throws Exception {
+        List<String> original = new ArrayList<>(List.of("page"));
+        CompletableFuture<List<String>> upstream = new CompletableFuture<>();
+
+        CompletableFuture<List<String>> leader = singleFlight.executeAsync(KEY, () -> {
+            calls.incrementAndGet();
+            return upstream;
+        }, ArrayList::new);
+        CompletableFuture<List<String>> follower = singleFlight.executeAsync(KEY, () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(List.of("unexpected"));
+        }, ArrayList::new);
+
+        upstream.complete(original);
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isSameAs(original);
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo(original).isNotSameAs(original);
+        assertThat(calls).hasValue(1);
+
+        CompletableFuture<List<String>> next = singleFlight.executeAsync(KEY,
+                () -> CompletableFuture.completedFuture(List.of("next")), ArrayList::new);
+        assertThat(next.get(5, TimeUnit.SECONDS)).containsExactly("next");
+    }
+
+    @Test
+    void asyncFailureReachesFollowers() {
+        IOException failure = new IOException("timeout");
+        CompletableFuture<List<String>> upstream = new CompletableFuture<>();
+
+        CompletableFuture<List<String>> leader = singleFlight.executeAsync(KEY, () -> upstream, ArrayList::new);
+        CompletableFuture<List<String>> follower = singleFlight.executeAsync(KEY,
+                () -> CompletableFuture.completedFuture(List.of("unexpected")), ArrayList::new);
+
+        upstream.completeExceptionally(failure);
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCause(failure);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCause(failure);
+    }
+
+    /**
+     * Запуск ожидающих вызовов; возвращает, когда все они встали в ожидание результата
+     */
+    private List<Future<List<String>>> startFollowers(SingleFlight.IoCall<List<String>> call) throws Exception {
+        CountDownLatch started = new CountDownLatch(FOLLOWERS);
+        List<Thread> threads = new ArrayList<>();
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < FOLLOWERS; i++) {
+            futures.add(executor.submit(() -> {
+                synchronized (threads) {
+                    threads.add(Thread.currentThread());
+                }
+                started.countDown();
+                return singleFlight.execute(KEY, call, ArrayList::new);
+            }));
+        }
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!allWaiting(threads)) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(1);
+        }
+        return futures;
+    }
+
+    private static boolean allWaiting(List<Thread> threads) {
+        synchronized (threads) {
+            return threads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING);
+        }
+    }
+
+    private void awaitCalls(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (calls.get() < expected) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
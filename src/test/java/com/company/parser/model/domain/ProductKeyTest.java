@@ -0,0 +1,110 @@
+package com.company.parser.model.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductKeyTest {
+
+    @Test
+    void equalValuesGiveEqualKeys() {
+        ProductKey a = ProductKey.of("site-eq", "40x20", "2", "Ст3");
+        ProductKey b = ProductKey.of("site-eq", "40x20", "2", "Ст3");
+
+        assertThat(a).isEqualTo(b).hasSameHashCodeAs(b);
+        assertThat(a).isNotEqualTo(ProductKey.of("site-eq", "40x20", "3", "Ст3"));
+        assertThat(a).isNotEqualTo(ProductKey.of("site-eq", "20x40", "2", "Ст3"));
+    }
+
+    @Test
+    void unpacksFieldValues() {
+        ProductKey key = ProductKey.of("site-unpack", "60x40", "3", "09Г2С");
+
+        assertThat(key.getSiteId()).isEqualTo("site-unpack");
+        assertThat(key.getSize()).isEqualTo("60x40");
+        assertThat(key.getThickness()).isEqualTo("3");
+        assertThat(key.getSteelGrade()).isEqualTo("09Г2С");
+        assertThat(key.toProductKeyString()).isEqualTo("60x40|3|09Г2С");
+        assertThat(key).hasToString("site-unpack|60x40|3|09Г2С");
+    }
+
+    @Test
+    void treatsNullAndEmptyAsTheSameValue() {
+        ProductKey withNull = ProductKey.of("site-null", "40x20", null, null);
+        ProductKey withEmpty = ProductKey.of("site-null", "40x20", "", "");
+
+        assertThat(withNull).isEqualTo(withEmpty);
+        assertThat(withNull.getThickness()).isEmpty();
+        assertThat(withNull.toProductKeyString()).isEqualTo("40x20||");
+    }
+
+    @Test
+    void parsesProductKeyString() {
+        ProductKey key = ProductKey.of("site-parse", "40x20", "2", "Ст3");
+
+        assertThat(ProductKey.parse("site-parse", key.toProductKeyString())).isEqualTo(key);
+        assertThat(ProductKey.parse("site-parse", "40x20")).isEqualTo(ProductKey.of("site-parse", "40x20", null, null));
+        assertThat(ProductKey.parse("site-parse", null)).isEqualTo(ProductKey.of("site-parse", null, null, null));
+    }
+
+    @Test
+    void dropsSteelGrade() {
+        ProductKey key = ProductKey.of("site-grade", "40x20", "2", "Ст3");
+        ProductKey withoutGrade = ProductKey.of("site-grade", "40x20", "2", null);
+
+        assertThat(key.withoutSteelGrade()).isEqualTo(withoutGrade);
+        assertThat(withoutGrade.withoutSteelGrade()).isSameAs(withoutGrade);
+    }
+
+    @Test
+    void concurrentInterningYieldsOneId() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<ProductKey>> tasks = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                tasks.add(() -> ProductKey.of("site-race", "size-race", "thickness-race", "grade-race"));
+            }
+            Set<ProductKey> keys = new HashSet<>();
+            for (Future<ProductKey> future : executor.invokeAll(tasks)) {
+                keys.add(future.get());
+            }
+            assertThat(keys).hasSize(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void fallsBackToUnpackedKeysWhenDictionaryIsFull() {
+        ProductKey before = ProductKey.of("site-full", "40x20", "2", "grade-before");
+
+        // Словарь марок вмещает 65535 значений, остальные не интернируются
+        for (int i = 0; i < 66_000; i++) {
+            ProductKey.of("site-full", "40x20", "2", "grade-fill-" + i);
+        }
+
+        ProductKey overflow = ProductKey.of("site-full", "40x20", "2", "grade-after");
+        ProductKey overflowAgain = ProductKey.of("site-full", "40x20", "2", "grade-after");
+
+        assertThat(overflow).isEqualTo(overflowAgain).hasSameHashCodeAs(overflowAgain);
+        assertThat(overflow).isNotEqualTo(ProductKey.of("site-full", "40x20", "2", "grade-other"));
+        assertThat(overflow.getSteelGrade()).isEqualTo("grade-after");
+        assertThat(overflow.toProductKeyString()).isEqualTo("40x20|2|grade-after");
+        assertThat(ProductKey.parse("site-full", overflow.toProductKeyString())).isEqualTo(overflow);
+
+        // Ключ без марки снова помещается в словари и равен обычному ключу
+        assertThat(overflow.withoutSteelGrade()).isEqualTo(ProductKey.of("site-full", "40x20", "2", null));
+
+        // Уже интернированные значения продолжают работать
+        assertThat(ProductKey.of("site-full", "40x20", "2", "grade-before")).isEqualTo(before);
+    }
+}
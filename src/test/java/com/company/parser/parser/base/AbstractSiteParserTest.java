@@ -0,0 +1,123 @@
+package com.company.parser.parser.base;
+
+import com.company.parser.model.domain.ParsingConfig;
+import com.company.parser.model.domain.PriceRecord;
+import com.company.parser.model.domain.Site;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.select.Elements;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AbstractSiteParserTest {
+
+    private static final int CARDS = 500;
+
+    private final TestParser parser = new TestParser();
+    private final Elements cards = cards();
+
+    @Test
+    void parallelParsingKeepsCardOrder() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        List<PriceRecord> records = parser.parseCards(cards, site(true), card -> {
+            threads.add(Thread.currentThread());
+            // разное время разбора, чтобы половины завершались не по порядку
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(50_000));
+            return record(card.attr("data-id"));
+        });
+
+        assertThat(records).extracting(PriceRecord::getId).containsExactlyElementsOf(ids());
+        assertThat(threads).anyMatch(ForkJoinWorkerThread.class::isInstance);
+    }
+
+    @Test
+    void parallelParsingSkipsFailedAndEmptyCards() {
+        List<PriceRecord> records = parser.parseCards(cards, site(true), card -> {
+            int id = Integer.parseInt(card.attr("data-id"));
+            if (id % 7 == 0) {
+                throw new IllegalStateException("broken card " + id);
+            }
+            return id % 5 == 0 ? null : record(card.attr("data-id"));
+        });
+
+        List<String> expected = IntStream.range(0, CARDS)
+                .filter(id -> id % 7 != 0 && id % 5 != 0)
+                .mapToObj(String::valueOf)
+                .toList();
+        assertThat(records).extracting(PriceRecord::getId).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void sequentialParsingWithoutFlag() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        List<PriceRecord> records = parser.parseCards(cards, site(false), card -> {
+            threads.add(Thread.currentThread());
+            return record(card.attr("data-id"));
+        });
+
+        assertThat(records).extracting(PriceRecord::getId).containsExactlyElementsOf(ids());
+        assertThat(threads).containsExactly(Thread.currentThread());
+    }
+
+    private static Elements cards() {
+        StringBuilder html = new StringBuilder("<div class=list>");
+        for (int i = 0; i < CARDS; i++) {
+            html.append("<div class=card data-id=").append(i).append(">item ").append(i).append("</div>");
+        }
+        return Jsoup.parse(html.append("</div>").toString()).select(".card");
+    }
+
+    private static List<String> ids() {
+        return IntStream.range(0, CARDS).mapToObj(String::valueOf).toList();
+    }
+
+    private static Site site(boolean parallel) {
+        return Site.builder()
+                .id("test")
+                .name("Test")
+                .config(ParsingConfig.builder().parallelCardParsing(parallel).build())
+                .build();
+    }
+
+    private static PriceRecord record(String id) {
+        return PriceRecord.builder().id(id).build();
+    }
+
+    private static final class TestParser extends AbstractSiteParser {
+
+        TestParser() {
+            super(null, null, null, null);
+        }
+
+        @Override
+        protected List<PriceRecord> parsePage(Document document, Site site, ParsingContext context, String pageUrl) {
+            return List.of();
+        }
+
+        @Override
+        protected String getNextPageUrl(Document document, Site site) {
+            return null;
+        }
+
+        @Override
+        public String getType() {
+            return "test";
+        }
+
+        @Override
+        public boolean supports(Site site) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.company.parser.parser.selector;
+
+import com.company.parser.model.domain.SiteSelectors;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SelectorPlanTest {
+
+    private static final String HTML = """
+            <div class="catalog">
+              <div class="card" data-size="40x20">
+                <a class="title" href="/p/1"><span class="name">Труба 40x20</span></a>
+                <div class="info">
+                  <span class="price old">1 200</span>
+                  <span class="price">1 100</span>
+                  <ul class="props">
+                    <li>Толщина: <b>2.0</b></li>
+                    <li>Марка: <b>Ст3</b></li>
+                    <li>Длина: <b>6</b></li>
+                  </ul>
+                </div>
+              </div>
+              <div class="card promo" data-size="60x40">
+                <div class="info"><span class="price">2 500</span></div>
+                <a class="title" href="/p/2"><span class="name">Труба 60x40</span></a>
+                <ul class="props"><li>Толщина: <b>3.0</b></li></ul>
+              </div>
+              <div class="card">
+                <span class="name">Без цены</span>
+              </div>
+            </div>
+            """;
+
+    @Test
+    void singlePassMatchesPerSelectorSelectFirst() {
+        SiteSelectors selectors = SiteSelectors.builder()
+                .listSelector("div.card")
+                .nameSelector("a.title .name, span.name")
+                .priceSelector("div.info span.price:not(.old)")
+                .urlSelector("a[href]")
+                .sizeSelector("[data-size]")
+                .thicknessSelector("ul.props li:nth-child(1) b")
+                .steelGradeSelector("li:has(b):contains(Марка) b")
+                .lengthSelector("ul.props > li:eq(2) > b")
+                .build();
+
+        assertMatchesSelectFirst(selectors);
+
+        SelectorPlan.CardMatch match = SelectorPlan.of(selectors).matchCard(Jsoup.parse(HTML).selectFirst("div.card"));
+        assertThat(match.price().text()).isEqualTo("1 100");
+        assertThat(match.size().attr("data-size")).isEqualTo("40x20");
+        assertThat(match.thickness().text()).isEqualTo("2.0");
+        assertThat(match.steelGrade().text()).isEqualTo("Ст3");
+        assertThat(match.length().text()).isEqualTo("6");
+    }
+
+    @Test
+    void unsetAndInvalidSelectorsGiveNoElement() {
+        SiteSelectors selectors = SiteSelectors.builder()
+                .listSelector("div.card")
+                .nameSelector("span.name")
+                .priceSelector("span.price")
+                .urlSelector("a[[")
+                .sizeSelector(" ")
+                .build();
+        SelectorPlan plan = SelectorPlan.of(selectors);
+        Element card = Jsoup.parse(HTML).selectFirst("div.card");
+
+        SelectorPlan.CardMatch match = plan.matchCard(card);
+
+        assertThat(match.name().text()).isEqualTo("Труба 40x20");
+        assertThat(match.url()).isNull();
+        assertThat(match.size()).isNull();
+        assertThat(match.thickness()).isNull();
+    }
+
+    @Test
+    void structuralSelectorsStayCorrectAcrossDocuments() {
+        SiteSelectors selectors = SiteSelectors.builder()
+                .listSelector("div.card")
+                .nameSelector("div.card a span.name")
+                .priceSelector("div:has(> span.price) > span.price:last-child")
+                .build();
+
+        // Повторный разбор: мемоизация структурных селекторов не должна переноситься между документами
+        assertMatchesSelectFirst(selectors);
+        assertMatchesSelectFirst(selectors);
+    }
+
+    private static void assertMatchesSelectFirst(SiteSelectors selectors) {
+        SelectorPlan plan = SelectorPlan.of(selectors);
+        Document document = Jsoup.parse(HTML, "https://shop.example/");
+        Elements cards = document.select(plan.getList());
+        assertThat(cards).hasSize(3);
+
+        List<Field> fields = List.of(
+                new Field(selectors.getNameSelector(), SelectorPlan.CardMatch::name),
+                new Field(selectors.getPriceSelector(), SelectorPlan.CardMatch::price),
+                new Field(selectors.getUrlSelector(), SelectorPlan.CardMatch::url),
+                new Field(selectors.getSizeSelector(), SelectorPlan.CardMatch::size),
+                new Field(selectors.getThicknessSelector(), SelectorPlan.CardMatch::thickness),
+                new Field(selectors.getSteelGradeSelector(), SelectorPlan.CardMatch::steelGrade),
+                new Field(selectors.getLengthSelector(), SelectorPlan.CardMatch::length));
+
+        for (Element card : cards) {
+            SelectorPlan.CardMatch match = plan.matchCard(card);
+            for (Field field : fields) {
+                Element expected = field.query() != null ? card.selectFirst(field.query()) : null;
+                assertThat(field.of().apply(match))
+                        .as("%s in card %s", field.query(), card.className())
+                        .isSameAs(expected);
+            }
+        }
+    }
+
+    private record Field(String query, Function<SelectorPlan.CardMatch, Element> of) {
+    }
+}
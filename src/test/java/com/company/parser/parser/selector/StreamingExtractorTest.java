@@ -0,0 +1,105 @@
+package com.company.parser.parser.selector;
+
+import com.company.parser.model.domain.SiteSelectors;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Evaluator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingExtractorTest {
+
+    @Test
+    void extractsCardsAndNextPageWhilePruningClosedSubtrees() throws Exception {
+        StringBuilder html = new StringBuilder("<html><head><title>t</title></head><body>"
+                + "<nav class=\"menu\">");
+        for (int i = 0; i < 200; i++) {
+            html.append("<div class=\"filter\"><a href=\"/f/").append(i).append("\"><span>f</span></a></div>");
+        }
+        html.append("</nav><div class=\"catalog__list\">");
+        for (int i = 0; i < 50; i++) {
+            html.append("<div class=\"catalog-item\"><a class=\"name\" href=\"/p/").append(i).append("\">Труба ")
+                    .append(i).append("</a><div class=\"price\"><script>x()</script><b>").append(100 + i)
+                    .append("</b></div></div>");
+        }
+        html.append("</div><ul class=\"pagination\"><li class=\"next\"><a href=\"?page=2\">next</a></li></ul>"
+                + "</body></html>");
+
+        SelectorPlan plan = SelectorPlan.of(SiteSelectors.builder()
+                .listSelector(".catalog__list .catalog-item")
+                .nameSelector("a.name")
+                .priceSelector(".price b")
+                .urlSelector("a[href]")
+                .nextPageSelector("a.missing | .pagination .next a")
+                .build());
+
+        List<String> names = new ArrayList<>();
+        List<String> prices = new ArrayList<>();
+        List<String> urls = new ArrayList<>();
+        int[] maxTreeSize = {0};
+
+        String nextUrl = StreamingExtractor.extract(
+                new ByteArrayInputStream(html.toString().getBytes(StandardCharsets.UTF_8)), "UTF-8",
+                "https://shop.example/catalog", plan.getList(), plan.getNextPage(), card -> {
+                    SelectorPlan.CardMatch match = plan.matchCard(card);
+                    names.add(match.name().text());
+                    prices.add(match.price().text());
+                    urls.add(match.url().absUrl("href"));
+                    maxTreeSize[0] = Math.max(maxTreeSize[0], card.root().getAllElements().size());
+                });
+
+        assertThat(names).hasSize(50).startsWith("Труба 0").endsWith("Труба 49");
+        assertThat(prices).startsWith("100").endsWith("149");
+        assertThat(urls).startsWith("https://shop.example/p/0");
+        assertThat(nextUrl).isEqualTo("https://shop.example/catalog?page=2");
+        // Фильтры и прошлые карточки уже удалены: в дереве только предки и текущая карточка
+        assertThat(maxTreeSize[0]).isLessThan(20);
+    }
+
+    @Test
+    void checksCardSelectorOncePerElement() throws Exception {
+        StringBuilder html = new StringBuilder("<html><body><div class=\"catalog\">");
+        for (int i = 0; i < 30; i++) {
+            html.append("<div class=\"item\">").append("<div><div><div><div><div>".repeat(4))
+                    .append("<span class=\"price\">").append(i).append("</span>")
+                    .append("</div></div></div></div></div>".repeat(4)).append("</div>");
+        }
+        html.append("</div></body></html>");
+        int elements = Jsoup.parse(html.toString()).getAllElements().size();
+
+        Evaluator item = SelectorPlan.compile(".item");
+        int[] checks = {0};
+        Evaluator counting = new Evaluator() {
+            @Override
+            public boolean matches(Element root, Element element) {
+                checks[0]++;
+                return item.matches(root, element);
+            }
+        };
+
+        List<String> prices = new ArrayList<>();
+        StreamingExtractor.extract(new ByteArrayInputStream(html.toString().getBytes(StandardCharsets.UTF_8)),
+                "UTF-8", "https://shop.example/", counting, List.of(),
+                card -> prices.add(card.selectFirst(".price").text()));
+
+        assertThat(prices).hasSize(30).startsWith("0").endsWith("29");
+        // Элемент проверяется при закрытии и, как открытый предок, не больше одного раза
+        assertThat(checks[0]).isLessThanOrEqualTo(2 * elements);
+    }
+
+    @Test
+    void memoResetElementIsNotShared() {
+        Element scratch = new Element(SelectorPlan.MEMO_RESET_TAG);
+
+        SelectorPlan.resetMemo(scratch, SelectorPlan.compile("div:has(> p) span"));
+
+        assertThat(scratch.childrenSize()).isZero();
+        assertThat(scratch.parent()).isNull();
+    }
+}
@@ -0,0 +1,209 @@
+package com.company.parser.repository;
+
+import com.company.parser.model.domain.PriceHistory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HistoryLogTest {
+
+    @TempDir
+    Path dir;
+
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+    }
+
+    @Test
+    void replaysAppendedEntriesInOrder() throws IOException {
+        try (HistoryLog log = open(new ArrayList<>())) {
+            log.append(history("1"));
+            log.appendAll(List.of(history("2"), history("3")));
+        }
+
+        List<PriceHistory> replayed = new ArrayList<>();
+        try (HistoryLog ignored = open(replayed)) {
+            assertThat(replayed).extracting(PriceHistory::getId).containsExactly("1", "2", "3");
+        }
+    }
+
+    @Test
+    void replaysEntriesSpanningReadBufferBoundaries() throws IOException {
+        List<PriceHistory> written = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            written.add(history(String.valueOf(i)));
+        }
+        try (HistoryLog log = open(new ArrayList<>())) {
+            log.appendAll(written);
+        }
+
+        List<PriceHistory> replayed = new ArrayList<>();
+        try (HistoryLog ignored = open(replayed)) {
+            assertThat(replayed).isEqualTo(written);
+        }
+    }
+
+    @Test
+    void truncatesIncompleteFinalRecordAndKeepsAppending() throws IOException {
+        try (HistoryLog log = open(new ArrayList<>())) {
+            log.appendAll(List.of(history("1"), history("2")));
+        }
+
+        Path segment = single("history-");
+        long intact = Files.size(segment);
+        Files.write(segment, "{\"id\":\"3\",\"siteId\":".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        List<PriceHistory> replayed = new ArrayList<>();
+        try (HistoryLog log = open(replayed)) {
+            assertThat(replayed).extracting(PriceHistory::getId).containsExactly("1", "2");
+            assertThat(Files.size(segment)).isEqualTo(intact);
+            log.append(history("4"));
+        }
+
+        replayed.clear();
+        try (HistoryLog ignored = open(replayed)) {
+            assertThat(replayed).extracting(PriceHistory::getId).containsExactly("1", "2", "4");
+        }
+    }
+
+    @Test
+    void skipsCorruptedLineInTheMiddle() throws IOException {
+        try (HistoryLog log = open(new ArrayList<>())) {
+            log.append(history("1"));
+        }
+        Files.write(single("history-"), "not json\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try (HistoryLog log = open(new ArrayList<>())) {
+            log.append(history("2"));
+        }
+
+        List<PriceHistory> replayed = new ArrayList<>();
+        try (HistoryLog ignored = open(replayed)) {
+            assertThat(replayed).extracting(PriceHistory::getId).containsExactly("1", "2");
+        }
+    }
+
+    @Test
+    void replaysSnapshotAndSegmentsWrittenAfterCompaction() throws IOException {
+        try (HistoryLog log = open(new ArrayList<>())) {
+            log.appendAll(List.of(history("1"), history("2"), history("3")));
+            // В снимок попадают только живые записи
+            log.compact(() -> List.of(history("2"), history("3")));
+            log.append(history("4"));
+        }
+
+        assertThat(list("snapshot-")).hasSize(1);
+        assertThat(list("history-")).hasSize(1);
+
+        List<PriceHistory> replayed = new ArrayList<>();
+        try (HistoryLog ignored = open(replayed)) {
+            assertThat(replayed).extracting(PriceHistory::getId).containsExactly("2", "3", "4");
+        }
+    }
+
+    @Test
+    void repeatedCompactionKeepsOnlyLatestSnapshot() throws IOException {
+        try (HistoryLog log = open(new ArrayList<>())) {
+            log.append(history("1"));
+            log.compact(() -> List.of(history("1")));
+            log.append(history("2"));
+            log.compact(() -> List.of(history("1"), history("2")));
+        }
+
+        assertThat(list("snapshot-")).hasSize(1);
+
+        List<PriceHistory> replayed = new ArrayList<>();
+        try (HistoryLog ignored = open(replayed)) {
+            assertThat(replayed).extracting(PriceHistory::getId).containsExactly("1", "2");
+        }
+    }
+
+    @Test
+    void recoveryDropsSegmentsCoveredByInterruptedCompaction() throws IOException {
+        try (HistoryLog log = open(new ArrayList<>())) {
+            log.append(history("1"));
+            log.compact(() -> List.of(history("1")));
+        }
+
+        // Сегмент с номером снимка остался бы, если компакция прервалась до удаления
+        Path stale = dir.resolve(single("snapshot-").getFileName().toString().replace("snapshot-", "history-"));
+        try (FileChannel channel = FileChannel.open(stale, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.write(java.nio.ByteBuffer.wrap(objectMapper.writeValueAsBytes(history("1"))));
+            channel.write(java.nio.ByteBuffer.wrap(new byte[]{'\n'}));
+        }
+        Files.writeString(dir.resolve("snapshot-0000000009.log.tmp"), "partial");
+
+        List<PriceHistory> replayed = new ArrayList<>();
+        try (HistoryLog ignored = open(replayed)) {
+            assertThat(replayed).extracting(PriceHistory::getId).containsExactly("1");
+        }
+        assertThat(stale).doesNotExist();
+        assertThat(dir.resolve("snapshot-0000000009.log.tmp")).doesNotExist();
+    }
+
+    @Test
+    void reportsEmptyOnlyWithoutLogFiles() throws IOException {
+        HistoryLog log = new HistoryLog(dir, objectMapper);
+        assertThat(log.isEmpty()).isTrue();
+
+        log.recover(history -> { });
+        log.append(history("1"));
+        log.close();
+
+        assertThat(log.isEmpty()).isFalse();
+    }
+
+    // === Helpers ===
+
+    private HistoryLog open(List<PriceHistory> sink) throws IOException {
+        HistoryLog log = new HistoryLog(dir, objectMapper);
+        log.recover(sink::add);
+        return log;
+    }
+
+    private List<Path> list(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(".log");
+            }).toList();
+        }
+    }
+
+    private Path single(String prefix) throws IOException {
+        List<Path> files = list(prefix);
+        assertThat(files).hasSize(1);
+        return files.get(0);
+    }
+
+    private static PriceHistory history(String id) {
+        return PriceHistory.builder()
+                .id(id)
+                .siteId("site")
+                .productKey("40x20|2|Ст3")
+                .productName("Труба " + id)
+                .price(new BigDecimal("100.50"))
+                .timestamp(Instant.parse("2024-01-01T00:00:00Z"))
+                .build();
+    }
+}
@@ -0,0 +1,82 @@
+package com.company.parser.repository;
+
+import com.company.parser.model.domain.PriceHistory;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HistoryTimeIndexTest {
+
+    private static final Instant DAY = Instant.parse("2024-03-10T00:00:00Z");
+
+    private final HistoryTimeIndex index = new HistoryTimeIndex();
+
+    @Test
+    void rangeSpansDayBucketsInTimeOrder() {
+        index.add(history("d3", DAY.plus(2, ChronoUnit.DAYS).plusSeconds(60)));
+        index.add(history("d1-late", DAY.plus(23, ChronoUnit.HOURS)));
+        index.add(history("d1-early", DAY.plusSeconds(10)));
+        index.add(history("d2", DAY.plus(1, ChronoUnit.DAYS).plusSeconds(3600)));
+        index.add(history("d0", DAY.minusSeconds(1)));
+
+        assertThat(index.range(DAY.plusSeconds(10), DAY.plus(2, ChronoUnit.DAYS).plusSeconds(60)))
+                .extracting(PriceHistory::getId)
+                .containsExactly("d1-early", "d1-late", "d2", "d3");
+        assertThat(index.range(DAY.plus(20, ChronoUnit.HOURS), DAY.plus(30, ChronoUnit.HOURS)))
+                .extracting(PriceHistory::getId)
+                .containsExactly("d1-late", "d2");
+    }
+
+    @Test
+    void keepsEntriesWithEqualTimestamps() {
+        Instant ts = DAY.plusSeconds(100);
+        index.add(history("a", ts));
+        index.add(history("b", ts));
+        index.add(history(null, ts));
+
+        assertThat(index.range(ts, ts)).extracting(PriceHistory::getId).containsExactly("a", "b", null);
+        assertThat(index.newerThan(ts.minusSeconds(1))).extracting(PriceHistory::getId)
+                .containsExactly(null, "b", "a");
+    }
+
+    @Test
+    void newerThanReturnsNewestFirstAcrossBuckets() {
+        index.add(history("old", DAY.minus(1, ChronoUnit.DAYS)));
+        index.add(history("a", DAY.plusSeconds(5)));
+        index.add(history("b", DAY.plus(1, ChronoUnit.DAYS)));
+
+        assertThat(index.newerThan(DAY)).extracting(PriceHistory::getId).containsExactly("b", "a");
+    }
+
+    @Test
+    void removeBeforeDropsOlderBucketsAndFiltersTheBoundaryBucket() {
+        index.add(history("old", DAY.minus(2, ChronoUnit.DAYS)));
+        index.add(history("boundary-old", DAY.plusSeconds(10)));
+        index.add(history("boundary-new", DAY.plusSeconds(30)));
+        index.add(history("new", DAY.plus(1, ChronoUnit.DAYS)));
+
+        index.removeBefore(DAY.plusSeconds(20));
+
+        assertThat(index.range(DAY.minus(3, ChronoUnit.DAYS), DAY.plus(2, ChronoUnit.DAYS)))
+                .extracting(PriceHistory::getId)
+                .containsExactly("boundary-new", "new");
+
+        index.removeBefore(DAY.plus(1, ChronoUnit.DAYS));
+        assertThat(index.newerThan(DAY.minus(3, ChronoUnit.DAYS))).extracting(PriceHistory::getId)
+                .containsExactly("new");
+    }
+
+    private static PriceHistory history(String id, Instant timestamp) {
+        return PriceHistory.builder()
+                .id(id)
+                .siteId("site")
+                .productKey("40x20|2")
+                .price(BigDecimal.ONE)
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,127 @@
+package com.company.parser.repository;
+
+import com.company.parser.model.domain.PriceRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PriceColumnStoreTest {
+
+    @TempDir
+    Path root;
+
+    private PriceColumnStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new PriceColumnStore(root, new ObjectMapper());
+    }
+
+    @Test
+    void keepsPricesWithMoreThanTwoDecimalsExactly() throws IOException {
+        PriceColumnStore.ChunkWriter writer = store.newWriter();
+        writer.append(record("a", "100.50"));
+        writer.append(record("b", "85.125"));
+        writer.append(record("c", "7"));
+        writer.commit();
+
+        assertThat(store.readLatest())
+                .extracting(PriceRecord::getPrice)
+                .usingComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                .containsExactly(new BigDecimal("100.50"), new BigDecimal("85.125"), new BigDecimal("7"));
+    }
+
+    @Test
+    void rejectsNonRepresentablePricesWithoutFailingTheRun() throws IOException {
+        PriceColumnStore.ChunkWriter writer = store.newWriter();
+        assertThat(writer.append(record("a", "100.50"))).isTrue();
+        assertThat(writer.append(record("b", "0.0000001"))).isFalse();
+        assertThat(writer.append(record("c", "1E+30"))).isFalse();
+        writer.commit();
+
+        assertThat(writer.rejected()).isEqualTo(2);
+        assertThat(store.readLatest()).extracting(PriceRecord::getSiteId).containsExactly("a");
+    }
+
+    @Test
+    void scanIsBoundedByPeriod() throws IOException {
+        Instant now = Instant.now();
+        store.write(List.of(record("old", "1", now.minus(3, ChronoUnit.DAYS))));
+        store.write(List.of(record("new", "2", now)));
+
+        assertThat(store.scan(now.minus(4, ChronoUnit.DAYS), now.minus(2, ChronoUnit.DAYS)))
+                .extracting(PriceRecord::getSiteId).containsExactly("old");
+        assertThat(store.scan(now.minus(1, ChronoUnit.HOURS), now.plus(1, ChronoUnit.HOURS)))
+                .extracting(PriceRecord::getSiteId).containsExactly("new");
+    }
+
+    @Test
+    void findsProductsThroughTheKeyIndex() throws IOException {
+        PriceColumnStore.ChunkWriter writer = store.newWriter();
+        for (int i = 0; i < 500; i++) {
+            writer.append(product("site-" + (i % 7), "size-" + i, String.valueOf(i % 3), "Ст3", "1"));
+        }
+        writer.append(product("site-3", "size-42", "0", "09Г2С", "2"));
+        writer.commit();
+
+        try (PriceSnapshot snapshot = store.openLatest().orElseThrow()) {
+            assertThat(snapshot.find("site-0", "size-42", "0", "Ст3")).isEqualTo(42);
+            assertThat(snapshot.find("site-3", "size-42", "0", "09Г2С")).isEqualTo(500);
+            assertThat(snapshot.find("site-0", "size-42", null, null)).isEqualTo(42);
+            assertThat(snapshot.find(null, "size-10", null, null)).isEqualTo(10);
+            assertThat(snapshot.find("site-1", "size-42", "0", "Ст3")).isEqualTo(-1);
+            assertThat(snapshot.find("unknown", null, null, null)).isEqualTo(-1);
+        }
+
+        assertThat(store.scanProduct("site-3", "size-42", null, null, null, null))
+                .extracting(PriceRecord::getSteelGrade)
+                .containsExactly("09Г2С");
+    }
+
+    @Test
+    void closedSnapshotRejectsAccess() throws IOException {
+        store.write(List.of(record("a", "1")));
+
+        PriceSnapshot snapshot = store.openLatest().orElseThrow();
+        snapshot.close();
+        snapshot.close();
+
+        assertThatThrownBy(() -> snapshot.get(0)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static PriceRecord product(String siteId, String size, String thickness, String grade, String price) {
+        return PriceRecord.builder()
+                .siteId(siteId)
+                .size(size)
+                .thickness(thickness)
+                .steelGrade(grade)
+                .price(new BigDecimal(price))
+                .timestamp(Instant.now())
+                .build();
+    }
+
+    private static PriceRecord record(String siteId, String price) {
+        return record(siteId, price, Instant.now());
+    }
+
+    private static PriceRecord record(String siteId, String price, Instant timestamp) {
+        return PriceRecord.builder()
+                .siteId(siteId)
+                .size("40x20")
+                .thickness("2")
+                .price(new BigDecimal(price))
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,109 @@
+package com.company.parser.repository;
+
+import com.company.parser.model.domain.PriceRecord;
+import com.company.parser.model.domain.ProductKey;
+import com.company.parser.util.SizeNormalizer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceRepositoryTest {
+
+    private static final Instant NOW = Instant.parse("2024-03-10T12:00:00Z");
+
+    @TempDir
+    Path root;
+
+    private PriceRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new PriceRepository(new SizeNormalizer());
+        // Без init(): колоночное хранилище во временном каталоге, а не в ./data
+        ReflectionTestUtils.setField(repository, "columnStore", new PriceColumnStore(root, new ObjectMapper()));
+    }
+
+    @Test
+    void findsRecordsThroughSecondaryIndexes() {
+        repository.saveAll(List.of(
+                record("a", "40х20", "2", "100", NOW),
+                record("a", "60x40", "3", "200", NOW.plusSeconds(60)),
+                record("b", "40x20", "3", "300", NOW.plusSeconds(120))));
+
+        assertThat(repository.findBySiteId("a")).extracting(PriceRecord::getPrice)
+                .containsExactlyInAnyOrder(new BigDecimal("100"), new BigDecimal("200"));
+        assertThat(repository.findBySize("40x20")).extracting(PriceRecord::getSiteId)
+                .containsExactlyInAnyOrder("a", "b");
+        assertThat(repository.findByThickness("3")).extracting(PriceRecord::getSiteId)
+                .containsExactlyInAnyOrder("a", "b");
+        assertThat(repository.findByPeriod(NOW.plusSeconds(60), NOW.plusSeconds(120)))
+                .extracting(PriceRecord::getPrice)
+                .containsExactly(new BigDecimal("200"));
+    }
+
+    @Test
+    void replacingRecordMovesItInEveryIndex() {
+        repository.saveAll(List.of(record("a", "40x20", "2", "100", NOW)));
+        repository.saveAll(List.of(record("a", "40x20", "2", "150", NOW.plus(1, ChronoUnit.DAYS))));
+
+        assertThat(repository.findAll()).hasSize(1);
+        assertThat(repository.findBySiteId("a")).extracting(PriceRecord::getPrice)
+                .containsExactly(new BigDecimal("150"));
+        assertThat(repository.findByPeriod(NOW, NOW.plusSeconds(1))).isEmpty();
+        assertThat(repository.findByPeriod(NOW.plus(1, ChronoUnit.DAYS), NOW.plus(2, ChronoUnit.DAYS)))
+                .extracting(PriceRecord::getPrice)
+                .containsExactly(new BigDecimal("150"));
+
+        // Старая версия записи не оставляет ключей в индексе времени
+        assertThat(timeIndex()).containsOnlyKeys(NOW.plus(1, ChronoUnit.DAYS));
+        assertThat(index("siteIndex").get("a")).hasSize(1);
+    }
+
+    @Test
+    void deleteOlderThanRemovesRecordsFromIndexes() {
+        repository.saveAll(List.of(
+                record("a", "40x20", "2", "100", NOW.minus(10, ChronoUnit.DAYS)),
+                record("b", "60x40", "3", "200", NOW)));
+
+        repository.deleteOlderThan(NOW.minus(1, ChronoUnit.DAYS));
+
+        assertThat(repository.findAll()).extracting(PriceRecord::getSiteId).containsExactly("b");
+        assertThat(repository.findBySiteId("a")).isEmpty();
+        assertThat(repository.findBySize("40x20")).isEmpty();
+        assertThat(index("siteIndex")).containsOnlyKeys("b");
+        assertThat(index("sizeIndex")).containsOnlyKeys("60x40");
+        assertThat(timeIndex()).containsOnlyKeys(NOW);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Set<ProductKey>> index(String name) {
+        return (Map<String, Set<ProductKey>>) ReflectionTestUtils.getField(repository, name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Instant, Set<ProductKey>> timeIndex() {
+        return (Map<Instant, Set<ProductKey>>) ReflectionTestUtils.getField(repository, "timeIndex");
+    }
+
+    private static PriceRecord record(String siteId, String size, String thickness, String price, Instant timestamp) {
+        return PriceRecord.builder()
+                .siteId(siteId)
+                .size(size)
+                .thickness(thickness)
+                .price(new BigDecimal(price))
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.company.parser.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KopecksTest {
+
+    @Test
+    void convertsExactPrices() {
+        assertThat(Kopecks.of(new BigDecimal("1234.5"))).isEqualTo(123450);
+        assertThat(Kopecks.of(new BigDecimal("100"))).isEqualTo(10000);
+        assertThat(Kopecks.of(new BigDecimal("-0.01"))).isEqualTo(-1);
+        assertThat(Kopecks.of(new BigDecimal("12.3400"))).isEqualTo(1234);
+        assertThat(Kopecks.of(new BigDecimal("1E+3"))).isEqualTo(100000);
+        assertThat(Kopecks.toBigDecimal(123450)).isEqualTo(new BigDecimal("1234.50"));
+    }
+
+    @Test
+    void doesNotRoundUnrepresentablePrices() {
+        assertThat(Kopecks.of(null)).isEqualTo(Kopecks.NONE);
+        assertThat(Kopecks.of(new BigDecimal("10.005"))).isEqualTo(Kopecks.NONE);
+        assertThat(Kopecks.of(new BigDecimal("1E+20"))).isEqualTo(Kopecks.NONE);
+        assertThat(Kopecks.toBigDecimal(Kopecks.NONE)).isNull();
+    }
+
+    @Test
+    void changePercentMatchesBigDecimalCalculation() {
+        Random random = new Random(8);
+        for (int i = 0; i < 10_000; i++) {
+            long oldPrice = 1 + random.nextInt(10_000_000);
+            long newPrice = random.nextInt(10_000_000);
+
+            BigDecimal expected = BigDecimal.valueOf(newPrice - oldPrice, 2)
+                    .divide(BigDecimal.valueOf(oldPrice, 2), 4, RoundingMode.HALF_UP)
+                    .multiply(BigDecimal.valueOf(100));
+
+            assertThat(Kopecks.changePercent(oldPrice, newPrice)).isEqualTo(expected);
+        }
+        assertThat(Kopecks.changePercent(0, 100)).isNull();
+    }
+
+    @Test
+    void divideRoundsHalfAwayFromZero() {
+        assertThat(Kopecks.divideHalfUp(5, 2)).isEqualTo(3);
+        assertThat(Kopecks.divideHalfUp(-5, 2)).isEqualTo(-3);
+        assertThat(Kopecks.divideHalfUp(5, -2)).isEqualTo(-3);
+        assertThat(Kopecks.divideHalfUp(4, 3)).isEqualTo(1);
+        assertThat(Kopecks.divideHalfUp(-4, 3)).isEqualTo(-1);
+    }
+}
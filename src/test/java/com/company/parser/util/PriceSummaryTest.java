@@ -0,0 +1,58 @@
+package com.company.parser.util;
+
+import com.company.parser.model.domain.PriceRecord;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceSummaryTest {
+
+    @Test
+    void summarizesInKopecks() {
+        PriceSummary summary = summarize("10", "20.5", null, "30.01");
+
+        assertThat(summary.getCount()).isEqualTo(3);
+        assertThat(summary.getAverage()).isEqualTo(new BigDecimal("20.17"));
+        assertThat(summary.getMin()).isEqualTo(new BigDecimal("10.00"));
+        assertThat(summary.getMax()).isEqualTo(new BigDecimal("30.01"));
+    }
+
+    @Test
+    void fallsBackToBigDecimalForUnrepresentablePrice() {
+        PriceSummary summary = summarize("10", "0.005", "30");
+
+        assertThat(summary.getCount()).isEqualTo(3);
+        assertThat(summary.getAverage()).isEqualTo(new BigDecimal("13.34"));
+        assertThat(summary.getMin()).isEqualTo(new BigDecimal("0.005"));
+        assertThat(summary.getMax()).isEqualByComparingTo("30");
+    }
+
+    @Test
+    void emptySummary() {
+        PriceSummary summary = summarize();
+
+        assertThat(summary.getAverage()).isEqualTo(new BigDecimal("0.00"));
+        assertThat(summary.getMin()).isNull();
+        assertThat(summary.getMax()).isNull();
+    }
+
+    @Test
+    void recordRecomputesKopecksWhenPriceChanges() {
+        PriceRecord record = PriceRecord.builder().price(new BigDecimal("1.5")).build();
+        assertThat(record.getPriceKopecks()).isEqualTo(150);
+
+        record.setPrice(new BigDecimal("2"));
+        assertThat(record.getPriceKopecks()).isEqualTo(200);
+        assertThat(record.comparePrice(PriceRecord.builder().price(new BigDecimal("2.000")).build())).isZero();
+    }
+
+    private static PriceSummary summarize(String... prices) {
+        PriceSummary summary = new PriceSummary();
+        for (String price : prices) {
+            summary.accept(PriceRecord.builder().price(price != null ? new BigDecimal(price) : null).build());
+        }
+        return summary;
+    }
+}